@@ -0,0 +1,105 @@
+package com.gaoyuanh.dictionary.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gaoyuanh.dictionary.dictionary.BinarySnapshot;
+import com.gaoyuanh.dictionary.dictionary.Dictionary;
+import com.gaoyuanh.dictionary.dictionary.WordEntry;
+
+/**
+ * JMH benchmark of searches for words that are not in the dictionary, for words
+ * in the in-memory map or in a mapped snapshot, with and without the snapshot
+ * filter (a map-only dictionary has none, so it is the baseline). The filter
+ * statistics are printed at the end of each trial:
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="NegativeLookupBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NegativeLookupBenchmark {
+    private static final int WORD_COUNT = 200000;
+    private static final int LOOKUP_COUNT = 1 << 16;
+
+    @Param({ "0.01", "0" })
+    public double falsePositiveRate;
+
+    @Param({ "map", "snapshot" })
+    public String source;
+
+    private Dictionary dictionary;
+    private String[] absentWords;
+    private File snapshotFile;
+    private int next;
+
+    /**
+     * Fills the dictionary and prepares misspelled lookups
+     *
+     * @throws IOException If the snapshot cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dictionary = new Dictionary();
+        for (int i = 0; i < WORD_COUNT; i++) {
+            dictionary.add("word" + i, Arrays.asList("meaning of word " + i));
+        }
+        if ("snapshot".equals(source)) {
+            snapshotFile = File.createTempFile("negative-lookup-benchmark", BinarySnapshot.FILE_EXTENSION);
+            snapshotFile.delete();
+            dictionary.saveToFile(snapshotFile.getPath());
+            dictionary = new Dictionary();
+            dictionary.loadFromFile(snapshotFile.getPath());
+        }
+        dictionary.setSnapshotFilterFalsePositiveRate(falsePositiveRate);
+
+        absentWords = new String[LOOKUP_COUNT];
+        for (int i = 0; i < LOOKUP_COUNT; i++) {
+            absentWords[i] = "wrod" + i;
+        }
+    }
+
+    /**
+     * Prints the filter statistics and deletes the snapshot file
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (dictionary.getSnapshotFilter() != null) {
+            System.out.println("Snapshot filter: " + dictionary.getSnapshotFilter());
+        }
+        if (snapshotFile != null) {
+            snapshotFile.delete();
+        }
+    }
+
+    /**
+     * Searches for a word that is not in the dictionary
+     *
+     * @return null
+     */
+    @Benchmark
+    public WordEntry searchAbsent() {
+        int index = next;
+        next = (index + 1) & (LOOKUP_COUNT - 1);
+        return dictionary.search(absentWords[index]);
+    }
+}
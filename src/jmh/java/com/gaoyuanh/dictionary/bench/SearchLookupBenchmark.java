@@ -0,0 +1,145 @@
+package com.gaoyuanh.dictionary.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gaoyuanh.dictionary.dictionary.BinarySnapshot;
+import com.gaoyuanh.dictionary.dictionary.Dictionary;
+import com.gaoyuanh.dictionary.dictionary.WordEntry;
+import com.gaoyuanh.dictionary.protocol.Message;
+import com.gaoyuanh.dictionary.protocol.ProtocolConstants;
+import com.gaoyuanh.dictionary.server.RequestProcessor;
+import com.gaoyuanh.dictionary.server.ResponseCache;
+
+/**
+ * JMH benchmark of exact lookups. Compares lower-casing the word into a new
+ * String before the lookup, as Dictionary.search used to, with the probe key
+ * path, for words typed in lower and mixed case, with the words in the in-memory
+ * map or in a mapped snapshot. Also measures a SEARCH served from the response
+ * cache. Run with -prof gc to see the allocation rate per operation:
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="SearchLookupBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchLookupBenchmark {
+    private static final int WORD_COUNT = 10000;
+
+    @Param({ "lower", "mixed" })
+    public String letterCase;
+
+    @Param({ "map", "snapshot" })
+    public String source;
+
+    private Dictionary dictionary;
+    private String[] lookups;
+    private Message[] requests;
+    private RequestProcessor processor;
+    private File snapshotFile;
+    private int next;
+
+    /**
+     * Fills the dictionary, saving it to a snapshot and mapping it back when the
+     * words should come from a snapshot
+     *
+     * @throws IOException If the snapshot cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dictionary = new Dictionary();
+        for (int i = 0; i < WORD_COUNT; i++) {
+            dictionary.add("word" + i, Arrays.asList("first meaning of word " + i, "second meaning"));
+        }
+        if ("snapshot".equals(source)) {
+            snapshotFile = File.createTempFile("lookup-benchmark", BinarySnapshot.FILE_EXTENSION);
+            snapshotFile.delete();
+            dictionary.saveToFile(snapshotFile.getPath());
+            dictionary = new Dictionary();
+            dictionary.loadFromFile(snapshotFile.getPath());
+        }
+
+        lookups = new String[WORD_COUNT];
+        requests = new Message[WORD_COUNT];
+        for (int i = 0; i < WORD_COUNT; i++) {
+            lookups[i] = "lower".equals(letterCase) ? "word" + i : "Word" + i;
+            requests[i] = new Message(ProtocolConstants.OPERATION_SEARCH);
+            requests[i].setWord(lookups[i]);
+            requests[i].setRequestId((long) i);
+        }
+
+        processor = new RequestProcessor(dictionary, null);
+        ResponseCache cache = new ResponseCache(ResponseCache.DEFAULT_CAPACITY_BYTES);
+        dictionary.addChangeListener(cache);
+        processor.setResponseCache(cache);
+        for (Message request : requests) {
+            processor.processEncoded(request, true);
+        }
+    }
+
+    /**
+     * Deletes the snapshot file
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (snapshotFile != null) {
+            snapshotFile.delete();
+        }
+    }
+
+    /**
+     * Lower-cases the word into a new String, then looks it up
+     *
+     * @return The entry
+     */
+    @Benchmark
+    public WordEntry lowerCaseThenSearch() {
+        return dictionary.search(lookups[nextIndex()].toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Looks the word up through the probe key
+     *
+     * @return The entry
+     */
+    @Benchmark
+    public WordEntry search() {
+        return dictionary.search(lookups[nextIndex()]);
+    }
+
+    /**
+     * Answers a binary SEARCH request from the response cache
+     *
+     * @return The encoded response
+     */
+    @Benchmark
+    public byte[] cachedSearchResponse() {
+        return processor.processEncoded(requests[nextIndex()], true);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == WORD_COUNT ? 0 : index + 1;
+        return index;
+    }
+}
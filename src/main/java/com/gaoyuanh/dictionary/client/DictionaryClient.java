@@ -1,35 +1,131 @@
 package com.gaoyuanh.dictionary.client;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
 
+import com.gaoyuanh.dictionary.protocol.BinaryProtocol;
 import com.gaoyuanh.dictionary.protocol.Message;
 import com.gaoyuanh.dictionary.protocol.ProtocolConstants;
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
 
 /**
  * Client class that manages socket communication with the dictionary server.
  * Provides methods to perform dictionary operations.
+ * Requests are pipelined: each carries an ID, up to a window of requests are sent
+ * without waiting for their responses, and a reader thread completes the future
+ * whose ID a response carries, in whatever order responses arrive. Requests in
+ * flight together may also be executed in any order, so wait for a change to
+ * complete before sending a request that depends on it. Futures are completed on
+ * the reader thread, so callbacks must not block waiting for other responses.
+ * With {@link #setBinaryProtocol(boolean)} the client asks the server for the
+ * compact {@link BinaryProtocol} and falls back to JSON if the server does not
+ * support it.
+ * A client can keep a pool of connections, so concurrent callers are not all
+ * queued behind one socket; the API is the same with one connection or many.
+ * A lost connection is reopened in the background, with exponential backoff
+ * and jitter so that clients do not all return at once after a server restart.
+ * While no connection is open, requests wait in a bounded queue until one
+ * opens or their deadline passes. Read-only requests that were sent on a lost
+ * connection are sent again; changes fail, since the server may have applied them.
+ * Every request has a timeout, the client-wide {@link #setRequestTimeout(long)}
+ * or one passed to a lookup method. Its future fails with a TimeoutException
+ * when the time is up, and the time left is sent with the request so the server
+ * skips it if it is still queued by then. Cancelling a future, or its timeout,
+ * frees its place in the queue and in the in-flight window; a change that was
+ * already sent may still be applied.
+ * With {@link #enableNearCache(int, long)} found and missing words are cached
+ * on the client. One connection subscribes to the server's invalidations and
+ * the cache drops each word the server reports changed, and each word this
+ * client changes itself.
  */
 public class DictionaryClient {
+    // Delay before reconnecting doubles from the base up to the maximum; a random
+    // part of it is left out so that clients spread their attempts
+    public static final long RECONNECT_BASE_DELAY_MS = 100;
+    public static final long RECONNECT_MAX_DELAY_MS = 5000;
+    // Time allowed to open one connection
+    public static final int CONNECT_TIMEOUT_MS = 5000;
+    // Most requests waiting for a reconnection by default, see setReconnectOptions
+    public static final int DEFAULT_MAX_QUEUED_REQUESTS = 1024;
+    // Time a request may take by default, see setRequestTimeout
+    public static final long DEFAULT_REQUEST_TIMEOUT_MS = 30000;
+    // Deadline of requests without a timeout, far enough ahead to never pass
+    private static final long NO_DEADLINE_NS = Long.MAX_VALUE / 4;
+
+    // Operations that can be sent again without changing the outcome
+    private static final Set<String> IDEMPOTENT_OPERATIONS = new HashSet<>(Arrays.asList(
+            ProtocolConstants.OPERATION_SEARCH,
+            ProtocolConstants.OPERATION_PREFIX_SEARCH,
+            ProtocolConstants.OPERATION_FUZZY_SEARCH,
+            ProtocolConstants.OPERATION_REVERSE_SEARCH,
+            ProtocolConstants.OPERATION_MULTI_SEARCH,
+            ProtocolConstants.OPERATION_SCAN,
+            ProtocolConstants.OPERATION_SUBSCRIBE));
+
     private final String serverAddress;
     private final int serverPort;
-    private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private boolean binaryRequested;
     private final Gson gson;
-    private final ExecutorService executor;
-    private boolean connected;
+    private volatile boolean connected;
     private final Consumer<String> errorHandler;
+    private final int maxInFlight;
+    private final AtomicLong nextRequestId;
+    // One connection per pool slot; a failed connection is replaced by a new one
+    private final AtomicReferenceArray<Connection> connections;
+    // Slot where the search for the least busy connection starts, so ties rotate
+    private final AtomicInteger nextSlot;
+    // Runs reconnection attempts and request timeouts while connected
+    private volatile ScheduledExecutorService scheduler;
+    private final AtomicBoolean reconnectScheduled;
+    private final AtomicInteger reconnectAttempts;
+    // Whether a connection is open, as last reported to the connection listener
+    private final AtomicBoolean online;
+    private volatile Consumer<Boolean> connectionListener;
+    // Requests waiting for a connection to open, guarded by itself
+    private final ArrayDeque<Call> waiting;
+    private volatile int maxQueuedRequests = DEFAULT_MAX_QUEUED_REQUESTS;
+    private volatile long requestTimeoutMillis = DEFAULT_REQUEST_TIMEOUT_MS;
+    private final AtomicLong timedOutRequests;
+    private final AtomicLong cancelledRequests;
+    private volatile NearCache nearCache;
+    // Set while a SUBSCRIBE request is unanswered, so only one is sent at a time
+    private final AtomicBoolean subscribing;
 
     /**
      * Constructor for DictionaryClient
@@ -39,30 +135,320 @@ public class DictionaryClient {
      * @param errorHandler Handler for error messages
      */
     public DictionaryClient(String serverAddress, int serverPort, Consumer<String> errorHandler) {
+        this(serverAddress, serverPort, errorHandler, ProtocolConstants.DEFAULT_IN_FLIGHT_WINDOW);
+    }
+
+    /**
+     * Constructor for DictionaryClient with a custom in-flight window
+     * 
+     * @param serverAddress The server address
+     * @param serverPort The server port
+     * @param errorHandler Handler for error messages
+     * @param maxInFlight Maximum number of requests sent and not yet answered; 1 waits for
+     *                    each response before sending the next request
+     */
+    public DictionaryClient(String serverAddress, int serverPort, Consumer<String> errorHandler, int maxInFlight) {
+        this(serverAddress, serverPort, errorHandler, maxInFlight, 1);
+    }
+
+    /**
+     * Constructor for DictionaryClient with a pool of connections. Each request
+     * goes to the open connection with the fewest requests outstanding. A
+     * connection that fails only affects the requests it has sent; requests it
+     * has not sent yet move to another connection, and it is reopened in the background.
+     * 
+     * @param serverAddress The server address
+     * @param serverPort The server port
+     * @param errorHandler Handler for error messages
+     * @param maxInFlight Maximum number of requests sent and not yet answered on each connection
+     * @param poolSize Number of connections
+     */
+    public DictionaryClient(String serverAddress, int serverPort, Consumer<String> errorHandler, int maxInFlight,
+                            int poolSize) {
         this.serverAddress = serverAddress;
         this.serverPort = serverPort;
         this.gson = new Gson();
-        this.executor = Executors.newSingleThreadExecutor();
         this.connected = false;
         this.errorHandler = errorHandler;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.nextRequestId = new AtomicLong();
+        this.connections = new AtomicReferenceArray<>(Math.max(1, poolSize));
+        this.nextSlot = new AtomicInteger();
+        this.subscribing = new AtomicBoolean();
+        this.reconnectScheduled = new AtomicBoolean();
+        this.reconnectAttempts = new AtomicInteger();
+        this.online = new AtomicBoolean();
+        this.waiting = new ArrayDeque<>();
+        this.timedOutRequests = new AtomicLong();
+        this.cancelledRequests = new AtomicLong();
+    }
+
+    /**
+     * Chooses whether to ask the server for the binary protocol. Takes effect on the next connect.
+     * 
+     * @param binaryProtocol true to use binary frames instead of JSON lines when the server supports them
+     */
+    public void setBinaryProtocol(boolean binaryProtocol) {
+        this.binaryRequested = binaryProtocol;
+    }
+
+    /**
+     * Sets how many requests are kept while the client reconnects
+     * 
+     * @param maxQueuedRequests Most requests waiting for a connection to open; more fail at once
+     */
+    public void setReconnectOptions(int maxQueuedRequests) {
+        this.maxQueuedRequests = Math.max(0, maxQueuedRequests);
+    }
+
+    /**
+     * Sets the time a request may take, including waiting for a connection and
+     * being sent again, for requests made without a timeout of their own
+     * 
+     * @param timeoutMillis Timeout in milliseconds, or 0 for no timeout
+     */
+    public void setRequestTimeout(long timeoutMillis) {
+        this.requestTimeoutMillis = Math.max(0, timeoutMillis);
+    }
+
+    /**
+     * Gets the number of requests that failed because their timeout passed
+     * 
+     * @return The timed out request count
+     */
+    public long getTimedOutCount() {
+        return timedOutRequests.get();
+    }
+
+    /**
+     * Gets the number of requests whose future was cancelled before it completed
+     * 
+     * @return The cancelled request count
+     */
+    public long getCancelledCount() {
+        return cancelledRequests.get();
     }
 
     /**
-     * Connects to the dictionary server
+     * Sets a listener told when the client loses its last open connection and
+     * when it has reconnected
      * 
-     * @return true if connection is successful, false otherwise
+     * @param listener Consumer that receives false when connections are lost, true when one is open again
+     */
+    public void setConnectionListener(Consumer<Boolean> listener) {
+        this.connectionListener = listener;
+    }
+
+    /**
+     * Turns on the client-side cache of SEARCH responses. Takes effect on the next
+     * connect; the cache is only used while the server sends invalidations, so
+     * with a server that does not support them every search goes to the server.
+     * 
+     * @param maxEntries Most words kept
+     * @param ttlMillis Time a response may be served after it was received, in milliseconds
+     */
+    public void enableNearCache(int maxEntries, long ttlMillis) {
+        this.nearCache = new NearCache(maxEntries, ttlMillis);
+    }
+
+    /**
+     * Gets the client-side cache of SEARCH responses, for its hit ratio
+     * 
+     * @return The cache, or null if it is not enabled
+     */
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    /**
+     * Checks whether the current connection uses the binary protocol
+     * 
+     * @return true if the server accepted the binary protocol on an open connection
+     */
+    public boolean isBinaryProtocol() {
+        for (int i = 0; i < connections.length(); i++) {
+            Connection connection = connections.get(i);
+            if (connection != null && connection.isOpen()) {
+                return connection.binary;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of connections in the pool
+     * 
+     * @return The pool size
+     */
+    public int getPoolSize() {
+        return connections.length();
+    }
+
+    /**
+     * Gets the number of pool connections that are open
+     * 
+     * @return The open connection count
+     */
+    public int getOpenConnectionCount() {
+        int count = 0;
+        for (int i = 0; i < connections.length(); i++) {
+            Connection connection = connections.get(i);
+            if (connection != null && connection.isOpen()) {
+                count++;
+            }
+        }
+        return count;
+    }
+        
+    /**
+     * Connects to the dictionary server, opening every connection of the pool.
+     * Connections that fail to open, or are lost later, are reopened in the
+     * background until {@link #disconnect()}.
+     * 
+     * @return true if at least one connection is open, false otherwise
      */
     public boolean connect() {
-        try {
-            socket = new Socket(serverAddress, serverPort);
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            connected = true;
-            return true;
-        } catch (IOException e) {
-            handleError("Error connecting to server: " + e.getMessage());
+        boolean opened = false;
+        for (int i = 0; i < connections.length(); i++) {
+            Connection connection = new Connection();
+            try {
+                connection.open();
+                opened = true;
+            } catch (IOException e) {
+                handleError("Error connecting to server: " + e.getMessage());
+                connection.close(e);
+            }
+            connections.set(i, connection);
+        }
+        if (!opened) {
             return false;
         }
+        
+        // Two threads, so request deadlines still fire while a reconnection waits for a connect timeout
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2, runnable -> {
+            Thread thread = new Thread(runnable, "dictionary-client-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        scheduler = executor;
+        reconnectAttempts.set(0);
+        online.set(true);
+        connected = true;
+        subscribe();
+        if (getOpenConnectionCount() < connections.length()) {
+            scheduleReconnect();
+        }
+        return true;
+    }
+
+    /**
+     * Schedules an attempt to reopen the failed connections, unless one is already scheduled.
+     * The delay doubles with each failed attempt; a random part of up to half of
+     * it is left out.
+     */
+    private void scheduleReconnect() {
+        ScheduledExecutorService executor = scheduler;
+        if (!connected || executor == null || !reconnectScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        
+        long ceiling = Math.min(RECONNECT_MAX_DELAY_MS,
+                RECONNECT_BASE_DELAY_MS << Math.min(reconnectAttempts.get(), 16));
+        long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+        try {
+            executor.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Disconnected meanwhile
+            reconnectScheduled.set(false);
+        }
+    }
+
+    /**
+     * Reopens failed connections, then sends the requests that waited for them
+     * and schedules another attempt for those still closed
+     */
+    private void reconnect() {
+        boolean opened = false;
+        for (int i = 0; i < connections.length() && connected; i++) {
+            Connection connection = connections.get(i);
+            if (connection.isOpen()) {
+                continue;
+            }
+            Connection replacement = new Connection();
+            try {
+                replacement.open();
+            } catch (IOException e) {
+                // Still unreachable; the next attempt tries again
+                replacement.close(e);
+                continue;
+            }
+            if (!connected || !connections.compareAndSet(i, connection, replacement)) {
+                replacement.close(new IOException("Disconnected from server"));
+            } else {
+                opened = true;
+            }
+        }
+        reconnectScheduled.set(false);
+        if (!connected) {
+            return;
+        }
+        
+        if (opened) {
+            if (online.compareAndSet(false, true)) {
+                notifyConnectionListener(true);
+            }
+            drainWaiting();
+            NearCache cache = nearCache;
+            if (cache != null && !cache.isActive()) {
+                // The subscribed connection was lost
+                subscribe();
+            }
+        }
+        if (getOpenConnectionCount() < connections.length()) {
+            reconnectAttempts.incrementAndGet();
+            scheduleReconnect();
+        } else {
+            reconnectAttempts.set(0);
+        }
+    }
+
+    /**
+     * Called when a connection closes: reports the loss of the last connection
+     * and schedules a reconnection
+     */
+    private void connectionLost() {
+        if (!connected) {
+            return;
+        }
+        if (getOpenConnectionCount() == 0 && online.compareAndSet(true, false)) {
+            handleError("Connection lost, reconnecting");
+            notifyConnectionListener(false);
+        }
+        scheduleReconnect();
+    }
+
+    private void notifyConnectionListener(boolean available) {
+        Consumer<Boolean> listener = connectionListener;
+        if (listener != null) {
+            listener.accept(available);
+        }
+    }
+
+    /**
+     * Subscribes one connection to the server's invalidations when there is a
+     * near cache; the cache is turned on when the server accepts
+     */
+    private void subscribe() {
+        if (nearCache == null || !subscribing.compareAndSet(false, true)) {
+            return;
+        }
+        sendRequest(new Message(ProtocolConstants.OPERATION_SUBSCRIBE)).whenComplete((response, e) -> {
+            subscribing.set(false);
+            if (response != null && !ProtocolConstants.STATUS_SUCCESS.equals(response.getStatus())) {
+                handleError("Near cache disabled: " + response.getErrorMessage());
+            }
+        });
     }
 
     /**
@@ -70,23 +456,37 @@ public class DictionaryClient {
      */
     public void disconnect() {
         connected = false;
-        try {
-            if (in != null) in.close();
-            if (out != null) out.close();
-            if (socket != null) socket.close();
-        } catch (IOException e) {
-            handleError("Error disconnecting from server: " + e.getMessage());
+        online.set(false);
+        ScheduledExecutorService executor = scheduler;
+        scheduler = null;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        for (int i = 0; i < connections.length(); i++) {
+            Connection connection = connections.get(i);
+            if (connection != null) {
+                connection.close(new IOException("Disconnected from server"));
+            }
+        }
+        
+        List<Call> abandoned;
+        synchronized (waiting) {
+            abandoned = new ArrayList<>(waiting);
+            waiting.clear();
+        }
+        for (Call call : abandoned) {
+            call.future.completeExceptionally(new IOException("Disconnected from server"));
         }
-        executor.shutdown();
     }
 
     /**
-     * Checks if client is connected to the server
+     * Checks if client is connected to the server. False while it is reconnecting,
+     * although requests are still accepted then.
      * 
      * @return true if connected, false otherwise
      */
     public boolean isConnected() {
-        return connected && socket != null && !socket.isClosed();
+        return connected && getOpenConnectionCount() > 0;
     }
 
     /**
@@ -96,7 +496,18 @@ public class DictionaryClient {
      * @return CompletableFuture with the response message
      */
     public CompletableFuture<Message> searchWord(String word) {
-        if (!isConnected()) {
+        return searchWord(word, requestTimeoutMillis);
+    }
+
+    /**
+     * Searches for a word in the dictionary with a timeout of its own
+     * 
+     * @param word The word to search for
+     * @param timeoutMillis Timeout in milliseconds, or 0 for no timeout
+     * @return CompletableFuture with the response message
+     */
+    public CompletableFuture<Message> searchWord(String word, long timeoutMillis) {
+        if (!connected) {
             CompletableFuture<Message> future = new CompletableFuture<>();
             future.completeExceptionally(new IOException("Not connected to server"));
             return future;
@@ -105,7 +516,160 @@ public class DictionaryClient {
         Message request = new Message(ProtocolConstants.OPERATION_SEARCH);
         request.setWord(word);
         
-        return sendRequest(request);
+        NearCache cache = nearCache;
+        if (cache == null || word == null) {
+            return sendRequest(request, timeoutMillis);
+        }
+        Message cached = cache.get(word);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        long stamp = cache.startFill();
+        // The request's own future is returned so that cancelling it cancels the request
+        CompletableFuture<Message> future = sendRequest(request, timeoutMillis);
+        future.whenComplete((response, e) -> {
+            if (response != null) {
+                cache.put(word, response, stamp);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Searches for a word, asking for suggestions in case it is not found
+     * 
+     * @param word The word to search for
+     * @return CompletableFuture with the response message; on NOT_FOUND the suggestions are in
+     *         {@link Message#getWords()}
+     */
+    public CompletableFuture<Message> searchWordWithSuggestions(String word) {
+        return searchWordWithSuggestions(word, requestTimeoutMillis);
+    }
+
+    /**
+     * Searches for a word with a timeout of its own, asking for suggestions in case it is not found
+     * 
+     * @param word The word to search for
+     * @param timeoutMillis Timeout in milliseconds, or 0 for no timeout
+     * @return CompletableFuture with the response message; on NOT_FOUND the suggestions are in
+     *         {@link Message#getWords()}
+     */
+    public CompletableFuture<Message> searchWordWithSuggestions(String word, long timeoutMillis) {
+        if (!connected) {
+            CompletableFuture<Message> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("Not connected to server"));
+            return future;
+        }
+        
+        Message request = new Message(ProtocolConstants.OPERATION_SEARCH);
+        request.setWord(word);
+        request.setSuggest(true);
+        
+        return sendRequest(request, timeoutMillis);
+    }
+
+    /**
+     * Finds words that start with a prefix, for autocomplete
+     * 
+     * @param prefix The prefix to search for
+     * @param limit Maximum number of words to return
+     * @return CompletableFuture with the response message; the words are in {@link Message#getWords()}
+     */
+    public CompletableFuture<Message> prefixSearch(String prefix, int limit) {
+        return prefixSearch(prefix, limit, requestTimeoutMillis);
+    }
+
+    /**
+     * Finds words that start with a prefix, with a timeout of its own
+     * 
+     * @param prefix The prefix to search for
+     * @param limit Maximum number of words to return
+     * @param timeoutMillis Timeout in milliseconds, or 0 for no timeout
+     * @return CompletableFuture with the response message; the words are in {@link Message#getWords()}
+     */
+    public CompletableFuture<Message> prefixSearch(String prefix, int limit, long timeoutMillis) {
+        if (!connected) {
+            CompletableFuture<Message> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("Not connected to server"));
+            return future;
+        }
+        
+        Message request = new Message(ProtocolConstants.OPERATION_PREFIX_SEARCH);
+        request.setWord(prefix);
+        request.setLimit(limit);
+        
+        return sendRequest(request, timeoutMillis);
+    }
+
+    /**
+     * Finds the words closest to a word by edit distance
+     * 
+     * @param word The word to match
+     * @param maxDistance Maximum number of single-character edits
+     * @param limit Maximum number of words to return
+     * @return CompletableFuture with the response message; the words, closest first, are in
+     *         {@link Message#getWords()}
+     */
+    public CompletableFuture<Message> fuzzySearch(String word, int maxDistance, int limit) {
+        return fuzzySearch(word, maxDistance, limit, requestTimeoutMillis);
+    }
+
+    /**
+     * Finds the words closest to a word by edit distance, with a timeout of its own
+     * 
+     * @param word The word to match
+     * @param maxDistance Maximum number of single-character edits
+     * @param limit Maximum number of words to return
+     * @param timeoutMillis Timeout in milliseconds, or 0 for no timeout
+     * @return CompletableFuture with the response message; the words, closest first, are in
+     *         {@link Message#getWords()}
+     */
+    public CompletableFuture<Message> fuzzySearch(String word, int maxDistance, int limit, long timeoutMillis) {
+        if (!connected) {
+            CompletableFuture<Message> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("Not connected to server"));
+            return future;
+        }
+        
+        Message request = new Message(ProtocolConstants.OPERATION_FUZZY_SEARCH);
+        request.setWord(word);
+        request.setMaxDistance(maxDistance);
+        request.setLimit(limit);
+        
+        return sendRequest(request, timeoutMillis);
+    }
+
+    /**
+     * Finds words whose meanings contain every word of a query
+     * 
+     * @param query The words to look for in meanings
+     * @param limit Maximum number of words to return
+     * @return CompletableFuture with the response message; the words are in {@link Message#getWords()}
+     */
+    public CompletableFuture<Message> reverseSearch(String query, int limit) {
+        return reverseSearch(query, limit, requestTimeoutMillis);
+    }
+
+    /**
+     * Finds words whose meanings contain every word of a query, with a timeout of its own
+     * 
+     * @param query The words to look for in meanings
+     * @param limit Maximum number of words to return
+     * @param timeoutMillis Timeout in milliseconds, or 0 for no timeout
+     * @return CompletableFuture with the response message; the words are in {@link Message#getWords()}
+     */
+    public CompletableFuture<Message> reverseSearch(String query, int limit, long timeoutMillis) {
+        if (!connected) {
+            CompletableFuture<Message> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("Not connected to server"));
+            return future;
+        }
+        
+        Message request = new Message(ProtocolConstants.OPERATION_REVERSE_SEARCH);
+        request.setQuery(query);
+        request.setLimit(limit);
+        
+        return sendRequest(request, timeoutMillis);
     }
 
     /**
@@ -116,7 +680,7 @@ public class DictionaryClient {
      * @return CompletableFuture with the response message
      */
     public CompletableFuture<Message> addWord(String word, List<String> meanings) {
-        if (!isConnected()) {
+        if (!connected) {
             CompletableFuture<Message> future = new CompletableFuture<>();
             future.completeExceptionally(new IOException("Not connected to server"));
             return future;
@@ -136,7 +700,7 @@ public class DictionaryClient {
      * @return CompletableFuture with the response message
      */
     public CompletableFuture<Message> removeWord(String word) {
-        if (!isConnected()) {
+        if (!connected) {
             CompletableFuture<Message> future = new CompletableFuture<>();
             future.completeExceptionally(new IOException("Not connected to server"));
             return future;
@@ -156,7 +720,7 @@ public class DictionaryClient {
      * @return CompletableFuture with the response message
      */
     public CompletableFuture<Message> addMeaning(String word, String meaning) {
-        if (!isConnected()) {
+        if (!connected) {
             CompletableFuture<Message> future = new CompletableFuture<>();
             future.completeExceptionally(new IOException("Not connected to server"));
             return future;
@@ -181,7 +745,7 @@ public class DictionaryClient {
      * @return CompletableFuture with the response message
      */
     public CompletableFuture<Message> updateMeaning(String word, String oldMeaning, String newMeaning) {
-        if (!isConnected()) {
+        if (!connected) {
             CompletableFuture<Message> future = new CompletableFuture<>();
             future.completeExceptionally(new IOException("Not connected to server"));
             return future;
@@ -196,42 +760,659 @@ public class DictionaryClient {
     }
 
     /**
-     * Sends a request to the server and gets the response
+     * Searches for several words in one request
+     * 
+     * @param words The words to search for
+     * @return CompletableFuture with the response message, whose batch holds one
+     *         search result per word in the same order
+     */
+    public CompletableFuture<Message> multiSearch(List<String> words) {
+        return multiSearch(words, requestTimeoutMillis);
+    }
+
+    /**
+     * Searches for several words in one request with a timeout of its own
+     * 
+     * @param words The words to search for
+     * @param timeoutMillis Timeout in milliseconds, or 0 for no timeout
+     * @return CompletableFuture with the response message, whose batch holds one
+     *         search result per word in the same order
+     */
+    public CompletableFuture<Message> multiSearch(List<String> words, long timeoutMillis) {
+        if (!connected) {
+            CompletableFuture<Message> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("Not connected to server"));
+            return future;
+        }
+        
+        Message request = new Message(ProtocolConstants.OPERATION_MULTI_SEARCH);
+        request.setWords(new ArrayList<>(words));
+        
+        return sendRequest(request, timeoutMillis);
+    }
+
+    /**
+     * Gets one page of entries in word order. To read a whole range, pass the
+     * cursor of each response to the next call until a response has none.
+     * 
+     * @param startWord The first word of the range, or null to start at the beginning
+     * @param endWord The word that ends the range, excluded, or null for no end
+     * @param limit Maximum number of entries in the page, 0 for the server default
+     * @param cursor The cursor of the previous page, or null for the first page
+     * @return CompletableFuture with the response message, whose batch holds the
+     *         entries and whose cursor is set if more entries follow
+     */
+    public CompletableFuture<Message> scan(String startWord, String endWord, int limit, String cursor) {
+        return scan(startWord, endWord, limit, cursor, requestTimeoutMillis);
+    }
+
+    /**
+     * Gets one page of entries in word order, with a timeout of its own
+     * 
+     * @param startWord The first word of the range, or null to start at the beginning
+     * @param endWord The word that ends the range, excluded, or null for no end
+     * @param limit Maximum number of entries in the page, 0 for the server default
+     * @param cursor The cursor of the previous page, or null for the first page
+     * @param timeoutMillis Timeout in milliseconds, or 0 for no timeout
+     * @return CompletableFuture with the response message, whose batch holds the
+     *         entries and whose cursor is set if more entries follow
+     */
+    public CompletableFuture<Message> scan(String startWord, String endWord, int limit, String cursor, long timeoutMillis) {
+        if (!connected) {
+            CompletableFuture<Message> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("Not connected to server"));
+            return future;
+        }
+        
+        Message request = new Message(ProtocolConstants.OPERATION_SCAN);
+        request.setWord(startWord);
+        request.setEndWord(endWord);
+        request.setLimit(limit);
+        request.setCursor(cursor);
+        
+        return sendRequest(request, timeoutMillis);
+    }
+
+    /**
+     * Adds several words in one request
+     * 
+     * @param entries The words to add with their meanings, in iteration order
+     * @return CompletableFuture with the response message, whose batch holds one
+     *         result per word in the same order
+     */
+    public CompletableFuture<Message> bulkAdd(Map<String, List<String>> entries) {
+        if (!connected) {
+            CompletableFuture<Message> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("Not connected to server"));
+            return future;
+        }
+        
+        List<Message> batch = new ArrayList<>(entries.size());
+        for (Map.Entry<String, List<String>> entry : entries.entrySet()) {
+            Message item = new Message();
+            item.setWord(entry.getKey());
+            item.setMeanings(entry.getValue());
+            batch.add(item);
+        }
+        Message request = new Message(ProtocolConstants.OPERATION_BULK_ADD);
+        request.setBatch(batch);
+        
+        return sendRequest(request);
+    }
+
+    /**
+     * Updates meanings of several words in one request
+     * 
+     * @param updates One message per update, with the word, existing meaning and new meaning set
+     * @return CompletableFuture with the response message, whose batch holds one
+     *         result per update in the same order
+     */
+    public CompletableFuture<Message> bulkUpdateMeanings(List<Message> updates) {
+        if (!connected) {
+            CompletableFuture<Message> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("Not connected to server"));
+            return future;
+        }
+        
+        Message request = new Message(ProtocolConstants.OPERATION_BULK_UPDATE);
+        request.setBatch(new ArrayList<>(updates));
+        
+        return sendRequest(request);
+    }
+
+    /**
+     * Sends a request to the server with the client-wide timeout
      * 
      * @param request The request message to send
      * @return CompletableFuture with the response message
      */
     private CompletableFuture<Message> sendRequest(Message request) {
+        return sendRequest(request, requestTimeoutMillis);
+    }
+
+    /**
+     * Sends a request to the server on the least busy open connection
+     * 
+     * @param request The request message to send
+     * @param timeoutMillis Timeout in milliseconds, or 0 for no timeout
+     * @return CompletableFuture with the response message
+     */
+    private CompletableFuture<Message> sendRequest(Message request, long timeoutMillis) {
         CompletableFuture<Message> future = new CompletableFuture<>();
+        request.setRequestId(nextRequestId.incrementAndGet());
+        NearCache cache = nearCache;
+        List<String> changing = cache != null ? changedWords(request) : null;
+        if (changing != null) {
+            // Drop the words now so searches sent from here on are not cached, and
+            // again once the change is done in case one was answered before it
+            cache.invalidate(changing);
+            future.whenComplete((response, e) -> cache.invalidate(changing));
+        }
         
-        executor.submit(() -> {
+        boolean timed = timeoutMillis > 0;
+        Call call = new Call(request, future, timed,
+                System.nanoTime() + (timed ? TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : NO_DEADLINE_NS));
+        ScheduledExecutorService executor = scheduler;
+        if (timed && executor != null) {
             try {
-                // Convert request to JSON and send
-                String jsonRequest = gson.toJson(request);
-                out.println(jsonRequest);
+                call.timer = executor.schedule(() -> timeOut(call), timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Disconnected meanwhile; dispatching fails the request
+            }
+        }
+        future.whenComplete((response, e) -> release(call));
+        dispatch(call);
+        return future;
+    }
+
+    /**
+     * Fails a request whose timeout passed, wherever it is
+     * 
+     * @param call The request and its future
+     */
+    private void timeOut(Call call) {
+        if (call.future.completeExceptionally(new TimeoutException("No response from the server within "
+                + TimeUnit.NANOSECONDS.toMillis(call.deadline - call.created) + " ms"))) {
+            timedOutRequests.incrementAndGet();
+        }
+    }
+
+    /**
+     * Frees what a completed request still holds: its timer, its place in the
+     * queue of requests waiting for a connection, and its place in the in-flight
+     * window of the connection it was sent on. Only a request that failed or
+     * was cancelled while waiting holds the last two.
+     * 
+     * @param call The request and its future
+     */
+    private void release(Call call) {
+        ScheduledFuture<?> timer = call.timer;
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        if (call.future.isCancelled()) {
+            cancelledRequests.incrementAndGet();
+        }
+        if (call.future.isCompletedExceptionally()) {
+            synchronized (waiting) {
+                waiting.remove(call);
+            }
+            Connection connection = call.connection;
+            if (connection != null) {
+                connection.abandon(call);
+            }
+        }
+    }
+
+    /**
+     * Gets the words a request changes, normalized like the server's keys
+     * 
+     * @param request The request message
+     * @return The words, or null if the request changes nothing
+     */
+    private static List<String> changedWords(Message request) {
+        switch (request.getOperation()) {
+            case ProtocolConstants.OPERATION_ADD:
+            case ProtocolConstants.OPERATION_REMOVE:
+            case ProtocolConstants.OPERATION_ADD_MEANING:
+            case ProtocolConstants.OPERATION_UPDATE_MEANING:
+            case ProtocolConstants.OPERATION_BULK_ADD:
+            case ProtocolConstants.OPERATION_BULK_UPDATE:
+                break;
+            default:
+                return null;
+        }
+        
+        List<String> words = new ArrayList<>();
+        if (request.getWord() != null) {
+            words.add(request.getWord().toLowerCase(Locale.ROOT).trim());
+        }
+        if (request.getBatch() != null) {
+            for (Message item : request.getBatch()) {
+                if (item != null && item.getWord() != null) {
+                    words.add(item.getWord().toLowerCase(Locale.ROOT).trim());
+                }
+            }
+        }
+        return words;
+    }
+        
+    /**
+     * Hands a request that has not been sent yet to the open connection with the
+     * fewest outstanding requests, or queues it until a connection opens
+     * 
+     * @param call The request, with its ID, and its future
+     */
+    private void dispatch(Call call) {
+        Connection best = null;
+        int bestLoad = Integer.MAX_VALUE;
+        int first = nextSlot.getAndIncrement();
+        for (int i = 0; i < connections.length(); i++) {
+            Connection connection = connections.get(Math.floorMod(first + i, connections.length()));
+            if (connection != null && connection.isOpen()) {
+                int load = connection.outstanding.get();
+                if (load < bestLoad) {
+                    best = connection;
+                    bestLoad = load;
+                }
+            }
+        }
+        if (best == null) {
+            await(call);
+            return;
+        }
+        best.send(call);
+    }
+
+    /**
+     * Queues a request while no connection is open; its timer fails it if it is
+     * still queued at its deadline
+     * 
+     * @param call The request and its future
+     */
+    private void await(Call call) {
+        if (!connected || scheduler == null) {
+            call.future.completeExceptionally(new IOException("Not connected to server"));
+            return;
+        }
+        
+        boolean queued = false;
+        synchronized (waiting) {
+            if (waiting.size() < maxQueuedRequests) {
+                waiting.add(call);
+                queued = true;
+            }
+        }
+        if (!queued) {
+            call.future.completeExceptionally(
+                    new IOException("Too many requests waiting for a connection to the server"));
+            return;
+        }
+        if (call.future.isDone()) {
+            // Timed out or cancelled while being queued, before release could find it
+            synchronized (waiting) {
+                waiting.remove(call);
+            }
+            return;
+        }
+        
+        scheduleReconnect();
+        if (getOpenConnectionCount() > 0) {
+            // A connection opened while the request was being queued
+            drainWaiting();
+        }
+    }
+
+    /**
+     * Dispatches the requests that waited for a connection, oldest first
+     */
+    private void drainWaiting() {
+        List<Call> calls;
+        synchronized (waiting) {
+            calls = new ArrayList<>(waiting);
+            waiting.clear();
+        }
+        for (Call call : calls) {
+            dispatch(call);
+        }
+    }
+
+    /**
+     * Sends a request again if it was lost with its connection and may be
+     * repeated, or fails it
+     * 
+     * @param call The request and its future
+     * @param cause The reason its response will not arrive
+     */
+    private void retryOrFail(Call call, Exception cause) {
+        if (call.future.isDone()) {
+            return;
+        }
+        if (connected && IDEMPOTENT_OPERATIONS.contains(call.request.getOperation())
+                && call.deadline - System.nanoTime() > 0) {
+            dispatch(call);
+        } else {
+            call.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * A request and the future its response completes
+     */
+    private static final class Call {
+        final Message request;
+        final CompletableFuture<Message> future;
+        // Whether the request has a timeout, which is then sent to the server
+        final boolean timed;
+        final long created = System.nanoTime();
+        // System.nanoTime at which the request times out
+        final long deadline;
+        // Fails the request at its deadline
+        volatile ScheduledFuture<?> timer;
+        // The connection that last took the request to write it
+        volatile Connection connection;
+        
+        Call(Message request, CompletableFuture<Message> future, boolean timed, long deadline) {
+            this.request = request;
+            this.future = future;
+            this.timed = timed;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * One connection to the server. Requests are written in call order on the
+     * connection's writer thread; once its in-flight window is full, the next one
+     * waits until a response arrives. A reader thread completes the future whose
+     * ID a response carries.
+     */
+    private final class Connection {
+        private Socket socket;
+        private PrintWriter out;
+        private BufferedReader in;
+        private InputStream binaryIn;
+        private OutputStream binaryOut;
+        private volatile boolean binary;
+        private volatile boolean open;
+        private final ExecutorService executor = Executors.newSingleThreadExecutor();
+        private final Semaphore window = new Semaphore(maxInFlight);
+        // Requests sent and not yet answered, by request ID
+        private final ConcurrentSkipListMap<Long, Call> pending = new ConcurrentSkipListMap<>();
+        // Requests handed to this connection that are waiting to be sent or answered
+        private final AtomicInteger outstanding = new AtomicInteger();
+        // Whether the server pushes invalidations on this connection
+        private volatile boolean subscribed;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        
+        /**
+         * Opens the connection and starts its reader thread
+         * 
+         * @throws IOException If the server cannot be reached
+         */
+        void open() throws IOException {
+            socket = new Socket();
+            socket.connect(new InetSocketAddress(serverAddress, serverPort), CONNECT_TIMEOUT_MS);
+            InputStream input = new BufferedInputStream(socket.getInputStream());
+            binary = binaryRequested && negotiateBinary(input);
+            if (binary) {
+                binaryIn = input;
+                binaryOut = new BufferedOutputStream(socket.getOutputStream());
+            } else {
+                out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+                in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            }
+            open = true;
+            
+            // Responses are read on their own thread so requests can be sent meanwhile
+            Thread readerThread = new Thread(this::readResponses, "dictionary-client-reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
+        
+        /**
+         * Sends the binary protocol handshake and reads the server's answer. A server
+         * that only speaks JSON answers with an error line, which is skipped.
+         * 
+         * @param input The buffered connection input
+         * @return true if the server accepted the binary protocol
+         * @throws IOException If the connection fails
+         */
+        private boolean negotiateBinary(InputStream input) throws IOException {
+            OutputStream output = socket.getOutputStream();
+            output.write(BinaryProtocol.handshake());
+            output.flush();
+            
+            int b = input.read();
+            if (b == (BinaryProtocol.MAGIC & 0xFF)) {
+                if (input.read() != BinaryProtocol.VERSION) {
+                    throw new IOException("Unsupported binary protocol version");
+                }
+                return true;
+            }
+            while (b != '\n') {
+                if (b < 0) {
+                    throw new IOException("Connection closed by server");
+                }
+                b = input.read();
+            }
+            return false;
+        }
+        
+        boolean isOpen() {
+            return open && socket != null && !socket.isClosed();
+        }
+        
+        /**
+         * Closes the connection, once, and retries or fails the requests waiting
+         * for a response
+         * 
+         * @param cause The reason the responses will not arrive
+         */
+        void close(Exception cause) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            open = false;
+            try {
+                // Close the socket first: it wakes the reader thread, which holds the reader's lock
+                if (socket != null) socket.close();
+                if (in != null) in.close();
+                if (out != null) out.close();
+                if (binaryOut != null) binaryOut.close();
+            } catch (IOException e) {
+                handleError("Error disconnecting from server: " + e.getMessage());
+            }
+            failPending(cause);
+            executor.shutdown();
+            
+            NearCache cache = nearCache;
+            if (subscribed && cache != null) {
+                // Invalidations stop with the connection, so the cache can no longer be trusted
+                subscribed = false;
+                cache.setActive(false);
+            }
+            connectionLost();
+        }
+        
+        /**
+         * Queues a request for the writer thread
+         * 
+         * @param call The request, with its ID, and its future
+         */
+        void send(Call call) {
+            outstanding.incrementAndGet();
+            try {
+                executor.submit(() -> write(call));
+            } catch (RejectedExecutionException e) {
+                // Closed since it was chosen
+                outstanding.decrementAndGet();
+                dispatch(call);
+            }
+        }
+        
+        private void write(Call call) {
+            Message request = call.request;
+            long requestId = request.getRequestId();
+            try {
+                if (call.future.isDone()) {
+                    // Timed out or cancelled while waiting to be written
+                    outstanding.decrementAndGet();
+                    return;
+                }
+                window.acquire();
+                call.connection = this;
+                pending.put(requestId, call);
+                if (call.future.isDone()) {
+                    // Completed while waiting for the window; release may have run before it was pending
+                    abandon(call);
+                    return;
+                }
+                if (!open) {
+                    // The connection was lost while waiting for the window; the
+                    // request was never sent, so another connection can take it
+                    if (pending.remove(requestId, call)) {
+                        window.release();
+                        outstanding.decrementAndGet();
+                        dispatch(call);
+                    }
+                    return;
+                }
+                if (call.timed) {
+                    // Sent as the time left rather than a deadline, since the clocks may differ
+                    long remaining = call.deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeOut(call);
+                        return;
+                    }
+                    request.setTimeoutMillis(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+                }
                 
-                // Read response
-                String jsonResponse = in.readLine();
-                if (jsonResponse == null) {
-                    connected = false;
-                    future.completeExceptionally(new IOException("Connection closed by server"));
+                if (binary) {
+                    binaryOut.write(BinaryProtocol.encode(request));
+                    binaryOut.flush();
                     return;
                 }
                 
-                // Parse response
-                Message response = gson.fromJson(jsonResponse, Message.class);
-                future.complete(response);
-            } catch (IOException e) {
-                connected = false;
-                handleError("Communication error: " + e.getMessage());
-                future.completeExceptionally(e);
+                // Convert request to JSON and send
+                String jsonRequest = gson.toJson(request);
+                out.println(jsonRequest);
+            } catch (InterruptedException e) {
+                outstanding.decrementAndGet();
+                call.future.completeExceptionally(e);
             } catch (Exception e) {
                 handleError("Error processing request: " + e.getMessage());
-                future.completeExceptionally(e);
+                if (pending.remove(requestId, call)) {
+                    window.release();
+                    outstanding.decrementAndGet();
+                    retryOrFail(call, e);
+                }
+                if (e instanceof IOException) {
+                    close(e);
+                }
             }
-        });
+        }
         
-        return future;
+        /**
+         * Forgets a request that completed without its response, freeing its place
+         * in the window; a response that arrives for it later is dropped
+         * 
+         * @param call The request and its future
+         */
+        void abandon(Call call) {
+            if (pending.remove(call.request.getRequestId(), call)) {
+                window.release();
+                outstanding.decrementAndGet();
+            }
+        }
+        
+        /**
+         * Reader thread: completes the pending request each response belongs to.
+         * A response without an ID (from a server that does not echo IDs, which
+         * answers in order) belongs to the oldest pending request, except pushed
+         * INVALIDATE messages, which go to the near cache.
+         */
+        private void readResponses() {
+            try {
+                while (true) {
+                    Message response;
+                    if (binary) {
+                        response = BinaryProtocol.readFrame(binaryIn);
+                        if (response == null) {
+                            break;
+                        }
+                    } else {
+                        String jsonResponse = in.readLine();
+                        if (jsonResponse == null) {
+                            break;
+                        }
+                        try {
+                            response = gson.fromJson(jsonResponse, Message.class);
+                        } catch (JsonSyntaxException e) {
+                            handleError("Error processing response: " + e.getMessage());
+                            continue;
+                        }
+                        if (response == null) {
+                            continue;
+                        }
+                    }
+                    
+                    NearCache cache = nearCache;
+                    if (response.getRequestId() == null
+                            && ProtocolConstants.OPERATION_INVALIDATE.equals(response.getOperation())) {
+                        if (cache != null) {
+                            cache.invalidate(response.getWords());
+                        }
+                        continue;
+                    }
+                    if (cache != null && ProtocolConstants.OPERATION_SUBSCRIBE.equals(response.getOperation())
+                            && ProtocolConstants.STATUS_SUCCESS.equals(response.getStatus())) {
+                        // Invalidations arrive on this connection from now on
+                        subscribed = true;
+                        cache.setActive(true);
+                    }
+
+                    Call call;
+                    if (response.getRequestId() != null) {
+                        call = pending.remove(response.getRequestId());
+                    } else {
+                        Map.Entry<Long, Call> oldest = pending.pollFirstEntry();
+                        call = oldest != null ? oldest.getValue() : null;
+                    }
+                    if (call != null) {
+                        window.release();
+                        outstanding.decrementAndGet();
+                        call.future.complete(response);
+                    }
+                }
+                if (open) {
+                    close(new IOException("Connection closed by server"));
+                }
+            } catch (IOException e) {
+                if (open) {
+                    handleError("Communication error: " + e.getMessage());
+                    close(e);
+                }
+            } catch (RuntimeException e) {
+                // Close rather than leave the connection open with nothing reading it
+                handleError("Error processing response: " + e);
+                close(new IOException("Unreadable response from server", e));
+            }
+        }
+        
+        /**
+         * Sends every request that is waiting for a response again on another
+         * connection if it may be repeated, and fails the others
+         * 
+         * @param cause The reason the responses will not arrive
+         */
+        private void failPending(Exception cause) {
+            Map.Entry<Long, Call> entry;
+            while ((entry = pending.pollFirstEntry()) != null) {
+                window.release();
+                outstanding.decrementAndGet();
+                retryOrFail(entry.getValue(), cause);
+            }
+        }
     }
 
     /**
@@ -244,4 +1425,4 @@ public class DictionaryClient {
             errorHandler.accept(errorMessage);
         }
     }
-} 
\ No newline at end of file
+} 
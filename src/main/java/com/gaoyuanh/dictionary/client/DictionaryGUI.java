@@ -7,35 +7,57 @@ import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Font;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
+import javax.swing.DefaultListModel;
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.MatteBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
+import com.gaoyuanh.dictionary.protocol.Message;
 import com.gaoyuanh.dictionary.protocol.ProtocolConstants;
 
 /**
  * Graphical User Interface for the Dictionary Client.
  * Redesigned with a header-body-footer structure for improved user experience.
+ * The search panel lists matching words while the user types: a prefix search
+ * is sent once typing pauses, and a search still in flight when the text
+ * changes again is cancelled rather than left to queue ahead of the new one.
  */
 public class DictionaryGUI extends JFrame {
+    // Pause in typing before the live search is sent, in milliseconds
+    private static final int LIVE_SEARCH_DELAY_MS = 200;
+    // Most words listed by the live search
+    private static final int LIVE_SEARCH_LIMIT = 50;
+    // Time a live search may take; a slower answer is out of date anyway
+    private static final long LIVE_SEARCH_TIMEOUT_MS = 2000;
+
     private DictionaryClient client;
     private JTextArea inputArea;
     private JTextArea resultArea;
@@ -50,6 +72,13 @@ public class DictionaryGUI extends JFrame {
     private JTextField serverField;
     private JTextField portField;
     private JButton connectButton;
+
+    // Live search components
+    private JTextField liveSearchField;
+    private JList<String> liveResultsList;
+    private Timer liveSearchTimer;
+    // The live search in flight, if any; only touched on the event dispatch thread
+    private CompletableFuture<Message> liveSearch;
     
     /**
      * Constructor initializes the GUI components with improved design
@@ -298,6 +327,8 @@ public class DictionaryGUI extends JFrame {
         inputPanel.setBackground(Color.WHITE);
         inputPanel.setBorder(new EmptyBorder(10, 0, 10, 0));
         
+        JPanel livePanel = createLiveSearchPanel();
+        
         JLabel promptLabel = new JLabel("Enter a word to search:");
         inputArea = new JTextArea(5, 20);
         inputArea.setLineWrap(true);
@@ -319,12 +350,144 @@ public class DictionaryGUI extends JFrame {
         buttonPanel.add(searchButton);
         
         // Assemble the panel
+        JPanel centerPanel = new JPanel(new BorderLayout());
+        centerPanel.setBackground(Color.WHITE);
+        centerPanel.add(livePanel, BorderLayout.NORTH);
+        centerPanel.add(inputPanel, BorderLayout.CENTER);
+        
         panel.add(titleLabel, BorderLayout.NORTH);
-        panel.add(inputPanel, BorderLayout.CENTER);
+        panel.add(centerPanel, BorderLayout.CENTER);
         panel.add(buttonPanel, BorderLayout.SOUTH);
         
         return panel;
     }
+
+    /**
+     * Creates the live search field and the list of words matching it. Selecting
+     * a word copies it to the search input; double-clicking it also searches for it.
+     * 
+     * @return The live search panel
+     */
+    private JPanel createLiveSearchPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(Color.WHITE);
+        panel.setBorder(new EmptyBorder(10, 0, 0, 0));
+        
+        JLabel promptLabel = new JLabel("Type to see matching words:");
+        liveSearchField = new JTextField();
+        
+        // Restarted by every keystroke, so it only fires once typing pauses; a
+        // search in flight is out of date as soon as the text changes
+        liveSearchTimer = new Timer(LIVE_SEARCH_DELAY_MS, e -> runLiveSearch());
+        liveSearchTimer.setRepeats(false);
+        liveSearchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                cancelLiveSearch();
+                liveSearchTimer.restart();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                cancelLiveSearch();
+                liveSearchTimer.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes do not change the text
+            }
+        });
+        
+        liveResultsList = new JList<>(new DefaultListModel<>());
+        liveResultsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        liveResultsList.setVisibleRowCount(6);
+        // A fixed cell size lets the list lay out without measuring every word
+        liveResultsList.setPrototypeCellValue("abcdefghijklmnopqrstuvwxyz");
+        liveResultsList.setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY));
+        liveResultsList.addListSelectionListener(e -> {
+            String selected = liveResultsList.getSelectedValue();
+            if (!e.getValueIsAdjusting() && selected != null) {
+                inputArea.setText(selected);
+            }
+        });
+        liveResultsList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && liveResultsList.getSelectedValue() != null) {
+                    searchWord();
+                }
+            }
+        });
+        
+        JPanel fieldPanel = new JPanel(new BorderLayout());
+        fieldPanel.setBackground(Color.WHITE);
+        fieldPanel.add(promptLabel, BorderLayout.NORTH);
+        fieldPanel.add(liveSearchField, BorderLayout.CENTER);
+        
+        panel.add(fieldPanel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(liveResultsList), BorderLayout.CENTER);
+        
+        return panel;
+    }
+
+    /**
+     * Sends a prefix search for the live search text, cancelling the previous one
+     * if it is still in flight. Runs on the event dispatch thread.
+     */
+    private void runLiveSearch() {
+        cancelLiveSearch();
+        String prefix = liveSearchField.getText().trim();
+        if (prefix.isEmpty() || client == null) {
+            showLiveResults(null);
+            return;
+        }
+        
+        CompletableFuture<Message> search = client.prefixSearch(prefix, LIVE_SEARCH_LIMIT, LIVE_SEARCH_TIMEOUT_MS);
+        liveSearch = search;
+        search.whenComplete((response, e) -> SwingUtilities.invokeLater(() -> {
+            if (liveSearch != search) {
+                return; // Superseded by a newer search
+            }
+            liveSearch = null;
+            if (response != null && ProtocolConstants.STATUS_SUCCESS.equals(response.getStatus())) {
+                showLiveResults(response.getWords());
+            } else if (response != null) {
+                showLiveResults(null);
+                appendToResultArea("Error: " + response.getErrorMessage());
+            } else if (!(e instanceof CancellationException)) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                handleError("Error listing matching words: " + cause.getMessage());
+            }
+        }));
+    }
+
+    /**
+     * Cancels the live search in flight, if any, so its place on the connection
+     * goes to the next one
+     */
+    private void cancelLiveSearch() {
+        if (liveSearch != null) {
+            liveSearch.cancel(false);
+            liveSearch = null;
+        }
+    }
+
+    /**
+     * Replaces the words in the live search list. A new model is set rather than
+     * the old one refilled, so the list is told of the change once.
+     * 
+     * @param words The matching words, or null to empty the list
+     */
+    private void showLiveResults(List<String> words) {
+        DefaultListModel<String> model = new DefaultListModel<>();
+        if (words != null) {
+            for (String word : words) {
+                model.addElement(word);
+            }
+        }
+        liveResultsList.setModel(model);
+    }
     
     /**
      * Creates the add word panel
@@ -639,6 +802,20 @@ public class DictionaryGUI extends JFrame {
         
         // Create new client instance
         client = new DictionaryClient(server, port, this::handleError);
+        client.setConnectionListener(available -> SwingUtilities.invokeLater(() -> {
+            if (client == null) {
+                return;
+            }
+            if (available) {
+                statusLabel.setText("Connected to " + server + ":" + port);
+                statusLabel.setForeground(new Color(0, 128, 0)); // Dark green
+                appendToResultArea("Reconnected to dictionary server at " + server + ":" + port);
+            } else {
+                // The client reconnects by itself and keeps requests until then
+                statusLabel.setText("Reconnecting to " + server + ":" + port + "...");
+                statusLabel.setForeground(new Color(200, 120, 0)); // Orange
+            }
+        }));
         
         // Connect to server
         boolean connected = client.connect();
@@ -665,6 +842,9 @@ public class DictionaryGUI extends JFrame {
      * Disconnects from the dictionary server
      */
     private void disconnectFromServer() {
+        liveSearchTimer.stop();
+        cancelLiveSearch();
+        showLiveResults(null);
         if (client != null) {
             client.disconnect();
             client = null;
@@ -900,15 +1080,8 @@ public class DictionaryGUI extends JFrame {
      * @param errorMessage The error message
      */
     private void handleError(String errorMessage) {
-        SwingUtilities.invokeLater(() -> {
-            appendToResultArea("Error: " + errorMessage);
-            
-            // If connection error, update the status
-            if (errorMessage.startsWith("Communication error") || 
-                errorMessage.startsWith("Connection closed")) {
-                disconnectFromServer();
-            }
-        });
+        // Lost connections are reported through the connection listener
+        SwingUtilities.invokeLater(() -> appendToResultArea("Error: " + errorMessage));
     }
     
     /**
@@ -0,0 +1,252 @@
+package com.gaoyuanh.dictionary.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.gaoyuanh.dictionary.protocol.Message;
+import com.gaoyuanh.dictionary.protocol.ProtocolConstants;
+
+/**
+ * Client-side cache of SEARCH responses, so a word looked up again is answered
+ * without a round trip. Bounded by a number of words, least recently used first
+ * out, and each response expires after a time to live.
+ * The cache is only used while the client has a connection subscribed to the
+ * server's invalidations: the server pushes every changed word, and the client
+ * drops it. A response whose request was sent before an invalidation arrived
+ * may already be stale, so it is not stored; until a push arrives a cached word
+ * can be stale for as long as the push takes, and never longer than the time to live.
+ */
+public final class NearCache {
+    // Defaults for DictionaryClient.enableNearCache
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    public static final long DEFAULT_TTL_MS = 60000;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    // In access order, least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // Guards the entries; not a monitor, so virtual threads do not pin their carriers
+    private final Lock lock = new ReentrantLock();
+
+    // Whether invalidations are being received; nothing is cached or served otherwise
+    private volatile boolean active;
+    // Incremented by every invalidation, so a fill that raced with one can be detected
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * A cached response
+     */
+    private static final class Entry {
+        final String status;
+        final String word;
+        final List<String> meanings;
+        final long expiresAt;
+        
+        Entry(Message response, long expiresAt) {
+            this.status = response.getStatus();
+            this.word = response.getWord();
+            this.meanings = response.getMeanings() == null ? null
+                    : Collections.unmodifiableList(new ArrayList<>(response.getMeanings()));
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Constructor for NearCache
+     * 
+     * @param maxEntries Most words kept
+     * @param ttlMillis Time a response may be served after it was received, in milliseconds
+     */
+    public NearCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = Math.max(0, ttlMillis) * 1_000_000L;
+    }
+
+    /**
+     * Gets a cached response for a word
+     * 
+     * @param word The word as the caller searched for it
+     * @return A new response message without a request ID, or null if the word is not cached
+     */
+    Message get(String word) {
+        if (!active) {
+            return null;
+        }
+        
+        String key = key(word);
+        Entry entry;
+        lock.lock();
+        try {
+            entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.expiresAt >= 0) {
+                entries.remove(key);
+                entry = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        
+        Message response = new Message(ProtocolConstants.OPERATION_SEARCH);
+        response.setStatus(entry.status);
+        // A missing word is echoed as it was searched for, like the server does
+        response.setWord(ProtocolConstants.STATUS_NOT_FOUND.equals(entry.status) ? word : entry.word);
+        response.setMeanings(entry.meanings);
+        return response;
+    }
+
+    /**
+     * Takes the invalidation count before a request is sent, to pass to {@link #put}
+     * 
+     * @return The stamp, or -1 if responses must not be cached
+     */
+    long startFill() {
+        return active ? invalidations.get() : -1;
+    }
+
+    /**
+     * Caches the response to a SEARCH, unless an invalidation arrived since its
+     * request was sent or the response is neither found nor not found
+     * 
+     * @param word The word as the caller searched for it
+     * @param response The response
+     * @param stamp The value {@link #startFill()} returned before the request was sent
+     */
+    void put(String word, Message response, long stamp) {
+        if (stamp < 0 || response.getWords() != null
+                || !(ProtocolConstants.STATUS_SUCCESS.equals(response.getStatus())
+                        || ProtocolConstants.STATUS_NOT_FOUND.equals(response.getStatus()))) {
+            return;
+        }
+        
+        Entry entry = new Entry(response, System.nanoTime() + ttlNanos);
+        lock.lock();
+        try {
+            // Checked under the lock, which invalidations take after counting
+            if (invalidations.get() != stamp) {
+                return;
+            }
+            entries.put(key(word), entry);
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries) {
+                eldest.next();
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops words that changed
+     * 
+     * @param words The normalized words, or null to drop everything
+     */
+    void invalidate(Collection<String> words) {
+        invalidations.incrementAndGet();
+        lock.lock();
+        try {
+            if (words == null) {
+                entries.clear();
+            } else {
+                for (String word : words) {
+                    entries.remove(word);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts or stops using the cache as invalidations start or stop arriving.
+     * Everything cached is dropped either way.
+     * 
+     * @param active true once the client is subscribed to invalidations
+     */
+    void setActive(boolean active) {
+        this.active = active;
+        invalidate(null);
+    }
+
+    /**
+     * Checks whether the cache is in use
+     * 
+     * @return true while the client receives invalidations
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Gets the number of searches answered from the cache
+     * 
+     * @return The hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of searches that were not cached
+     * 
+     * @return The miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of invalidations received or made locally
+     * 
+     * @return The invalidation count
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    /**
+     * Gets the number of cached words
+     * 
+     * @return The entry count
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the key of a word: lower case like the server's lookups, so every
+     * spelling of a word shares its entry and a pushed word matches it
+     */
+    private static String key(String word) {
+        return word.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public String toString() {
+        long total = hits.get() + misses.get();
+        return String.format("%d words, %d hits, %d misses (%.1f%% hit ratio), %d invalidations", size(),
+                hits.get(), misses.get(), total == 0 ? 0.0 : 100.0 * hits.get() / total, invalidations.get());
+    }
+}
@@ -0,0 +1,528 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact, memory-mapped binary dictionary snapshot.
+ * Opening a snapshot only maps the file; entries are decoded on demand, so a
+ * server can start serving a large dictionary without parsing it first.
+ * 
+ * File layout (big-endian):
+ * <pre>
+ * header   int magic, int version, int entryCount
+ * index    int recordOffset[entryCount], sorted by the UTF-8 bytes of the word
+ * records  short wordLength, word bytes, short meaningCount,
+ *          then per meaning: int meaningLength, meaning bytes
+ * </pre>
+ * Offsets are 32-bit, which limits a snapshot to 2 GB.
+ */
+public final class BinarySnapshot {
+    // File extension that selects the binary format when saving
+    public static final String FILE_EXTENSION = ".dsnap";
+
+    private static final int MAGIC = 0x44534E50; // "DSNP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+
+    /**
+     * Orders words by their UTF-8 bytes, matching the order of the index
+     */
+    static final Comparator<String> WORD_ORDER = BinarySnapshot::compareCodePoints;
+
+    private final MappedByteBuffer buffer;
+    private final int entryCount;
+    private final String filePath;
+
+    private BinarySnapshot(String filePath, MappedByteBuffer buffer, int entryCount) {
+        this.filePath = filePath;
+        this.buffer = buffer;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Checks whether a file starts with the binary snapshot magic number
+     * 
+     * @param filePath Path to the file
+     * @return true if the file is a binary snapshot
+     */
+    public static boolean isSnapshotFile(String filePath) {
+        File file = new File(filePath);
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return false;
+        }
+        
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Maps a snapshot file into memory
+     * 
+     * @param filePath Path to the snapshot file
+     * @return The opened snapshot
+     * @throws IOException If the file cannot be mapped or is not a valid snapshot
+     */
+    public static BinarySnapshot open(String filePath) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(filePath, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot larger than 2 GB: " + filePath);
+            }
+            
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a dictionary snapshot: " + filePath);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported snapshot version " + buffer.getInt(4) + ": " + filePath);
+            }
+            
+            int entryCount = buffer.getInt(8);
+            if (entryCount < 0 || HEADER_SIZE + (long) entryCount * 4 > buffer.capacity()) {
+                throw new IOException("Corrupt snapshot index: " + filePath);
+            }
+            return new BinarySnapshot(filePath, buffer, entryCount);
+        }
+    }
+
+    /**
+     * Gets the number of entries in the snapshot
+     * 
+     * @return The entry count
+     */
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * Gets the path of the mapped file
+     * 
+     * @return The snapshot file path
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Looks up a word directly in the mapped file
+     * 
+     * @param word The normalized word
+     * @return A freshly decoded entry, or null if the word is not in the snapshot
+     */
+    public WordEntry get(CharSequence word) {
+        int index = indexOf(word);
+        return index < 0 ? null : entryAt(index);
+    }
+
+    /**
+     * Checks whether a word is in the snapshot without decoding its meanings
+     * 
+     * @param word The normalized word
+     * @return true if the word is present
+     */
+    public boolean contains(String word) {
+        return indexOf(word) >= 0;
+    }
+
+    /**
+     * Iterates over all entries in word order, decoding each one lazily
+     * 
+     * @return Iterator over the entries
+     */
+    public Iterator<WordEntry> iterator() {
+        return new Iterator<WordEntry>() {
+            private int next = 0;
+            
+            @Override
+            public boolean hasNext() {
+                return next < entryCount;
+            }
+            
+            @Override
+            public WordEntry next() {
+                if (next >= entryCount) {
+                    throw new NoSuchElementException();
+                }
+                return entryAt(next++);
+            }
+        };
+    }
+
+    /**
+     * Iterates over the words that start with a prefix, in word order, without
+     * decoding their meanings. Matching words are contiguous in the index, so only
+     * the binary search and the returned words are read.
+     * 
+     * @param prefix The normalized prefix
+     * @return Iterator over the matching words
+     */
+    public Iterator<String> wordsWithPrefix(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        return words(lowerBound(key), key);
+    }
+
+    /**
+     * Iterates over the words at or after a start word, in word order, without
+     * decoding their meanings. Only the binary search and the returned words are read.
+     * 
+     * @param start The normalized start word
+     * @return Iterator over the words from the start word to the end of the index
+     */
+    public Iterator<String> wordsFrom(String start) {
+        return words(lowerBound(start.getBytes(StandardCharsets.UTF_8)), new byte[0]);
+    }
+
+    /**
+     * Binary searches the index for the first word that is not below a key
+     * 
+     * @return The index of that word, or the entry count if every word is below the key
+     */
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareWordAt(recordOffset(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+        
+    /**
+     * Iterates over the index from a position while the words start with a prefix
+     */
+    private Iterator<String> words(int first, byte[] key) {
+        return new Iterator<String>() {
+            private int next = first;
+            
+            @Override
+            public boolean hasNext() {
+                return next < entryCount && startsWith(recordOffset(next), key);
+            }
+            
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int offset = recordOffset(next++);
+                return decode(offset + 2, buffer.getShort(offset) & 0xFFFF);
+            }
+        };
+    }
+
+    /**
+     * Offers every word within the matcher's edit distance to it. The index is
+     * walked in order, reusing the rows of the prefix shared with the previous word;
+     * when a prefix is already too far from the target, the whole range of words
+     * starting with it is skipped with a binary search.
+     * 
+     * @param matcher Collects the matching words
+     */
+    void visitWithin(FuzzyMatcher matcher) {
+        int[][] rows = new int[16][];
+        rows[0] = matcher.firstRow();
+        String previous = "";
+        int validRows = 1;
+        int index = 0;
+        while (index < entryCount) {
+            int offset = recordOffset(index);
+            String word = decode(offset + 2, buffer.getShort(offset) & 0xFFFF);
+            if (rows.length <= word.length()) {
+                rows = Arrays.copyOf(rows, word.length() * 2);
+            }
+            
+            int common = Math.min(commonPrefixLength(previous, word), validRows - 1);
+            int length = common;
+            boolean reachable = true;
+            while (length < word.length() && reachable) {
+                rows[length + 1] = matcher.nextRow(rows[length], word.charAt(length), rows[length + 1]);
+                length++;
+                reachable = matcher.canMatch(rows[length]);
+            }
+            previous = word;
+            validRows = length + 1;
+            
+            if (reachable) {
+                matcher.offer(word, rows[length]);
+                index++;
+            } else {
+                index = endOfPrefix(index, word.substring(0, length).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Finds the first index after a word that does not start with its prefix
+     * 
+     * @param index Index of a word that starts with the prefix
+     * @param prefix UTF-8 bytes of the prefix
+     * @return Index of the first word past the prefix range
+     */
+    private int endOfPrefix(int index, byte[] prefix) {
+        int low = index + 1;
+        int high = entryCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (startsWith(recordOffset(mid), prefix)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary searches the index for a word, decoding the UTF-8 bytes in place
+     * 
+     * @param word The normalized word
+     * @return The index of the word, or -1 if absent
+     */
+    private int indexOf(CharSequence word) {
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareWordAt(recordOffset(mid), word);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int recordOffset(int index) {
+        return buffer.getInt(HEADER_SIZE + index * 4);
+    }
+
+    /**
+     * Compares the word of a record with a key, byte by byte as unsigned values
+     */
+    private int compareWordAt(int offset, byte[] key) {
+        int length = buffer.getShort(offset) & 0xFFFF;
+        int start = offset + 2;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Compares the word of a record with a key in code point order, which is the
+     * order of their UTF-8 bytes, without encoding the key
+     */
+    private int compareWordAt(int offset, CharSequence key) {
+        int position = offset + 2;
+        int end = position + (buffer.getShort(offset) & 0xFFFF);
+        int i = 0;
+        while (position < end && i < key.length()) {
+            int b = buffer.get(position++) & 0xFF;
+            int codePoint;
+            if (b < 0x80) {
+                codePoint = b;
+            } else if (b < 0xE0) {
+                codePoint = (b & 0x1F) << 6 | continuation(position++);
+            } else if (b < 0xF0) {
+                codePoint = (b & 0x0F) << 12 | continuation(position++) << 6 | continuation(position++);
+            } else {
+                codePoint = (b & 0x07) << 18 | continuation(position++) << 12 | continuation(position++) << 6
+                        | continuation(position++);
+            }
+            int keyCodePoint = Character.codePointAt(key, i);
+            if (codePoint != keyCodePoint) {
+                return codePoint - keyCodePoint;
+            }
+            i += Character.charCount(keyCodePoint);
+        }
+        return position < end ? 1 : i < key.length() ? -1 : 0;
+    }
+
+    private int continuation(int position) {
+        return buffer.get(position) & 0x3F;
+    }
+
+    /**
+     * Checks whether the word of a record starts with the bytes of a prefix
+     */
+    private boolean startsWith(int offset, byte[] prefix) {
+        int length = buffer.getShort(offset) & 0xFFFF;
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(offset + 2 + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the record at an index position
+     */
+    private WordEntry entryAt(int index) {
+        int offset = recordOffset(index);
+        int wordLength = buffer.getShort(offset) & 0xFFFF;
+        String word = decode(offset + 2, wordLength);
+        offset += 2 + wordLength;
+        
+        int meaningCount = buffer.getShort(offset) & 0xFFFF;
+        offset += 2;
+        List<String> meanings = new ArrayList<>(meaningCount);
+        for (int i = 0; i < meaningCount; i++) {
+            int length = buffer.getInt(offset);
+            meanings.add(decode(offset + 4, length));
+            offset += 4 + length;
+        }
+        return WordEntry.wrap(word, meanings);
+    }
+
+    /**
+     * Copies bytes out of the mapping with absolute reads, so lookups never
+     * touch the shared buffer position and are safe from any thread
+     */
+    private String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a snapshot file
+     * 
+     * @param filePath Path of the file to write
+     * @param count Number of entries
+     * @param entries All entries, sorted by {@link #WORD_ORDER}
+     * @throws IOException If the file cannot be written
+     */
+    static void write(String filePath, int count, Iterator<WordEntry> entries) throws IOException {
+        int[] offsets = new int[count];
+        long dataStart = HEADER_SIZE + (long) count * 4;
+        
+        try (RandomAccessFile raf = new RandomAccessFile(filePath, "rw");
+             FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            channel.position(dataStart);
+            
+            // Records first, remembering where each one starts
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                    1 << 16));
+            long position = dataStart;
+            int index = 0;
+            while (entries.hasNext() && index < count) {
+                WordEntry entry = entries.next();
+                if (position > Integer.MAX_VALUE) {
+                    throw new IOException("Snapshot larger than 2 GB: " + filePath);
+                }
+                offsets[index++] = (int) position;
+                position += writeRecord(out, entry);
+            }
+            out.flush();
+            if (index != count) {
+                throw new IOException("Expected " + count + " snapshot entries but got " + index);
+            }
+            
+            // Then the header and index in front of them
+            ByteBuffer header = ByteBuffer.allocate((int) dataStart);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count);
+            for (int offset : offsets) {
+                header.putInt(offset);
+            }
+            header.flip();
+            channel.position(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Writes one record and returns its size in bytes
+     */
+    private static int writeRecord(DataOutputStream out, WordEntry entry) throws IOException {
+        byte[] word = entry.getWord().getBytes(StandardCharsets.UTF_8);
+        List<String> meanings = entry.getMeanings();
+        if (word.length > 0xFFFF || meanings.size() > 0xFFFF) {
+            throw new IOException("Entry too large for snapshot: " + entry.getWord());
+        }
+        
+        out.writeShort(word.length);
+        out.write(word);
+        out.writeShort(meanings.size());
+        int size = 4 + word.length;
+        for (String meaning : meanings) {
+            byte[] bytes = meaning.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            size += 4 + bytes.length;
+        }
+        return size;
+    }
+
+    /**
+     * Compares two strings in code point order, which is the same as the order of
+     * their UTF-8 bytes, without encoding them. Surrogates are moved above the
+     * rest of the BMP, as UTF-16 code unit order would otherwise differ.
+     */
+    static int compareCodePoints(String a, String b) {
+        int common = Math.min(a.length(), b.length());
+        for (int i = 0; i < common; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                return charOrder(x) - charOrder(y);
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    /**
+     * Maps a UTF-16 unit to a key that sorts in code point order
+     */
+    static int charOrder(char c) {
+        return c < 0xD800 ? c : c >= 0xE000 ? c - 0x800 : c + 0x2000;
+    }
+}
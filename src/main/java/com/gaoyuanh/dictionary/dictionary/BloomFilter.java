@@ -0,0 +1,168 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter over the words of a binary snapshot, so lookups of absent words
+ * are answered without a binary search of the mapped file. Built once for a
+ * snapshot and never changed afterwards, as the snapshot itself is immutable;
+ * words removed from the dictionary are tombstones in the overlay map, which is
+ * checked first. Safe for concurrent readers once published.
+ */
+public final class BloomFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final int wordCount;
+    private final double targetFalsePositiveRate;
+
+    // Lookups the filter answered on its own
+    private final LongAdder rejected = new LongAdder();
+    // Lookups the filter let through for words that were not there
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * Builds a filter over a set of words
+     * 
+     * @param words The normalized words
+     * @param wordCount Number of words
+     * @param falsePositiveRate False positive rate to size for, between 0 and 1
+     */
+    BloomFilter(Iterator<String> words, int wordCount, double falsePositiveRate) {
+        // m = -n ln p / (ln 2)^2 and k = m / n ln 2
+        int n = Math.max(1, wordCount);
+        double optimalBits = -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.bitCount = Math.max(Long.SIZE, Math.min(1L << 32, (long) optimalBits));
+        this.bits = new long[(int) ((bitCount + Long.SIZE - 1) / Long.SIZE)];
+        this.hashCount = Math.max(1, Math.min(30, (int) Math.round((double) bitCount / n * Math.log(2))));
+        this.wordCount = wordCount;
+        this.targetFalsePositiveRate = falsePositiveRate;
+        
+        while (words.hasNext()) {
+            long hash = hash(words.next());
+            for (int i = 0; i < hashCount; i++) {
+                long position = position(hash, i);
+                bits[(int) (position >>> 6)] |= 1L << position;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a word may be in the set. Counts the words rejected.
+     * 
+     * @param word The normalized word, a String or a {@link LookupKey}
+     * @return false if the word is certainly absent
+     */
+    boolean mightContain(CharSequence word) {
+        long hash = hash(word);
+        for (int i = 0; i < hashCount; i++) {
+            long position = position(hash, i);
+            if ((bits[(int) (position >>> 6)] & (1L << position)) == 0) {
+                rejected.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records that a word the filter let through was not found
+     */
+    void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Gets the false positive rate the filter was sized for
+     * 
+     * @return The target rate
+     */
+    public double getTargetFalsePositiveRate() {
+        return targetFalsePositiveRate;
+    }
+
+    /**
+     * Estimates the false positive rate from the size of the filter:
+     * (1 - e^(-kn/m))^k
+     * 
+     * @return The expected share of absent words that pass the filter
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * wordCount / bitCount), hashCount);
+    }
+
+    /**
+     * Gets the measured false positive rate: the share of lookups of absent
+     * words that passed the filter
+     * 
+     * @return The observed rate, or 0 before the first lookup of an absent word
+     */
+    public double getObservedFalsePositiveRate() {
+        long passed = falsePositives.sum();
+        long total = passed + rejected.sum();
+        return total == 0 ? 0 : (double) passed / total;
+    }
+
+    /**
+     * Gets the number of lookups answered by the filter alone
+     * 
+     * @return The rejected count
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Gets the number of absent words that passed the filter
+     * 
+     * @return The false positive count
+     */
+    public long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * Gets the memory used by the bit array
+     * 
+     * @return The size in bytes
+     */
+    public long getMemoryBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d words, %d KB, %d hashes, expected FPR %.3f%% (target %.3f%%), "
+                + "observed FPR %.3f%%, %d misses rejected", wordCount, getMemoryBytes() / 1024, hashCount,
+                getExpectedFalsePositiveRate() * 100, targetFalsePositiveRate * 100,
+                getObservedFalsePositiveRate() * 100, getRejectedCount());
+    }
+
+    /**
+     * Spreads the String hash code of a word to 64 bits with the MurmurHash3
+     * finalizer, so both halves are well mixed for double hashing. Strings cache
+     * their hash code and a LookupKey computes it while folding case, so this
+     * does not read the characters again. Words with the same 32-bit hash code
+     * share their positions, which adds about n / 2^32 to the false positive rate.
+     */
+    private static long hash(CharSequence word) {
+        long h = word.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Gets the i-th bit position of a hash, mapping the combined 32-bit hash onto
+     * the bit count with a multiply and shift instead of a division
+     */
+    private long position(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return ((h1 + i * h2) & 0xFFFFFFFFL) * bitCount >>> 32;
+    }
+}
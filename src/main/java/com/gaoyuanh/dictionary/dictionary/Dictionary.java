@@ -1,112 +1,899 @@
 package com.gaoyuanh.dictionary.dictionary;
 
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
-import java.lang.reflect.Type;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 /**
  * Dictionary class that provides methods to query, add, remove, and update words.
- * Implements thread-safe operations using read-write locks.
- * Uses JSON format for file operations.
+ * Implements thread-safe operations with lock striping: lookups never lock, and a
+ * change to a word only locks the stripe that word hashes to, so operations on
+ * different words do not contend. Entries are replaced rather than modified in
+ * place, which lets readers share them without holding a lock or copying.
+ * Uses JSON format for file operations, with an optional append-only
+ * mutation log so that each change costs O(change) instead of a full rewrite.
+ * A memory-mapped {@link BinarySnapshot} can be used as the base instead: lookups
+ * are served from the mapping until a word is first changed, at which point the
+ * entry is copied into the in-memory map that overlays the snapshot.
+ * Batch writes lock the stripes of all their words once and log all their
+ * changes with one append.
+ * A Bloom filter of the snapshot words answers most lookups of absent words
+ * without searching the mapped file.
+ * The in-memory map is a ConcurrentHashMap or a persistent hash trie (see
+ * {@link Storage}); with the trie, saving and compacting capture the map in
+ * constant time instead of copying it while every writer waits.
  */
 public class Dictionary {
-    // Map word to its meanings
+    /**
+     * How the in-memory map of words is stored
+     */
+    public enum Storage {
+        // ConcurrentHashMap; capturing it for a save copies every entry
+        HASH_MAP,
+        // Persistent hash trie swapped with a compare-and-set; capturing it takes its current root
+        HASH_TRIE
+    }
+
+
+    // Suffix appended to the dictionary file path to name its mutation log
+    public static final String MUTATION_LOG_SUFFIX = ".log";
+    // Default number of log records after which compaction is due
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 10000;
+    // Number of entries loaded between two progress reports
+    private static final int PROGRESS_INTERVAL = 50000;
+    // Read buffer size for loading dictionary files
+    private static final int LOAD_BUFFER_SIZE = 1 << 16;
+    // Default number of lock stripes
+    public static final int DEFAULT_LOCK_STRIPES = 256;
+    // Default false positive rate of the snapshot word filter
+    public static final double DEFAULT_FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+    // Reusable lookup probe of each thread, so searches do not create a lower-cased String
+    private static final ThreadLocal<LookupKey> LOOKUP_KEYS = ThreadLocal.withInitial(LookupKey::new);
+
+    // Marks a snapshot word that has been removed from the dictionary
+    static final WordEntry TOMBSTONE = new WordEntry("", Collections.<String>emptyList());
+
+    // Map word to its meanings, overlaying the base snapshot if there is one
     private final Map<String, WordEntry> dictionary;
-    // Read-write lock for thread safety
-    private final ReadWriteLock lock;
+    // The same map when it is a hash trie, null otherwise
+    private final HashTrieMap<String, WordEntry> trie;
+    // Memory-mapped base snapshot, null when the dictionary was loaded from JSON
+    private volatile BinarySnapshot baseSnapshot;
+    // Filter of the base snapshot words, null without a snapshot or when disabled;
+    // always published before the snapshot it belongs to
+    private volatile BloomFilter snapshotFilter;
+    // False positive rate the snapshot filter is sized for, 0 when disabled
+    private volatile double filterFalsePositiveRate = DEFAULT_FILTER_FALSE_POSITIVE_RATE;
+    // Number of live words across the map and the base snapshot
+    private final AtomicInteger entryCount;
+    // Number of changes applied, used to detect changes made during a compaction
+    private final AtomicLong modCount;
+    // Per-word locks for writers; all stripes together block every writer
+    private final StripedLock locks;
+    // Ordered prefix index of the words in the map; base snapshot words are found in its sorted index
+    private final RadixTree wordIndex;
+    // Inverted index of meaning tokens, built on the first reverse search
+    private final MeaningIndex meaningIndex;
+    // Whether the meaning index is built and must be kept up to date
+    private volatile boolean meaningIndexReady;
     // Gson instance for JSON serialization/deserialization
     private final Gson gson;
+    // Write-ahead log of mutations, null when logging is disabled
+    private volatile MutationLog mutationLog;
+    // Number of log records that triggers compaction
+    private volatile long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    // Told about every change
+    private final List<DictionaryChangeListener> changeListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Constructor initializes an empty dictionary with thread-safe access
      */
     public Dictionary() {
-        this.dictionary = new HashMap<>();
-        this.lock = new ReentrantReadWriteLock();
+        this(DEFAULT_LOCK_STRIPES);
+    }
+
+    /**
+     * Constructor initializes an empty dictionary with a given number of lock stripes
+     * 
+     * @param lockStripes Number of writer lock stripes, rounded up to a power of two
+     */
+    public Dictionary(int lockStripes) {
+        this(lockStripes, Storage.HASH_MAP);
+    }
+
+    /**
+     * Constructor initializes an empty dictionary with a given number of lock
+     * stripes and storage for its in-memory map
+     * 
+     * @param lockStripes Number of writer lock stripes, rounded up to a power of two
+     * @param storage How the in-memory map is stored
+     */
+    public Dictionary(int lockStripes, Storage storage) {
+        this.trie = storage == Storage.HASH_TRIE ? new HashTrieMap<>() : null;
+        this.dictionary = trie != null ? trie : new ConcurrentHashMap<>();
+        this.entryCount = new AtomicInteger();
+        this.modCount = new AtomicLong();
+        this.locks = new StripedLock(lockStripes);
+        this.wordIndex = new RadixTree();
+        this.meaningIndex = new MeaningIndex();
         this.gson = new GsonBuilder().setPrettyPrinting().create();
     }
 
     /**
-     * Loads dictionary data from a JSON file
+     * Gets the mutation log path that belongs to a dictionary file
+     * 
+     * @param filePath Path to the JSON dictionary file
+     * @return Path to the mutation log
+     */
+    public static String mutationLogPath(String filePath) {
+        return filePath + MUTATION_LOG_SUFFIX;
+    }
+
+    /**
+     * Loads dictionary data from a JSON file and replays its mutation log, if any
      * 
      * @param filePath Path to the JSON dictionary file
      * @throws IOException If an error occurs while reading the file
      */
     public void loadFromFile(String filePath) throws IOException {
-        lock.writeLock().lock();
-        try (Reader reader = new FileReader(filePath)) {
-            // Define the type for deserializing a Map<String, WordEntry>
-            Type dictionaryType = new TypeToken<Map<String, WordEntry>>(){}.getType();
-            Map<String, WordEntry> loadedDictionary = gson.fromJson(reader, dictionaryType);
+        loadFromFile(filePath, null);
+    }
+
+    /**
+     * Loads dictionary data from a JSON file and replays its mutation log, if any.
+     * The file is streamed through a buffered channel and each entry is inserted
+     * into the live map as soon as it is parsed, so peak memory stays close to the
+     * size of the final dictionary instead of holding a second full copy.
+     * 
+     * @param filePath Path to the JSON dictionary file
+     * @param progressListener Receives periodic progress updates, may be null
+     * @throws IOException If an error occurs while reading the file
+     */
+    public void loadFromFile(String filePath, LoadProgressListener progressListener) throws IOException {
+        if (BinarySnapshot.isSnapshotFile(filePath)) {
+            loadFromSnapshot(filePath);
+            return;
+        }
+        
+        locks.lockAll();
+        try (FileChannel channel = openForReading(filePath);
+             JsonReader reader = new JsonReader(new BufferedReader(
+                     new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8),
+                     LOAD_BUFFER_SIZE))) {
+            long totalBytes = channel.size();
+            long startTime = System.nanoTime();
             
-            if (loadedDictionary != null) {
-                dictionary.clear();
-                dictionary.putAll(loadedDictionary);
-                System.out.println("Loaded " + dictionary.size() + " entries from JSON file: " + filePath);
-            } else {
+            if (!hasContent(reader)) {
                 System.out.println("No entries found in JSON file or invalid format: " + filePath);
+            } else {
+                dictionary.clear();
+                wordIndex.clear();
+                resetMeaningIndex();
+                baseSnapshot = null;
+                snapshotFilter = null;
+                entryCount.set(0);
+                try {
+                    long loaded = streamEntries(reader, channel, totalBytes, startTime, progressListener);
+                    double rate = entriesPerSecond(loaded, startTime);
+                    if (progressListener != null) {
+                        progressListener.onProgress(loaded, totalBytes, totalBytes, rate);
+                    }
+                    System.out.println("Loaded " + entryCount.get() + " entries from JSON file: " + filePath
+                            + " in " + (System.nanoTime() - startTime) / 1000000 + " ms ("
+                            + Math.round(rate) + " entries/s)");
+                } catch (IOException | JsonParseException | IllegalStateException e) {
+                    // Never leave a partially loaded dictionary behind
+                    dictionary.clear();
+                    wordIndex.clear();
+                    entryCount.set(0);
+                    throw new IOException("Invalid dictionary file " + filePath + ": " + e.getMessage(), e);
+                }
             }
+            
+            replayMutationLog(filePath);
+            notifyCleared();
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    /**
+     * Maps a binary snapshot as the dictionary base and replays its mutation log.
+     * No entry is decoded up front; only the words are read, to build the filter
+     * that answers lookups of absent words.
+     * 
+     * @param filePath Path to the binary snapshot file
+     * @throws IOException If the snapshot cannot be mapped
+     */
+    private void loadFromSnapshot(String filePath) throws IOException {
+        locks.lockAll();
+        try {
+            long startTime = System.nanoTime();
+            BinarySnapshot snapshot = BinarySnapshot.open(filePath);
+            BloomFilter filter = buildFilter(snapshot);
+            dictionary.clear();
+            wordIndex.clear();
+            resetMeaningIndex();
+            snapshotFilter = filter;
+            baseSnapshot = snapshot;
+            entryCount.set(snapshot.size());
+            System.out.println("Mapped " + snapshot.size() + " entries from binary snapshot: " + filePath
+                    + " in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+            
+            replayMutationLog(filePath);
+            notifyCleared();
         } finally {
-            lock.writeLock().unlock();
+            locks.unlockAll();
+        }
+    }
+
+    /**
+     * Replays the mutation log that belongs to a dictionary file.
+     * Must be called with all lock stripes held.
+     * 
+     * @param filePath Path to the dictionary file
+     * @throws IOException If the log cannot be read
+     */
+    private void replayMutationLog(String filePath) throws IOException {
+        // A log rotated by an interrupted compaction comes before the current one
+        String logPath = mutationLogPath(filePath);
+        int replayed = MutationLog.replay(MutationLog.rotatedPath(logPath), this::applyRecord)
+                + MutationLog.replay(logPath, this::applyRecord);
+        if (replayed > 0) {
+            System.out.println("Replayed " + replayed + " mutation log records, dictionary now has "
+                    + entryCount.get() + " entries");
+        }
+    }
+
+    /**
+     * Opens a file channel for reading, with the same error text as FileReader
+     * 
+     * @param filePath Path to the file
+     * @return The open channel
+     * @throws IOException If the file cannot be opened
+     */
+    private static FileChannel openForReading(String filePath) throws IOException {
+        try {
+            return FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new IOException(filePath + " (No such file or directory)", e);
+        }
+    }
+
+    /**
+     * Checks whether the reader is positioned before a top-level JSON object
+     * 
+     * @param reader The JSON reader
+     * @return true if there is an object to read, false for an empty document or null
+     * @throws IOException If the document is not valid JSON
+     */
+    private static boolean hasContent(JsonReader reader) throws IOException {
+        try {
+            JsonToken token = reader.peek();
+            if (token == JsonToken.NULL) {
+                return false;
+            }
+            return token == JsonToken.BEGIN_OBJECT;
+        } catch (EOFException e) {
+            return false;
         }
     }
 
     /**
-     * Saves the dictionary to a JSON file
+     * Reads the top-level object entry by entry and inserts each word into the map.
+     * Must be called with all lock stripes held.
+     * 
+     * @param reader JSON reader positioned at the top-level object
+     * @param channel Channel underneath the reader, used to measure progress
+     * @param totalBytes Size of the file in bytes
+     * @param startTime Load start time from System.nanoTime()
+     * @param progressListener Receives periodic progress updates, may be null
+     * @return Number of entries inserted
+     * @throws IOException If the file cannot be read or is malformed
+     */
+    private long streamEntries(JsonReader reader, FileChannel channel, long totalBytes, long startTime,
+                               LoadProgressListener progressListener) throws IOException {
+        long loaded = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            WordEntry entry = readEntry(reader, key);
+            if (entry != null) {
+                if (dictionary.put(key, entry) == null) {
+                    entryCount.incrementAndGet();
+                    wordIndex.add(key);
+                }
+                loaded++;
+                
+                if (progressListener != null && loaded % PROGRESS_INTERVAL == 0) {
+                    progressListener.onProgress(loaded, channel.position(), totalBytes,
+                            entriesPerSecond(loaded, startTime));
+                }
+            }
+        }
+        reader.endObject();
+        return loaded;
+    }
+
+    /**
+     * Reads one {"word": ..., "meanings": [...]} object
+     * 
+     * @param reader JSON reader positioned at the entry value
+     * @param key The map key the entry is stored under
+     * @return The entry, or null if the value is JSON null
+     * @throws IOException If the entry is malformed
+     */
+    private static WordEntry readEntry(JsonReader reader, String key) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        
+        String word = key;
+        List<String> meanings = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if ("word".equals(field) && reader.peek() == JsonToken.STRING) {
+                word = reader.nextString();
+            } else if ("meanings".equals(field) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    meanings.add(reader.nextString());
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return WordEntry.wrap(word, meanings);
+    }
+
+    /**
+     * Computes the average load rate
+     * 
+     * @param entries Number of entries loaded
+     * @param startTime Load start time from System.nanoTime()
+     * @return Entries per second
+     */
+    private static double entriesPerSecond(long entries, long startTime) {
+        long elapsed = Math.max(1, System.nanoTime() - startTime);
+        return entries * 1e9 / elapsed;
+    }
+
+    /**
+     * Saves the dictionary to a JSON file, or to a binary snapshot if the path
+     * ends with {@link BinarySnapshot#FILE_EXTENSION}.
+     * Only capturing the point-in-time view holds the lock; serializing and writing
+     * it happen afterwards, so writers are never blocked by disk I/O. The file is
+     * published atomically with a rename.
      * 
      * @param filePath Path to save the JSON dictionary file
      * @throws IOException If an error occurs while writing to the file
      */
     public void saveToFile(String filePath) throws IOException {
-        lock.readLock().lock();
-        try (Writer writer = new FileWriter(filePath)) {
-            gson.toJson(dictionary, writer);
-            System.out.println("Saved " + dictionary.size() + " entries to JSON file: " + filePath);
+        DictionarySnapshot snapshot;
+        locks.lockAll();
+        try {
+            snapshot = captureSnapshot();
         } finally {
-            lock.readLock().unlock();
+            locks.unlockAll();
         }
+        
+        snapshot.writeTo(filePath, gson);
+        System.out.println("Saved " + snapshot.size() + " entries to "
+                + (filePath.endsWith(BinarySnapshot.FILE_EXTENSION) ? "binary snapshot: " : "JSON file: ") + filePath);
     }
 
     /**
-     * Returns the number of words in the dictionary
+     * Captures a consistent view of the dictionary. Entries are never modified in
+     * place, so copying the map references is enough, and a hash trie is not even
+     * copied: its current version is immutable. The base snapshot is immutable
+     * and shared. Must be called with all lock stripes held.
      * 
-     * @return The number of entries in the dictionary
+     * @return The captured view
      */
-    public int size() {
-        lock.readLock().lock();
+    private DictionarySnapshot captureSnapshot() {
+        Map<String, WordEntry> entries = trie != null ? trie.snapshot() : new HashMap<>(dictionary);
+        return new DictionarySnapshot(entries, baseSnapshot, entryCount.get());
+    }
+
+    /**
+     * Starts appending every mutation to the log next to the dictionary file.
+     * Each record is forced to disk before its mutation is applied.
+     * 
+     * @param filePath Path to the JSON dictionary file
+     * @throws IOException If the log cannot be opened
+     */
+    public void openMutationLog(String filePath) throws IOException {
+        openMutationLog(filePath, true);
+    }
+
+    /**
+     * Starts appending every mutation to the log next to the dictionary file.
+     * 
+     * @param filePath Path to the JSON dictionary file
+     * @param syncOnAppend true to force each record to disk before applying it, false
+     *                     to only flush it to the OS and leave syncing to {@link #syncMutationLog()}
+     * @throws IOException If the log cannot be opened
+     */
+    public void openMutationLog(String filePath, boolean syncOnAppend) throws IOException {
+        locks.lockAll();
         try {
-            return dictionary.size();
+            closeMutationLog();
+            mutationLog = new MutationLog(mutationLogPath(filePath), syncOnAppend);
         } finally {
-            lock.readLock().unlock();
+            locks.unlockAll();
+        }
+    }
+
+    /**
+     * Forces every mutation logged so far to disk, committing them as one group
+     * 
+     * @throws IOException If the sync fails
+     */
+    public void syncMutationLog() throws IOException {
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.sync();
         }
     }
 
     /**
-     * Searches for a word in the dictionary
+     * Stops logging mutations and closes the log file
+     * 
+     * @throws IOException If the log cannot be closed
+     */
+    public void closeMutationLog() throws IOException {
+        locks.lockAll();
+        try {
+            if (mutationLog != null) {
+                mutationLog.close();
+                mutationLog = null;
+            }
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    /**
+     * Checks whether a mutation log is attached
+     * 
+     * @return true if mutations are being logged
+     */
+    public boolean isMutationLogOpen() {
+        return mutationLog != null;
+    }
+
+    /**
+     * Sets the number of log records after which compaction is due
+     * 
+     * @param compactionThreshold The record count threshold, at least 1
+     */
+    public void setCompactionThreshold(long compactionThreshold) {
+        this.compactionThreshold = Math.max(1, compactionThreshold);
+    }
+
+    /**
+     * Checks whether the mutation log has grown past the compaction threshold
+     * 
+     * @return true if {@link #compact(String)} should be called
+     */
+    public boolean needsCompaction() {
+        MutationLog log = mutationLog;
+        return log != null && log.getRecordCount() >= compactionThreshold;
+    }
+
+    /**
+     * Writes a full snapshot to the dictionary file and discards the mutation log.
+     * The view is captured and the log rotated together, so every record is either
+     * in the snapshot or in the new log; writers are only blocked for the capture.
+     * The rotated log is deleted once the snapshot has been published.
+     * 
+     * @param filePath Path to the JSON dictionary file
+     * @throws IOException If the snapshot cannot be written
+     */
+    public void compact(String filePath) throws IOException {
+        DictionarySnapshot snapshot;
+        String rotatedLog = null;
+        long capturedModCount;
+        locks.lockAll();
+        try {
+            snapshot = captureSnapshot();
+            capturedModCount = modCount.get();
+            if (mutationLog != null) {
+                rotatedLog = mutationLog.rotate();
+            }
+        } finally {
+            locks.unlockAll();
+        }
+        
+        snapshot.writeTo(filePath, gson);
+        System.out.println("Compacted " + snapshot.size() + " entries into: " + filePath);
+        if (rotatedLog != null) {
+            Files.deleteIfExists(Paths.get(rotatedLog));
+        }
+        
+        if (filePath.endsWith(BinarySnapshot.FILE_EXTENSION)) {
+            // Serve from the new snapshot and drop the copied entries, unless
+            // something changed after the capture and is only in the map.
+            // The base is swapped first so lock-free readers never miss a word.
+            locks.lockAll();
+            try {
+                if (modCount.get() == capturedModCount) {
+                    BinarySnapshot base = BinarySnapshot.open(filePath);
+                    // The new filter covers every live word, so it is also valid with the old base
+                    snapshotFilter = buildFilter(base);
+                    baseSnapshot = base;
+                    dictionary.clear();
+                    wordIndex.clear();
+                }
+            } finally {
+                locks.unlockAll();
+            }
+        }
+    }
+
+    /**
+     * Gets how the in-memory map of words is stored
+     * 
+     * @return The storage
+     */
+    public Storage getStorage() {
+        return trie != null ? Storage.HASH_TRIE : Storage.HASH_MAP;
+    }
+
+    /**
+     * Adds a listener told about every change to the dictionary's contents
+     * 
+     * @param changeListener The listener
+     */
+    public void addChangeListener(DictionaryChangeListener changeListener) {
+        changeListeners.add(changeListener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addChangeListener}
+     * 
+     * @param changeListener The listener
+     */
+    public void removeChangeListener(DictionaryChangeListener changeListener) {
+        changeListeners.remove(changeListener);
+    }
+
+    /**
+     * Sets the false positive rate of the filter that answers lookups of absent
+     * words without searching the base snapshot, and rebuilds the filter
+     * 
+     * @param falsePositiveRate The rate, between 0 and 1, or 0 to turn the filter off
+     */
+    public void setSnapshotFilterFalsePositiveRate(double falsePositiveRate) {
+        if (falsePositiveRate < 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be in [0, 1): " + falsePositiveRate);
+        }
+        locks.lockAll();
+        try {
+            filterFalsePositiveRate = falsePositiveRate;
+            BinarySnapshot base = baseSnapshot;
+            snapshotFilter = base == null ? null : buildFilter(base);
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    /**
+     * Gets the filter of the base snapshot words, for its false positive rate
+     * 
+     * @return The filter, or null if there is no base snapshot or the filter is off
+     */
+    public BloomFilter getSnapshotFilter() {
+        return snapshotFilter;
+    }
+
+    /**
+     * Returns the number of words in the dictionary
+     * 
+     * @return The number of entries in the dictionary
+     */
+    public int size() {
+        return entryCount.get();
+    }
+
+    /**
+     * Searches for a word in the dictionary. Case is folded into a reused probe
+     * key, so the lookup itself does not allocate.
      * 
-     * @param word The word to search for
+     * @param word The word to search for, in any case
      * @return The WordEntry if found, null otherwise
      */
-    public WordEntry search(String word) {
-        lock.readLock().lock();
+    public WordEntry search(CharSequence word) {
+        return lookup(LOOKUP_KEYS.get().set(word));
+    }
+
+    /**
+     * Normalizes a word for use as a key: lower case, independently of the
+     * default locale, and without surrounding whitespace
+     * 
+     * @param word The word
+     * @return The normalized word
+     */
+    static String normalize(String word) {
+        return word.toLowerCase(Locale.ROOT).trim();
+    }
+
+    /**
+     * Searches for several words at once
+     * 
+     * @param words The words to search for
+     * @return The entry for each word, in the same order, null where a word is not found
+     */
+    public List<WordEntry> searchAll(List<String> words) {
+        List<WordEntry> entries = new ArrayList<>(words.size());
+        for (String word : words) {
+            entries.add(word == null ? null : search(word));
+        }
+        return entries;
+    }
+
+    /**
+     * Finds words that start with a prefix, for autocomplete.
+     * The cost depends on the prefix length and the limit, not on the dictionary size.
+     * 
+     * @param prefix The prefix to search for
+     * @param limit Maximum number of words to return
+     * @return Matching words in code point order, at most limit of them
+     */
+    public List<String> prefixSearch(String prefix, int limit) {
+        if (prefix == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        
+        String normalizedPrefix = prefix.toLowerCase(Locale.ROOT);
+        // Read the index before the base: compaction publishes the new base first
+        List<String> indexed = wordIndex.wordsWithPrefix(normalizedPrefix, limit);
+        BinarySnapshot base = baseSnapshot;
+        if (base == null) {
+            return indexed;
+        }
+        return merge(indexed, base.wordsWithPrefix(normalizedPrefix), limit);
+    }
+        
+    /**
+     * Lists the entries in a range of words, in code point order, for paging
+     * through the dictionary. Each call reads the ordered word indexes afresh and
+     * holds no lock, so a caller resumes with the next start word and no state is
+     * kept between pages; words changed between two pages are seen as they are
+     * when their page is read.
+     * 
+     * @param startWord The first word of the range, or null to start at the beginning
+     * @param endWord The word that ends the range, excluded, or null for no end
+     * @param limit Maximum number of entries to return
+     * @return The entries from the start word on, at most limit of them
+     */
+    public List<WordEntry> scan(String startWord, String endWord, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        
+        String start = startWord == null ? "" : startWord.toLowerCase(Locale.ROOT);
+        String end = endWord == null ? null : endWord.toLowerCase(Locale.ROOT);
+        List<WordEntry> entries = new ArrayList<>(Math.min(limit, 16));
+        while (entries.size() < limit) {
+            int wanted = limit - entries.size();
+            List<String> words = wordsFrom(start, wanted);
+            for (String word : words) {
+                if (end != null && BinarySnapshot.WORD_ORDER.compare(word, end) >= 0) {
+                    return entries;
+                }
+                // A word removed since the index was read is left out
+                WordEntry entry = lookup(word);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+            if (words.size() < wanted) {
+                break;
+            }
+            // The smallest string after the last word, to read the words removed ones left room for
+            start = words.get(words.size() - 1) + '\u0000';
+        }
+        return entries;
+    }
+
+    /**
+     * Finds the live words at or after a start word, in code point order
+     * 
+     * @param start The normalized start word
+     * @param limit Maximum number of words to return
+     * @return The words, at most limit of them
+     */
+    private List<String> wordsFrom(String start, int limit) {
+        // Read the index before the base: compaction publishes the new base first
+        List<String> indexed = wordIndex.wordsFrom(start, limit);
+        BinarySnapshot base = baseSnapshot;
+        if (base == null) {
+            return indexed;
+        }
+        return merge(indexed, base.wordsFrom(start), limit);
+    }
+
+    /**
+     * Merges the sorted words of the map index with sorted base snapshot words,
+     * dropping removed base words and duplicates
+     * 
+     * @param indexed Words from the word index
+     * @param baseWords Iterator over base snapshot words
+     * @param limit Maximum number of words to return
+     * @return The merged words in code point order, at most limit of them
+     */
+    private List<String> merge(List<String> indexed, Iterator<String> baseWords, int limit) {
+        List<String> words = new ArrayList<>(Math.min(limit, 16));
+        String nextBase = nextLiveWord(baseWords);
+        int next = 0;
+        while (words.size() < limit && (next < indexed.size() || nextBase != null)) {
+            int cmp = next == indexed.size() ? 1 : nextBase == null ? -1
+                    : BinarySnapshot.WORD_ORDER.compare(indexed.get(next), nextBase);
+            if (cmp <= 0) {
+                words.add(indexed.get(next++));
+            } else {
+                words.add(nextBase);
+            }
+            if (cmp >= 0) {
+                nextBase = nextLiveWord(baseWords);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Finds the words closest to a word by edit distance, for "did you mean" suggestions.
+     * Only words whose prefixes stay within the distance are visited, not every word.
+     * 
+     * @param word The word to match
+     * @param maxDistance Maximum number of single-character edits
+     * @param limit Maximum number of words to return
+     * @return Matching words, closest first, at most limit of them
+     */
+    public List<String> fuzzySearch(String word, int maxDistance, int limit) {
+        if (word == null || maxDistance < 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+        
+        FuzzyMatcher matcher = new FuzzyMatcher(word.toLowerCase(Locale.ROOT), maxDistance, limit,
+                candidate -> dictionary.get(candidate) != TOMBSTONE);
+        // Read the index before the base: compaction publishes the new base first
+        wordIndex.visitWithin(matcher);
+        BinarySnapshot base = baseSnapshot;
+        if (base != null) {
+            base.visitWithin(matcher);
+        }
+        return matcher.results();
+    }
+
+    /**
+     * Finds words by their meanings. Every token (run of letters and digits) of the
+     * query must appear in some meaning of a word for it to match.
+     * The index is built on the first call, which blocks changes while it runs.
+     * 
+     * @param query The words to look for in meanings
+     * @param limit Maximum number of words to return
+     * @return Matching words in code point order, at most limit of them
+     */
+    public List<String> reverseSearch(String query, int limit) {
+        if (query == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        
+        if (!meaningIndexReady) {
+            buildMeaningIndex();
+        }
+        return meaningIndex.search(query, limit);
+    }
+
+    /**
+     * Indexes the meanings of every live word.
+     * The index is built lazily, so loading a large dictionary or mapping a snapshot
+     * does not pay for it unless reverse search is used.
+     */
+    private void buildMeaningIndex() {
+        locks.lockAll();
         try {
-            return dictionary.get(word.toLowerCase());
+            if (meaningIndexReady) {
+                return;
+            }
+            
+            long startTime = System.nanoTime();
+            long textLength = 0;
+            meaningIndex.clear();
+            for (Map.Entry<String, WordEntry> entry : dictionary.entrySet()) {
+                if (entry.getValue() != TOMBSTONE) {
+                    meaningIndex.add(entry.getKey(), entry.getValue().getMeanings());
+                    textLength += textLength(entry.getValue().getMeanings());
+                }
+            }
+            BinarySnapshot base = baseSnapshot;
+            if (base != null) {
+                Iterator<WordEntry> baseEntries = base.iterator();
+                while (baseEntries.hasNext()) {
+                    WordEntry entry = baseEntries.next();
+                    if (!dictionary.containsKey(entry.getWord())) {
+                        meaningIndex.add(entry.getWord(), entry.getMeanings());
+                        textLength += textLength(entry.getMeanings());
+                    }
+                }
+            }
+            meaningIndexReady = true;
+            System.out.println("Built meaning index for " + entryCount.get() + " entries in "
+                    + (System.nanoTime() - startTime) / 1000000 + " ms: " + meaningIndex.tokenCount()
+                    + " tokens, " + meaningIndex.postingBytes() / 1024 + " KB of postings for "
+                    + textLength / 1024 + " KB of meaning text");
         } finally {
-            lock.readLock().unlock();
+            locks.unlockAll();
+        }
+    }
+
+    private static long textLength(List<String> meanings) {
+        long length = 0;
+        for (String meaning : meanings) {
+            length += meaning.length();
         }
+        return length;
+    }
+
+    /**
+     * Drops the meaning index so it is rebuilt on the next reverse search.
+     * Must be called with all lock stripes held.
+     */
+    private void resetMeaningIndex() {
+        meaningIndexReady = false;
+        meaningIndex.clear();
+    }
+
+    /**
+     * Skips base snapshot words that have been removed
+     * 
+     * @param baseWords Iterator over base snapshot words
+     * @return The next word that is still live, or null if there is none
+     */
+    private String nextLiveWord(Iterator<String> baseWords) {
+        while (baseWords.hasNext()) {
+            String word = baseWords.next();
+            if (dictionary.get(word) != TOMBSTONE) {
+                return word;
+            }
+        }
+        return null;
     }
 
     /**
@@ -121,18 +908,21 @@ public class Dictionary {
             return false;
         }
         
-        String normalizedWord = word.toLowerCase().trim();
+        String normalizedWord = normalize(word);
         
-        lock.writeLock().lock();
+        Lock lock = locks.lockFor(normalizedWord);
+        lock.lock();
         try {
-            if (dictionary.containsKey(normalizedWord)) {
+            if (lookup(normalizedWord) != null) {
                 return false;
             }
             
-            dictionary.put(normalizedWord, new WordEntry(normalizedWord, new ArrayList<>(meanings)));
-            return true;
+            MutationLog.Record record = new MutationLog.Record(MutationLog.OP_ADD, normalizedWord);
+            record.meanings = new ArrayList<>(meanings);
+            logMutation(record);
+            return applyRecord(record);
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
@@ -147,13 +937,20 @@ public class Dictionary {
             return false;
         }
         
-        String normalizedWord = word.toLowerCase().trim();
+        String normalizedWord = normalize(word);
         
-        lock.writeLock().lock();
+        Lock lock = locks.lockFor(normalizedWord);
+        lock.lock();
         try {
-            return dictionary.remove(normalizedWord) != null;
+            if (lookup(normalizedWord) == null) {
+                return false;
+            }
+            
+            MutationLog.Record record = new MutationLog.Record(MutationLog.OP_REMOVE, normalizedWord);
+            logMutation(record);
+            return applyRecord(record);
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
@@ -169,12 +966,13 @@ public class Dictionary {
             return false;
         }
         
-        String normalizedWord = word.toLowerCase().trim();
+        String normalizedWord = normalize(word);
         String normalizedMeaning = newMeaning.trim();
         
-        lock.writeLock().lock();
+        Lock lock = locks.lockFor(normalizedWord);
+        lock.lock();
         try {
-            WordEntry entry = dictionary.get(normalizedWord);
+            WordEntry entry = lookup(normalizedWord);
             if (entry == null) {
                 return false;
             }
@@ -183,10 +981,12 @@ public class Dictionary {
                 return false;
             }
             
-            entry.addMeaning(normalizedMeaning);
-            return true;
+            MutationLog.Record record = new MutationLog.Record(MutationLog.OP_ADD_MEANING, normalizedWord);
+            record.newMeaning = normalizedMeaning;
+            logMutation(record);
+            return applyRecord(record);
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
@@ -205,7 +1005,7 @@ public class Dictionary {
             return false;
         }
         
-        String normalizedWord = word.toLowerCase().trim();
+        String normalizedWord = normalize(word);
         String normalizedOldMeaning = oldMeaning.trim();
         String normalizedNewMeaning = newMeaning.trim();
         
@@ -213,28 +1013,352 @@ public class Dictionary {
             return true; // No change needed
         }
         
-        lock.writeLock().lock();
+        Lock lock = locks.lockFor(normalizedWord);
+        lock.lock();
         try {
-            WordEntry entry = dictionary.get(normalizedWord);
-            if (entry == null) {
+            WordEntry entry = lookup(normalizedWord);
+            if (entry == null || !entry.getMeanings().contains(normalizedOldMeaning)) {
                 return false;
             }
             
-            return entry.updateMeaning(normalizedOldMeaning, normalizedNewMeaning);
+            MutationLog.Record record = new MutationLog.Record(MutationLog.OP_UPDATE_MEANING, normalizedWord);
+            record.oldMeaning = normalizedOldMeaning;
+            record.newMeaning = normalizedNewMeaning;
+            logMutation(record);
+            return applyRecord(record);
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
     }
     
+    /**
+     * Adds several words under one acquisition of their lock stripes, logging all the
+     * additions with one append. A word that is already present, or that appears
+     * earlier in the batch, is not added.
+     * 
+     * @param entries The words to add with their meanings
+     * @return For each entry, in order, true if the word was added
+     */
+    public boolean[] addAll(List<WordEntry> entries) {
+        boolean[] added = new boolean[entries.size()];
+        List<String> words = new ArrayList<>(entries.size());
+        for (WordEntry entry : entries) {
+            boolean valid = entry != null && entry.getWord() != null && !entry.getWord().trim().isEmpty()
+                    && !entry.getMeanings().isEmpty();
+            words.add(valid ? normalize(entry.getWord()) : null);
+        }
+        
+        int[] stripes = locks.lockStripesFor(words);
+        try {
+            List<MutationLog.Record> records = new ArrayList<>();
+            Set<String> batchWords = new HashSet<>();
+            for (int i = 0; i < words.size(); i++) {
+                String word = words.get(i);
+                if (word == null || lookup(word) != null || !batchWords.add(word)) {
+                    continue;
+                }
+                
+                MutationLog.Record record = new MutationLog.Record(MutationLog.OP_ADD, word);
+                record.meanings = new ArrayList<>(entries.get(i).getMeanings());
+                records.add(record);
+                added[i] = true;
+            }
+            
+            logMutations(records);
+            for (MutationLog.Record record : records) {
+                applyRecord(record);
+            }
+        } finally {
+            locks.unlockStripes(stripes);
+        }
+        return added;
+    }
+
+    /**
+     * Updates meanings of several words under one acquisition of their lock stripes,
+     * logging all the changes with one append. Updates apply in order, so a later
+     * update of the same word sees the earlier ones.
+     * 
+     * @param updates The meaning updates
+     * @return For each update, in order, true if the meaning was updated
+     */
+    public boolean[] updateMeanings(List<MeaningUpdate> updates) {
+        boolean[] updated = new boolean[updates.size()];
+        List<String> words = new ArrayList<>(updates.size());
+        for (MeaningUpdate update : updates) {
+            boolean valid = update != null && update.word != null && !update.word.trim().isEmpty()
+                    && update.oldMeaning != null && !update.oldMeaning.trim().isEmpty()
+                    && update.newMeaning != null && !update.newMeaning.trim().isEmpty();
+            words.add(valid ? normalize(update.word) : null);
+        }
+        
+        int[] stripes = locks.lockStripesFor(words);
+        try {
+            List<MutationLog.Record> records = new ArrayList<>();
+            // Entries as they will be once the earlier updates of the batch are applied
+            Map<String, WordEntry> pending = new HashMap<>();
+            for (int i = 0; i < words.size(); i++) {
+                String word = words.get(i);
+                if (word == null) {
+                    continue;
+                }
+                
+                String oldMeaning = updates.get(i).oldMeaning.trim();
+                String newMeaning = updates.get(i).newMeaning.trim();
+                if (oldMeaning.equals(newMeaning)) {
+                    updated[i] = true; // No change needed
+                    continue;
+                }
+                
+                WordEntry entry = pending.containsKey(word) ? pending.get(word) : lookup(word);
+                WordEntry changed = entry == null ? null : entry.withUpdatedMeaning(oldMeaning, newMeaning);
+                if (changed == null) {
+                    continue;
+                }
+                
+                pending.put(word, changed);
+                MutationLog.Record record = new MutationLog.Record(MutationLog.OP_UPDATE_MEANING, word);
+                record.oldMeaning = oldMeaning;
+                record.newMeaning = newMeaning;
+                records.add(record);
+                updated[i] = true;
+            }
+            
+            logMutations(records);
+            for (MutationLog.Record record : records) {
+                applyRecord(record);
+            }
+        } finally {
+            locks.unlockStripes(stripes);
+        }
+        return updated;
+    }
+
     /**
      * Clears all entries from the dictionary
      */
     public void clear() {
-        lock.writeLock().lock();
+        locks.lockAll();
         try {
-            dictionary.clear();
+            MutationLog.Record record = new MutationLog.Record(MutationLog.OP_CLEAR, null);
+            logMutation(record);
+            applyRecord(record);
         } finally {
-            lock.writeLock().unlock();
+            locks.unlockAll();
+        }
+    }
+
+    /**
+     * Appends a record to the mutation log if one is open.
+     * Must be called with the word's lock stripe held, before the change is applied,
+     * so that records for the same word are logged in the order they are applied.
+     * 
+     * @param record The mutation about to be applied
+     */
+    private void logMutation(MutationLog.Record record) {
+        MutationLog log = mutationLog;
+        if (log == null) {
+            return;
+        }
+        
+        try {
+            log.append(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing mutation log: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Appends the records of a batch to the mutation log with one write, if one is open.
+     * Must be called with the stripes of every word in the batch held, before the
+     * changes are applied.
+     * 
+     * @param records The mutations about to be applied, in order
+     */
+    private void logMutations(List<MutationLog.Record> records) {
+        MutationLog log = mutationLog;
+        if (log == null || records.isEmpty()) {
+            return;
+        }
+        
+        try {
+            log.appendAll(records);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing mutation log: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Finds the live entry for a normalized word, in the map or the base snapshot.
+     * Safe to call without a lock.
+     * 
+     * @param word The normalized word, a String or a {@link LookupKey}
+     * @return The entry, or null if the word is not in the dictionary
+     */
+    private WordEntry lookup(CharSequence word) {
+        WordEntry entry = dictionary.get(word);
+        if (entry == TOMBSTONE) {
+            return null;
+        }
+        BinarySnapshot base = baseSnapshot;
+        if (entry == null && base != null) {
+            // Read after the base, so it is at least as new as the base
+            BloomFilter filter = snapshotFilter;
+            if (filter == null) {
+                return base.get(word);
+            }
+            if (!filter.mightContain(word)) {
+                return null;
+            }
+            entry = base.get(word);
+            if (entry == null) {
+                filter.recordFalsePositive();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Builds the filter of the words of a snapshot, reading only the word index
+     * 
+     * @param snapshot The snapshot
+     * @return The filter, or null if the filter is turned off
+     */
+    private BloomFilter buildFilter(BinarySnapshot snapshot) {
+        double falsePositiveRate = filterFalsePositiveRate;
+        if (falsePositiveRate == 0) {
+            return null;
+        }
+        return new BloomFilter(snapshot.wordsWithPrefix(""), snapshot.size(), falsePositiveRate);
+    }
+
+    /**
+     * Applies a mutation record and tells the change listeners if it changed anything.
+     * Must be called with the word's lock stripe held (all stripes for CLEAR).
+     * 
+     * @param record The mutation to apply
+     * @return true if the dictionary changed
+     */
+    private boolean applyRecord(MutationLog.Record record) {
+        boolean changed = applyMutation(record);
+        if (changed) {
+            for (DictionaryChangeListener listener : changeListeners) {
+                if (MutationLog.OP_CLEAR.equals(record.op)) {
+                    listener.dictionaryCleared();
+                } else {
+                    listener.wordChanged(record.word);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private void notifyCleared() {
+        for (DictionaryChangeListener listener : changeListeners) {
+            listener.dictionaryCleared();
+        }
+    }
+
+    /**
+     * Applies a mutation record to the in-memory map. Entries are immutable, so a
+     * changed entry replaces the original and concurrent readers never see a partial update.
+     * Must be called with the word's lock stripe held (all stripes for CLEAR);
+     * used both live and during replay.
+     * 
+     * @param record The mutation to apply
+     * @return true if the dictionary changed
+     */
+    private boolean applyMutation(MutationLog.Record record) {
+        modCount.incrementAndGet();
+        switch (record.op) {
+            case MutationLog.OP_ADD:
+                if (record.word == null || record.meanings == null || lookup(record.word) != null) {
+                    return false;
+                }
+                dictionary.put(record.word, WordEntry.wrap(record.word, record.meanings));
+                wordIndex.add(record.word);
+                if (meaningIndexReady) {
+                    meaningIndex.add(record.word, record.meanings);
+                }
+                entryCount.incrementAndGet();
+                return true;
+            case MutationLog.OP_REMOVE:
+                WordEntry removed = record.word == null ? null : lookup(record.word);
+                if (removed == null) {
+                    return false;
+                }
+                BinarySnapshot base = baseSnapshot;
+                if (base != null && base.contains(record.word)) {
+                    dictionary.put(record.word, TOMBSTONE);
+                } else {
+                    dictionary.remove(record.word);
+                }
+                wordIndex.remove(record.word);
+                if (meaningIndexReady) {
+                    meaningIndex.remove(record.word, removed.getMeanings());
+                }
+                entryCount.decrementAndGet();
+                return true;
+            case MutationLog.OP_ADD_MEANING: {
+                WordEntry entry = record.word == null ? null : lookup(record.word);
+                return entry != null && replace(entry, entry.withMeaning(record.newMeaning));
+            }
+            case MutationLog.OP_UPDATE_MEANING: {
+                WordEntry entry = record.word == null ? null : lookup(record.word);
+                return entry != null
+                        && replace(entry, entry.withUpdatedMeaning(record.oldMeaning, record.newMeaning));
+            }
+            case MutationLog.OP_CLEAR:
+                dictionary.clear();
+                wordIndex.clear();
+                meaningIndex.clear();
+                baseSnapshot = null;
+                snapshotFilter = null;
+                entryCount.set(0);
+                return true;
+            default:
+                System.err.println("Ignoring unknown mutation log operation: " + record.op);
+                return false;
+        }
+    }
+
+    /**
+     * Publishes a changed entry in place of the original
+     * 
+     * @param original The entry before the change
+     * @param entry The changed entry, or null if the change did not apply
+     * @return true if an entry was published
+     */
+    private boolean replace(WordEntry original, WordEntry entry) {
+        if (entry == null) {
+            return false;
+        }
+        dictionary.put(entry.getWord(), entry);
+        if (meaningIndexReady) {
+            meaningIndex.update(entry.getWord(), original.getMeanings(), entry.getMeanings());
+        }
+        return true;
+    }
+
+    /**
+     * A change of one meaning of a word, for {@link #updateMeanings(List)}
+     */
+    public static final class MeaningUpdate {
+        final String word;
+        final String oldMeaning;
+        final String newMeaning;
+        
+        /**
+         * Constructor for MeaningUpdate
+         * 
+         * @param word The existing word
+         * @param oldMeaning The existing meaning to update
+         * @param newMeaning The new meaning to replace with
+         */
+        public MeaningUpdate(String word, String oldMeaning, String newMeaning) {
+            this.word = word;
+            this.oldMeaning = oldMeaning;
+            this.newMeaning = newMeaning;
         }
     }
-} 
\ No newline at end of file
+} 
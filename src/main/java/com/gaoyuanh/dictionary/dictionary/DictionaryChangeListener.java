@@ -0,0 +1,20 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+/**
+ * Receives a notification for every change to the contents of a dictionary.
+ * Called on the thread making the change, while it still holds the word's lock,
+ * so implementations must be quick and must not call back into the dictionary.
+ */
+public interface DictionaryChangeListener {
+    /**
+     * Called after a word is added, removed or has its meanings changed
+     * 
+     * @param word The normalized word
+     */
+    void wordChanged(String word);
+
+    /**
+     * Called after the whole dictionary is cleared or replaced by a load
+     */
+    void dictionaryCleared();
+}
@@ -0,0 +1,179 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Point-in-time view of a dictionary, captured under its lock and written
+ * to disk after the lock has been released.
+ * The view is the changed entries plus the immutable base snapshot they
+ * overlay; {@link Dictionary#TOMBSTONE} marks a base word that has been removed.
+ */
+final class DictionarySnapshot {
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final Map<String, WordEntry> entries;
+    private final BinarySnapshot base;
+    private final int entryCount;
+
+    /**
+     * Constructor for DictionarySnapshot
+     * 
+     * @param entries Map of the changed entries that no one changes any more, tombstones
+     *        marking removed base words
+     * @param base The base snapshot, may be null
+     * @param entryCount Number of live words in the view
+     */
+    DictionarySnapshot(Map<String, WordEntry> entries, BinarySnapshot base, int entryCount) {
+        this.entries = entries;
+        this.base = base;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Gets the number of live words in the view
+     * 
+     * @return The entry count
+     */
+    int size() {
+        return entryCount;
+    }
+
+    /**
+     * Writes the view to a JSON file, or to a binary snapshot if the path ends with
+     * {@link BinarySnapshot#FILE_EXTENSION}. The data goes to a temporary file in the
+     * same directory that is then renamed over the target, so readers only ever see
+     * a complete file and a mapped snapshot is never overwritten in place.
+     * 
+     * @param filePath Path of the file to publish
+     * @param gson Gson instance used to serialize entries
+     * @throws IOException If the file cannot be written
+     */
+    void writeTo(String filePath, Gson gson) throws IOException {
+        File target = new File(filePath).getAbsoluteFile();
+        File tempFile = new File(target.getParentFile(),
+                target.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            if (filePath.endsWith(BinarySnapshot.FILE_EXTENSION)) {
+                BinarySnapshot.write(tempFile.getPath(), entryCount, sortedEntries());
+            } else {
+                writeJson(tempFile, gson);
+            }
+            Files.move(tempFile.toPath(), Paths.get(filePath), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Writes all entries as a pretty-printed JSON object, one entry at a time
+     * 
+     * @param file The file to write
+     * @param gson Gson instance used to serialize entries
+     * @throws IOException If the file cannot be written
+     */
+    private void writeJson(File file, Gson gson) throws IOException {
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), WRITE_BUFFER_SIZE))) {
+            writer.setIndent("  ");
+            writer.beginObject();
+            for (Map.Entry<String, WordEntry> entry : entries.entrySet()) {
+                if (entry.getValue() != Dictionary.TOMBSTONE) {
+                    writer.name(entry.getKey());
+                    gson.toJson(entry.getValue(), WordEntry.class, writer);
+                }
+            }
+            if (base != null) {
+                Iterator<WordEntry> baseEntries = base.iterator();
+                while (baseEntries.hasNext()) {
+                    WordEntry entry = baseEntries.next();
+                    if (!entries.containsKey(entry.getWord())) {
+                        writer.name(entry.getWord());
+                        gson.toJson(entry, WordEntry.class, writer);
+                    }
+                }
+            }
+            writer.endObject();
+        }
+    }
+
+    /**
+     * Iterates over all live entries in {@link BinarySnapshot#WORD_ORDER}, merging the
+     * changed entries with the base snapshot. Only the changed keys are sorted; the
+     * base is already in order.
+     * 
+     * @return Iterator over the live entries
+     */
+    private Iterator<WordEntry> sortedEntries() {
+        List<String> keys = new ArrayList<>(entries.keySet());
+        keys.sort(BinarySnapshot.WORD_ORDER);
+        Iterator<String> changed = keys.iterator();
+        Iterator<WordEntry> baseEntries = base != null ? base.iterator() : Collections.<WordEntry>emptyIterator();
+        
+        return new Iterator<WordEntry>() {
+            private String nextKey = advance(changed);
+            private WordEntry nextBase = advance(baseEntries);
+            private WordEntry next = computeNext();
+            
+            private <T> T advance(Iterator<T> iterator) {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+            
+            private WordEntry computeNext() {
+                while (nextKey != null || nextBase != null) {
+                    int cmp = nextKey == null ? 1 : nextBase == null ? -1
+                            : BinarySnapshot.WORD_ORDER.compare(nextKey, nextBase.getWord());
+                    if (cmp > 0) {
+                        WordEntry result = nextBase;
+                        nextBase = advance(baseEntries);
+                        return result;
+                    }
+                    
+                    if (cmp == 0) {
+                        // The changed entry shadows the base copy of this word
+                        nextBase = advance(baseEntries);
+                    }
+                    String key = nextKey;
+                    nextKey = advance(changed);
+                    WordEntry entry = entries.get(key);
+                    if (entry != Dictionary.TOMBSTONE) {
+                        return entry.withWord(key);
+                    }
+                }
+                return null;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+            
+            @Override
+            public WordEntry next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                WordEntry result = next;
+                next = computeNext();
+                return result;
+            }
+        };
+    }
+}
@@ -0,0 +1,131 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Collects the words closest to a target by Levenshtein distance.
+ * Word sets are walked in prefix order, carrying one row of the edit distance
+ * table per character, so a prefix whose row is already over the limit rules out
+ * every word below it without comparing against them. This is equivalent to
+ * running a Levenshtein automaton over the sorted word set.
+ * Once enough words have been found at some distance, the limit is lowered to it
+ * so the rest of the walk is pruned harder.
+ */
+final class FuzzyMatcher {
+    private final String target;
+    private final int limit;
+    private final Predicate<String> filter;
+    private final List<List<String>> byDistance;
+    private final Set<String> seen;
+    private int maxDistance;
+
+    /**
+     * Constructor for FuzzyMatcher
+     * 
+     * @param target The normalized word to match against
+     * @param maxDistance Maximum edit distance of a match
+     * @param limit Maximum number of matches to keep
+     * @param filter Accepts the words that may be returned
+     */
+    FuzzyMatcher(String target, int maxDistance, int limit, Predicate<String> filter) {
+        this.target = target;
+        this.maxDistance = maxDistance;
+        this.limit = limit;
+        this.filter = filter;
+        this.byDistance = new ArrayList<>(maxDistance + 1);
+        for (int i = 0; i <= maxDistance; i++) {
+            byDistance.add(new ArrayList<>());
+        }
+        this.seen = new HashSet<>();
+    }
+
+    /**
+     * Gets the row for the empty prefix
+     * 
+     * @return Distances from the empty string to each prefix of the target
+     */
+    int[] firstRow() {
+        int[] row = new int[target.length() + 1];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i;
+        }
+        return row;
+    }
+
+    /**
+     * Computes the row for a prefix extended by one character
+     * 
+     * @param previous Row of the prefix
+     * @param c The next character of the word
+     * @param row Array to fill, or null to allocate one
+     * @return The filled row
+     */
+    int[] nextRow(int[] previous, char c, int[] row) {
+        if (row == null) {
+            row = new int[previous.length];
+        }
+        row[0] = previous[0] + 1;
+        for (int i = 1; i < row.length; i++) {
+            int substitute = previous[i - 1] + (target.charAt(i - 1) == c ? 0 : 1);
+            row[i] = Math.min(substitute, Math.min(previous[i], row[i - 1]) + 1);
+        }
+        return row;
+    }
+
+    /**
+     * Checks whether any word with the prefix of a row can still match
+     * 
+     * @param row Row of the prefix
+     * @return true if the smallest distance in the row is within the limit
+     */
+    boolean canMatch(int[] row) {
+        for (int distance : row) {
+            if (distance <= maxDistance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Offers a complete word
+     * 
+     * @param word The word
+     * @param row Row of the whole word; its last cell is the distance to the target
+     */
+    void offer(String word, int[] row) {
+        int distance = row[row.length - 1];
+        if (distance > maxDistance || !filter.test(word) || !seen.add(word)) {
+            return;
+        }
+        
+        byDistance.get(distance).add(word);
+        int found = 0;
+        for (int d = 0; d < maxDistance; d++) {
+            found += byDistance.get(d).size();
+            if (found >= limit) {
+                maxDistance = d;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Gets the matches, closest first, in word order within each distance
+     * 
+     * @return At most limit matching words
+     */
+    List<String> results() {
+        List<String> results = new ArrayList<>(Math.min(limit, seen.size()));
+        for (int d = 0; d <= maxDistance && results.size() < limit; d++) {
+            List<String> words = byDistance.get(d);
+            words.sort(BinarySnapshot.WORD_ORDER);
+            results.addAll(words.subList(0, Math.min(words.size(), limit - results.size())));
+        }
+        return results;
+    }
+}
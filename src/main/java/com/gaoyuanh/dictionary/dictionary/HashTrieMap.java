@@ -0,0 +1,511 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Persistent hash array mapped trie published through an {@link AtomicReference}.
+ * Nodes are immutable: a write copies the path from the root to the changed slot,
+ * shares every other node with the previous version and swaps the root with a
+ * compare-and-set, retrying if another writer got there first. A read is one
+ * volatile load of the root followed by plain loads, so readers never lock or
+ * retry, and {@link #snapshot()} is a constant-time, point-in-time copy.
+ * Lookups call equals on the key they are given, so a {@link LookupKey} can
+ * probe a map keyed by Strings. Null keys and values are not supported.
+ * 
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+final class HashTrieMap<K, V> extends AbstractMap<K, V> {
+    // Hash bits consumed per level, and the resulting slots per node
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    // Deepest path: a bitmap node per level of hash bits, then a collision node
+    private static final int MAX_DEPTH = (Integer.SIZE + BITS - 1) / BITS + 1;
+
+    private static final Root EMPTY = new Root(new BitmapNode(0, new Object[0]), 0);
+
+    private final AtomicReference<Root> root;
+
+    /**
+     * Immutable version of the map: its root node and its size
+     */
+    private static final class Root {
+        final BitmapNode node;
+        final int size;
+        
+        Root(BitmapNode node, int size) {
+            this.node = node;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Key, value and spread hash of one mapping
+     */
+    private static final class Leaf<K, V> implements Map.Entry<K, V> {
+        final K key;
+        final V value;
+        final int hash;
+        
+        Leaf(K key, V value, int hash) {
+            this.key = key;
+            this.value = value;
+            this.hash = hash;
+        }
+        
+        @Override
+        public K getKey() {
+            return key;
+        }
+        
+        @Override
+        public V getValue() {
+            return value;
+        }
+        
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) other;
+            return key.equals(entry.getKey()) && value.equals(entry.getValue());
+        }
+        
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Inner node: a bitmap of the occupied slots of the hash bits at its level, and
+     * one compact array element per occupied slot, either a {@link Leaf} or a node
+     */
+    private static final class BitmapNode {
+        final int bitmap;
+        final Object[] slots;
+        
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+        
+        BitmapNode withSlot(int index, Object slot) {
+            Object[] copy = slots.clone();
+            copy[index] = slot;
+            return new BitmapNode(bitmap, copy);
+        }
+        
+        BitmapNode withInserted(int bit, int index, Object slot) {
+            Object[] copy = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            copy[index] = slot;
+            System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+            return new BitmapNode(bitmap | bit, copy);
+        }
+        
+        BitmapNode withRemoved(int bit, int index) {
+            Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            System.arraycopy(slots, index + 1, copy, index, copy.length - index);
+            return new BitmapNode(bitmap & ~bit, copy);
+        }
+    }
+
+    /**
+     * Leaves whose spread hashes are equal, below the last level of hash bits
+     */
+    private static final class CollisionNode {
+        final int hash;
+        final Leaf<?, ?>[] leaves;
+        
+        CollisionNode(int hash, Leaf<?, ?>[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+    }
+
+    /**
+     * Outcome of a write, filled in while the new path is built
+     */
+    private static final class Change {
+        Object oldValue;
+        boolean found;
+    }
+
+    /**
+     * Constructor for an empty HashTrieMap
+     */
+    HashTrieMap() {
+        this(EMPTY);
+    }
+
+    private HashTrieMap(Root version) {
+        this.root = new AtomicReference<>(version);
+    }
+
+    /**
+     * Gets an immutable copy of the current version of the map, sharing its nodes
+     * 
+     * @return The copy; writes to it throw UnsupportedOperationException
+     */
+    Map<K, V> snapshot() {
+        return new Frozen<>(root.get());
+    }
+
+    @Override
+    public int size() {
+        return root.get().size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(root.get(), key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        Leaf<K, V> leaf = find(root.get(), key);
+        return leaf == null ? null : leaf.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        Leaf<K, V> leaf = new Leaf<>(key, value, spread(key.hashCode()));
+        while (true) {
+            Root current = root.get();
+            Change change = new Change();
+            BitmapNode node = (BitmapNode) insert(current.node, leaf, 0, change);
+            if (root.compareAndSet(current, new Root(node, change.found ? current.size : current.size + 1))) {
+                return value(change.oldValue);
+            }
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (key == null) {
+            return null;
+        }
+        int hash = spread(key.hashCode());
+        while (true) {
+            Root current = root.get();
+            Change change = new Change();
+            // The root is never collapsed, so it stays a bitmap node
+            BitmapNode node = (BitmapNode) delete(current.node, key, hash, 0, change);
+            if (!change.found) {
+                return null;
+            }
+            if (root.compareAndSet(current, new Root(node, current.size - 1))) {
+                return value(change.oldValue);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        root.set(EMPTY);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(Object value) {
+        return (V) value;
+    }
+
+    /**
+     * Spreads the high bits of a hash code into the low bits used by the first levels
+     */
+    private static int spread(int hashCode) {
+        return hashCode ^ (hashCode >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Leaf<K, V> find(Root version, Object key) {
+        if (key == null) {
+            return null;
+        }
+        int hash = spread(key.hashCode());
+        Object node = version.node;
+        for (int shift = 0; ; shift += BITS) {
+            if (node instanceof BitmapNode) {
+                BitmapNode bitmapNode = (BitmapNode) node;
+                int bit = 1 << ((hash >>> shift) & MASK);
+                if ((bitmapNode.bitmap & bit) == 0) {
+                    return null;
+                }
+                node = bitmapNode.slots[Integer.bitCount(bitmapNode.bitmap & (bit - 1))];
+            } else if (node instanceof Leaf) {
+                Leaf<K, V> leaf = (Leaf<K, V>) node;
+                return leaf.hash == hash && key.equals(leaf.key) ? leaf : null;
+            } else {
+                CollisionNode collision = (CollisionNode) node;
+                if (collision.hash == hash) {
+                    for (Leaf<?, ?> leaf : collision.leaves) {
+                        if (key.equals(leaf.key)) {
+                            return (Leaf<K, V>) leaf;
+                        }
+                    }
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Builds the path to a new or replaced leaf
+     * 
+     * @return The updated copy of the node
+     */
+    private static Object insert(Object node, Leaf<?, ?> leaf, int shift, Change change) {
+        if (node instanceof BitmapNode) {
+            BitmapNode bitmapNode = (BitmapNode) node;
+            int bit = 1 << ((leaf.hash >>> shift) & MASK);
+            int index = Integer.bitCount(bitmapNode.bitmap & (bit - 1));
+            if ((bitmapNode.bitmap & bit) == 0) {
+                return bitmapNode.withInserted(bit, index, leaf);
+            }
+            return bitmapNode.withSlot(index, insert(bitmapNode.slots[index], leaf, shift + BITS, change));
+        }
+        
+        if (node instanceof Leaf) {
+            Leaf<?, ?> existing = (Leaf<?, ?>) node;
+            if (existing.hash == leaf.hash && existing.key.equals(leaf.key)) {
+                change.found = true;
+                change.oldValue = existing.value;
+                return leaf;
+            }
+            return split(existing, leaf, shift);
+        }
+        
+        CollisionNode collision = (CollisionNode) node;
+        if (collision.hash != leaf.hash) {
+            // Cannot happen below the last level, where all remaining hash bits are equal
+            throw new IllegalStateException("Collision node reached with a different hash");
+        }
+        for (int i = 0; i < collision.leaves.length; i++) {
+            if (collision.leaves[i].key.equals(leaf.key)) {
+                change.found = true;
+                change.oldValue = collision.leaves[i].value;
+                Leaf<?, ?>[] copy = collision.leaves.clone();
+                copy[i] = leaf;
+                return new CollisionNode(collision.hash, copy);
+            }
+        }
+        Leaf<?, ?>[] copy = Arrays.copyOf(collision.leaves, collision.leaves.length + 1);
+        copy[collision.leaves.length] = leaf;
+        return new CollisionNode(collision.hash, copy);
+    }
+
+    /**
+     * Makes the node that replaces a leaf when a second leaf lands in its slot
+     */
+    private static Object split(Leaf<?, ?> a, Leaf<?, ?> b, int shift) {
+        if (shift >= Integer.SIZE) {
+            return new CollisionNode(a.hash, new Leaf<?, ?>[] { a, b });
+        }
+        int bitA = 1 << ((a.hash >>> shift) & MASK);
+        int bitB = 1 << ((b.hash >>> shift) & MASK);
+        if (bitA == bitB) {
+            return new BitmapNode(bitA, new Object[] { split(a, b, shift + BITS) });
+        }
+        return new BitmapNode(bitA | bitB, Integer.compareUnsigned(bitA, bitB) < 0
+                ? new Object[] { a, b } : new Object[] { b, a });
+    }
+
+    /**
+     * Builds the path without a leaf, collapsing nodes left with a single leaf so
+     * the trie stays as shallow as its keys need
+     * 
+     * @return The updated copy of the node, a leaf that replaces it, or null if it
+     *         no longer holds anything; the same node if the key is absent
+     */
+    private static Object delete(Object node, Object key, int hash, int shift, Change change) {
+        if (node instanceof BitmapNode) {
+            BitmapNode bitmapNode = (BitmapNode) node;
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmapNode.bitmap & bit) == 0) {
+                return node;
+            }
+            int index = Integer.bitCount(bitmapNode.bitmap & (bit - 1));
+            Object child = bitmapNode.slots[index];
+            Object updated = delete(child, key, hash, shift + BITS, change);
+            if (updated == child) {
+                return node;
+            }
+            if (updated == null) {
+                if (bitmapNode.slots.length == 1) {
+                    return shift == 0 ? EMPTY.node : null;
+                }
+                BitmapNode smaller = bitmapNode.withRemoved(bit, index);
+                if (shift > 0 && smaller.slots.length == 1 && smaller.slots[0] instanceof Leaf) {
+                    return smaller.slots[0];
+                }
+                return smaller;
+            }
+            if (shift > 0 && bitmapNode.slots.length == 1 && updated instanceof Leaf) {
+                return updated;
+            }
+            return bitmapNode.withSlot(index, updated);
+        }
+        
+        if (node instanceof Leaf) {
+            Leaf<?, ?> leaf = (Leaf<?, ?>) node;
+            if (leaf.hash != hash || !key.equals(leaf.key)) {
+                return node;
+            }
+            change.found = true;
+            change.oldValue = leaf.value;
+            return null;
+        }
+        
+        CollisionNode collision = (CollisionNode) node;
+        for (int i = 0; i < collision.leaves.length; i++) {
+            if (key.equals(collision.leaves[i].key)) {
+                change.found = true;
+                change.oldValue = collision.leaves[i].value;
+                if (collision.leaves.length == 2) {
+                    return collision.leaves[1 - i];
+                }
+                Leaf<?, ?>[] copy = new Leaf<?, ?>[collision.leaves.length - 1];
+                System.arraycopy(collision.leaves, 0, copy, 0, i);
+                System.arraycopy(collision.leaves, i + 1, copy, i, copy.length - i);
+                return new CollisionNode(collision.hash, copy);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Iterates over the leaves of one version of the map, depth first
+     */
+    private static final class LeafIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        // Slot arrays on the path to the next leaf, and the next position in each
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private Leaf<K, V> next;
+        
+        LeafIterator(Root version) {
+            arrays[0] = version.node.slots;
+            next = advance();
+        }
+        
+        @SuppressWarnings("unchecked")
+        private Leaf<K, V> advance() {
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                if (positions[depth] == array.length) {
+                    depth--;
+                    continue;
+                }
+                Object slot = array[positions[depth]++];
+                if (slot instanceof Leaf) {
+                    return (Leaf<K, V>) slot;
+                }
+                depth++;
+                arrays[depth] = slot instanceof BitmapNode ? ((BitmapNode) slot).slots
+                        : ((CollisionNode) slot).leaves;
+                positions[depth] = 0;
+            }
+            return null;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf<K, V> result = next;
+            next = advance();
+            return result;
+        }
+    }
+
+    /**
+     * Entries of the version of the map current when iteration starts
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new LeafIterator<>(root.get());
+        }
+        
+        @Override
+        public int size() {
+            return HashTrieMap.this.size();
+        }
+    }
+
+    /**
+     * Read-only view of one version of a map
+     */
+    private static final class Frozen<K, V> extends AbstractMap<K, V> {
+        private final Root version;
+        
+        Frozen(Root version) {
+            this.version = version;
+        }
+        
+        @Override
+        public int size() {
+            return version.size;
+        }
+        
+        @Override
+        public boolean containsKey(Object key) {
+            return find(version, key) != null;
+        }
+        
+        @Override
+        public V get(Object key) {
+            Leaf<K, V> leaf = find(version, key);
+            return leaf == null ? null : leaf.value;
+        }
+        
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new AbstractSet<Map.Entry<K, V>>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new LeafIterator<>(version);
+                }
+                
+                @Override
+                public int size() {
+                    return version.size;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+/**
+ * Receives progress updates while a dictionary file is being loaded.
+ */
+public interface LoadProgressListener {
+    /**
+     * Called periodically during a load, and once more when it completes
+     * 
+     * @param entriesLoaded Number of entries inserted so far
+     * @param bytesRead Number of bytes of the file consumed so far
+     * @param totalBytes Size of the file in bytes
+     * @param entriesPerSecond Average load rate since the load started
+     */
+    void onProgress(long entriesLoaded, long bytesRead, long totalBytes, double entriesPerSecond);
+}
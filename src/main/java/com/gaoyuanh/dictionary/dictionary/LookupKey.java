@@ -0,0 +1,133 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Reusable probe for looking up a word without creating a String for it.
+ * It holds a lower-cased copy of the word in its own buffer and has the same
+ * hash code as the equivalent String, and it is equal to that String, so it can
+ * be passed to {@link java.util.Map#get(Object)} on maps keyed by normalized
+ * words: the map calls equals on the key it is given, never on its own keys.
+ * It must never be stored as a key itself; {@link #toString()} gives the String.
+ * Not thread-safe: each thread needs its own probe.
+ */
+public final class LookupKey implements CharSequence {
+    private char[] chars = new char[32];
+    private int length;
+    private int hash;
+
+    /**
+     * Sets the probe to the lower-cased form of a word, the same as
+     * {@code word.toString().toLowerCase(Locale.ROOT)}. Most characters are
+     * folded one at a time; the few whose lower case depends on their context or
+     * is longer than one character make the probe fall back to String.toLowerCase.
+     * 
+     * @param word The word
+     * @return This probe
+     */
+    public LookupKey set(CharSequence word) {
+        int wordLength = word.length();
+        if (chars.length < wordLength) {
+            chars = Arrays.copyOf(chars, Math.max(wordLength, chars.length * 2));
+        }
+        int h = 0;
+        for (int i = 0; i < wordLength; i++) {
+            char c = word.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            } else if (c >= 0x80) {
+                if (!hasSimpleLowerCase(c)) {
+                    return setSlow(word);
+                }
+                c = Character.toLowerCase(c);
+            }
+            chars[i] = c;
+            h = 31 * h + c;
+        }
+        length = wordLength;
+        hash = h;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+        }
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Compares the probe with a String or another probe, character by character
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (other instanceof LookupKey) {
+            if (((LookupKey) other).hash != hash) {
+                return false;
+            }
+        } else if (!(other instanceof String)) {
+            return false;
+        }
+        CharSequence word = (CharSequence) other;
+        if (word.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (word.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the String for the word in the probe
+     * 
+     * @return The lower-cased word
+     */
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Checks whether String.toLowerCase maps a character to the same single
+     * character as Character.toLowerCase, whatever surrounds it. Not the case for
+     * surrogates (supplementary characters), the dotted capital I (which becomes
+     * two characters) and the capital sigma (which depends on its position).
+     */
+    private static boolean hasSimpleLowerCase(char c) {
+        return !Character.isSurrogate(c) && c != '\u0130' && c != '\u03A3';
+    }
+
+    private LookupKey setSlow(CharSequence word) {
+        String lower = word.toString().toLowerCase(Locale.ROOT);
+        if (chars.length < lower.length()) {
+            chars = new char[lower.length()];
+        }
+        lower.getChars(0, lower.length(), chars, 0);
+        length = lower.length();
+        hash = lower.hashCode();
+        return this;
+    }
+}
@@ -0,0 +1,484 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index from the tokens of meanings to the words that have them.
+ * Every word gets a small int ID, and each token maps to a posting list of the IDs
+ * of its words, kept sorted and delta-encoded as variable-length integers, so a
+ * posting usually takes a single byte.
+ * Guarded by its own read-write lock, as different words sharing a token may be
+ * changed at the same time.
+ */
+final class MeaningIndex {
+    private final Map<String, PostingList> postings;
+    private final Map<String, Integer> wordIds;
+    private final List<String> words;
+    private final ReadWriteLock lock;
+
+    /**
+     * Constructor for MeaningIndex
+     */
+    MeaningIndex() {
+        this.postings = new HashMap<>();
+        this.wordIds = new HashMap<>();
+        this.words = new ArrayList<>();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Splits text into lowercase tokens of letters and digits
+     * 
+     * @param text The text to split
+     * @return The distinct tokens
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new HashSet<>();
+        addTokens(text, tokens);
+        return tokens;
+    }
+
+    private static Set<String> tokenize(List<String> meanings) {
+        Set<String> tokens = new HashSet<>();
+        for (String meaning : meanings) {
+            addTokens(meaning, tokens);
+        }
+        return tokens;
+    }
+
+    private static void addTokens(String text, Set<String> tokens) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inToken = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inToken && start < 0) {
+                start = i;
+            } else if (!inToken && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * Indexes the meanings of a word
+     * 
+     * @param word The normalized word
+     * @param meanings The meanings of the word
+     */
+    void add(String word, List<String> meanings) {
+        update(word, Collections.<String>emptyList(), meanings);
+    }
+
+    /**
+     * Removes the meanings of a word from the index
+     * 
+     * @param word The normalized word
+     * @param meanings The meanings the word was indexed with
+     */
+    void remove(String word, List<String> meanings) {
+        update(word, meanings, Collections.<String>emptyList());
+    }
+
+    /**
+     * Re-indexes a word whose meanings changed, touching only the tokens that differ
+     * 
+     * @param word The normalized word
+     * @param oldMeanings The meanings the word was indexed with
+     * @param newMeanings The new meanings of the word
+     */
+    void update(String word, List<String> oldMeanings, List<String> newMeanings) {
+        Set<String> oldTokens = tokenize(oldMeanings);
+        Set<String> newTokens = tokenize(newMeanings);
+        lock.writeLock().lock();
+        try {
+            int id = idOf(word);
+            for (String token : oldTokens) {
+                if (!newTokens.contains(token)) {
+                    PostingList list = postings.get(token);
+                    if (list != null) {
+                        list.remove(id);
+                        if (list.isEmpty()) {
+                            postings.remove(token);
+                        }
+                    }
+                }
+            }
+            for (String token : newTokens) {
+                if (!oldTokens.contains(token)) {
+                    postings.computeIfAbsent(token, t -> new PostingList()).add(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes everything from the index
+     */
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            wordIds.clear();
+            words.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the words whose meanings contain every token of a query
+     * 
+     * @param query The query text
+     * @param limit Maximum number of words to return
+     * @return The first matching words in word order, at most limit of them
+     */
+    List<String> search(String query, int limit) {
+        Set<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        
+        // Postings are in ID order, not word order, so every match is visited and the
+        // first ones in word order are kept, the last of them at the head
+        PriorityQueue<String> first = new PriorityQueue<>(Math.min(limit, 64) + 1,
+                BinarySnapshot.WORD_ORDER.reversed());
+        lock.readLock().lock();
+        try {
+            PostingList.Cursor[] cursors = new PostingList.Cursor[tokens.size()];
+            int i = 0;
+            for (String token : tokens) {
+                PostingList list = postings.get(token);
+                if (list == null) {
+                    return Collections.emptyList();
+                }
+                cursors[i++] = list.cursor();
+            }
+            // Drive the intersection from the shortest list
+            Arrays.sort(cursors, Comparator.comparingInt(PostingList.Cursor::size));
+            
+            for (PostingList.Cursor cursor : cursors) {
+                cursor.next();
+            }
+            PostingList.Cursor lead = cursors[0];
+            while (lead.current() != PostingList.END) {
+                int candidate = lead.current();
+                int agreed = 1;
+                while (agreed < cursors.length) {
+                    PostingList.Cursor other = cursors[agreed];
+                    other.advanceTo(candidate);
+                    if (other.current() != candidate) {
+                        break;
+                    }
+                    agreed++;
+                }
+                if (agreed == cursors.length) {
+                    String word = words.get(candidate);
+                    if (first.size() < limit) {
+                        first.add(word);
+                    } else if (BinarySnapshot.WORD_ORDER.compare(word, first.peek()) < 0) {
+                        first.poll();
+                        first.add(word);
+                    }
+                    lead.next();
+                } else if (cursors[agreed].current() == PostingList.END) {
+                    break;
+                } else {
+                    lead.advanceTo(cursors[agreed].current());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<String> results = new ArrayList<>(first);
+        results.sort(BinarySnapshot.WORD_ORDER);
+        return results;
+    }
+
+    /**
+     * Gets the number of distinct tokens
+     * 
+     * @return The token count
+     */
+    int tokenCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the memory taken by the posting lists
+     * 
+     * @return Size of all posting list buffers in bytes
+     */
+    long postingBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (PostingList list : postings.values()) {
+                bytes += list.byteSize();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the ID of a word, assigning the next one if it has none.
+     * IDs are never reused, so a word that comes back keeps its old ID.
+     */
+    private int idOf(String word) {
+        Integer id = wordIds.get(word);
+        if (id == null) {
+            id = words.size();
+            wordIds.put(word, id);
+            words.add(word);
+        }
+        return id;
+    }
+
+    /**
+     * Sorted set of word IDs, stored as delta-encoded variable-length integers.
+     * New words get increasing IDs, so most additions append to the encoded bytes.
+     * Other changes go to small sorted buffers of added and removed IDs that are
+     * merged into the encoded bytes once they grow.
+     * Every {@value #SKIP_INTERVAL} encoded IDs a skip entry records where the next
+     * one starts, so intersecting with a short list does not decode a long one.
+     */
+    static final class PostingList {
+        static final int END = Integer.MAX_VALUE;
+        private static final int[] NO_IDS = new int[0];
+        private static final int MAX_BUFFERED = 32;
+        private static final int SKIP_INTERVAL = 64;
+        
+        private byte[] data = new byte[2];
+        private int length;
+        private int encodedCount;
+        private int lastEncoded = -1;
+        private int[] added = NO_IDS;
+        private int addedCount;
+        private int[] removed = NO_IDS;
+        private int removedCount;
+        private int[] skipIds = NO_IDS;
+        private int[] skipPositions = NO_IDS;
+        private int skipCount;
+        
+        void add(int id) {
+            int index = Arrays.binarySearch(removed, 0, removedCount, id);
+            if (index >= 0) {
+                removedCount = deleteAt(removed, removedCount, index);
+            } else if (addedCount == 0 && id > lastEncoded) {
+                append(id);
+            } else {
+                index = Arrays.binarySearch(added, 0, addedCount, id);
+                if (index < 0) {
+                    added = insertAt(added, addedCount++, -index - 1, id);
+                    mergeIfFull();
+                }
+            }
+        }
+        
+        void remove(int id) {
+            int index = Arrays.binarySearch(added, 0, addedCount, id);
+            if (index >= 0) {
+                addedCount = deleteAt(added, addedCount, index);
+            } else {
+                index = Arrays.binarySearch(removed, 0, removedCount, id);
+                if (index < 0) {
+                    removed = insertAt(removed, removedCount++, -index - 1, id);
+                    mergeIfFull();
+                }
+            }
+        }
+        
+        boolean isEmpty() {
+            return size() == 0;
+        }
+        
+        int size() {
+            return encodedCount - removedCount + addedCount;
+        }
+        
+        int byteSize() {
+            return data.length + 4 * (added.length + removed.length + skipIds.length + skipPositions.length);
+        }
+        
+        Cursor cursor() {
+            return new Cursor();
+        }
+        
+        private void append(int id) {
+            if (encodedCount > 0 && encodedCount % SKIP_INTERVAL == 0) {
+                if (skipCount == skipIds.length) {
+                    skipIds = Arrays.copyOf(skipIds, Math.max(4, skipCount * 2));
+                    skipPositions = Arrays.copyOf(skipPositions, skipIds.length);
+                }
+                // The ID before the block, which the block's first delta is relative to
+                skipIds[skipCount] = lastEncoded;
+                skipPositions[skipCount++] = length;
+            }
+            
+            int delta = id - lastEncoded;
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(length + 5, data.length * 3 / 2));
+            }
+            while ((delta & ~0x7F) != 0) {
+                data[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+            lastEncoded = id;
+            encodedCount++;
+        }
+        
+        private void mergeIfFull() {
+            if (addedCount + removedCount < MAX_BUFFERED) {
+                return;
+            }
+            
+            int[] ids = new int[size()];
+            Cursor cursor = cursor();
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = cursor.next();
+            }
+            data = new byte[Math.max(2, length + addedCount * 2)];
+            length = 0;
+            encodedCount = 0;
+            lastEncoded = -1;
+            added = NO_IDS;
+            addedCount = 0;
+            removed = NO_IDS;
+            removedCount = 0;
+            skipIds = NO_IDS;
+            skipPositions = NO_IDS;
+            skipCount = 0;
+            for (int id : ids) {
+                append(id);
+            }
+            if (data.length > length * 2 + 8) {
+                data = Arrays.copyOf(data, length);
+            }
+        }
+        
+        private static int[] insertAt(int[] ids, int count, int index, int id) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(4, count * 2));
+            }
+            System.arraycopy(ids, index, ids, index + 1, count - index);
+            ids[index] = id;
+            return ids;
+        }
+        
+        private static int deleteAt(int[] ids, int count, int index) {
+            System.arraycopy(ids, index + 1, ids, index, count - index - 1);
+            return count - 1;
+        }
+        
+        /**
+         * Iterates over the IDs of a posting list in increasing order, merging the
+         * encoded IDs with the buffered changes. Must be used under the index lock.
+         */
+        final class Cursor {
+            private int position;
+            private int encodedId = -1;
+            private int nextEncoded = -1;
+            private int nextAdded;
+            private int nextRemoved;
+            private int current = -1;
+            
+            int size() {
+                return PostingList.this.size();
+            }
+            
+            int current() {
+                return current;
+            }
+            
+            /**
+             * Moves to the next ID
+             * 
+             * @return The ID, or {@link #END} when there are no more
+             */
+            int next() {
+                if (nextEncoded < 0) {
+                    nextEncoded = readEncoded();
+                }
+                int pending = nextAdded < addedCount ? added[nextAdded] : END;
+                if (nextEncoded < pending) {
+                    current = nextEncoded;
+                    nextEncoded = -1;
+                } else {
+                    current = pending;
+                    if (pending != END) {
+                        nextAdded++;
+                    }
+                }
+                return current;
+            }
+            
+            /**
+             * Moves to the first ID that is at least a target
+             * 
+             * @param target The target ID
+             */
+            void advanceTo(int target) {
+                if (current >= target) {
+                    return;
+                }
+                
+                // Jump to the last block that starts before the target, if it is ahead
+                int block = Arrays.binarySearch(skipIds, 0, skipCount, target - 1);
+                if (block < 0) {
+                    block = -block - 2;
+                }
+                if (block >= 0 && skipPositions[block] > position) {
+                    position = skipPositions[block];
+                    encodedId = skipIds[block];
+                    nextEncoded = -1;
+                }
+                while (current < target) {
+                    next();
+                }
+            }
+            
+            private int readEncoded() {
+                while (position < length) {
+                    int delta = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = data[position++];
+                        delta |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    encodedId += delta;
+                    
+                    while (nextRemoved < removedCount && removed[nextRemoved] < encodedId) {
+                        nextRemoved++;
+                    }
+                    if (nextRemoved < removedCount && removed[nextRemoved] == encodedId) {
+                        continue;
+                    }
+                    return encodedId;
+                }
+                return END;
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+/**
+ * Append-only write-ahead log of dictionary mutations.
+ * Each change is written as one compact JSON line, so the cost of a write
+ * depends on the size of the change rather than the size of the dictionary.
+ * The log is replayed on top of the last snapshot and rotated out on compaction.
+ * A crash in the middle of an append leaves a torn last line; it is cut off
+ * when the log is reopened, so that new records do not follow it on the same line.
+ */
+class MutationLog implements Closeable {
+    // Record operation types
+    static final String OP_ADD = "ADD";
+    static final String OP_REMOVE = "REMOVE";
+    static final String OP_ADD_MEANING = "ADD_MEANING";
+    static final String OP_UPDATE_MEANING = "UPDATE_MEANING";
+    static final String OP_CLEAR = "CLEAR";
+
+    // Suffix of a log that has been rotated out by a compaction in progress
+    static final String ROTATED_SUFFIX = ".compacting";
+
+    private final String logPath;
+    private FileChannel channel;
+    private Writer writer;
+    private final Gson gson;
+    private final boolean syncOnAppend;
+    private long recordCount;
+    // Guards the file; not a monitor, so that a virtual thread blocked on a write
+    // or sync does not pin its carrier thread
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * A single logged mutation
+     */
+    static class Record {
+        String op;
+        String word;
+        List<String> meanings;
+        String oldMeaning;
+        String newMeaning;
+        
+        Record(String op, String word) {
+            this.op = op;
+            this.word = word;
+        }
+    }
+
+    /**
+     * Opens (or creates) the log file for appending, after cutting off a torn last record
+     * 
+     * @param logPath Path to the log file
+     * @param syncOnAppend Whether every append is forced to the storage device
+     * @throws IOException If the log file cannot be opened
+     */
+    MutationLog(String logPath, boolean syncOnAppend) throws IOException {
+        this.logPath = logPath;
+        this.gson = new Gson();
+        this.syncOnAppend = syncOnAppend;
+        this.recordCount = recover(logPath);
+        openFile();
+    }
+
+    /**
+     * Opens the log file for appending
+     * 
+     * @throws IOException If the file cannot be opened
+     */
+    private void openFile() throws IOException {
+        FileOutputStream fileStream = new FileOutputStream(logPath, true);
+        channel = fileStream.getChannel();
+        writer = new BufferedWriter(new OutputStreamWriter(fileStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Gets the path a log is moved to while a compaction is in progress
+     * 
+     * @param logPath Path to the log file
+     * @return Path of the rotated log
+     */
+    static String rotatedPath(String logPath) {
+        return logPath + ROTATED_SUFFIX;
+    }
+
+    /**
+     * Appends a record to the log and flushes it to the operating system
+     * 
+     * @param record The record to append
+     * @throws IOException If the record cannot be written
+     */
+    void append(Record record) throws IOException {
+        String line = gson.toJson(record);
+        lock.lock();
+        try {
+            writer.write(line);
+            writer.write('\n');
+            writer.flush();
+            if (syncOnAppend) {
+                channel.force(false);
+            }
+            recordCount++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends several records with one write, and one sync when every append is synced
+     * 
+     * @param records The records to append, in order
+     * @throws IOException If the records cannot be written
+     */
+    void appendAll(List<Record> records) throws IOException {
+        StringBuilder lines = new StringBuilder(records.size() * 64);
+        for (Record record : records) {
+            lines.append(gson.toJson(record)).append('\n');
+        }
+        lock.lock();
+        try {
+            writer.write(lines.toString());
+            writer.flush();
+            if (syncOnAppend) {
+                channel.force(false);
+            }
+            recordCount += records.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces all appended records to the storage device
+     * 
+     * @throws IOException If the sync fails
+     */
+    void sync() throws IOException {
+        lock.lock();
+        try {
+            writer.flush();
+            channel.force(false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the current records aside and continues with an empty log.
+     * If a rotated log is left over from an interrupted compaction, the records are
+     * appended to it instead, so that nothing is lost before a snapshot includes them.
+     * 
+     * @return Path of the rotated log, to delete once the snapshot has been written
+     * @throws IOException If the log cannot be rotated
+     */
+    String rotate() throws IOException {
+        lock.lock();
+        try {
+            writer.close();
+            Path current = Paths.get(logPath);
+            Path rotated = Paths.get(rotatedPath(logPath));
+            if (Files.exists(rotated)) {
+                Files.write(rotated, Files.readAllBytes(current), StandardOpenOption.APPEND);
+                Files.delete(current);
+            } else if (Files.exists(current)) {
+                Files.move(current, rotated, StandardCopyOption.ATOMIC_MOVE);
+            }
+            openFile();
+            recordCount = 0;
+            return rotated.toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of records currently in the log
+     * 
+     * @return The record count
+     */
+    long getRecordCount() {
+        lock.lock();
+        try {
+            return recordCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the path of the log file
+     * 
+     * @return The log file path
+     */
+    String getLogPath() {
+        return logPath;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            writer.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads every record of a log file in order.
+     * Stops at the first malformed line, which can only be a torn final write.
+     * 
+     * @param logPath Path to the log file
+     * @param consumer Receives each record
+     * @return The number of records replayed, 0 if the log does not exist
+     * @throws IOException If the log cannot be read
+     */
+    static int replay(String logPath, Consumer<Record> consumer) throws IOException {
+        if (!new File(logPath).isFile()) {
+            return 0;
+        }
+        
+        Gson gson = new Gson();
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(logPath), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                
+                Record record;
+                try {
+                    record = gson.fromJson(line, Record.class);
+                } catch (JsonSyntaxException e) {
+                    System.err.println("Ignoring truncated mutation log record in " + logPath);
+                    break;
+                }
+                
+                if (record != null && record.op != null) {
+                    consumer.accept(record);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the records already present in a log file and makes it safe to append to.
+     * Everything from the first malformed line on is a torn write, which
+     * {@link #replay} ignores, so it is truncated; otherwise the next record would be
+     * glued onto it and lost with it on the next replay. A last record that is
+     * complete but lacks its newline is kept, since replay applied it, and ended.
+     * 
+     * @param logPath Path to the log file
+     * @return The number of records left in the log
+     * @throws IOException If the log cannot be read or repaired
+     */
+    private static long recover(String logPath) throws IOException {
+        if (!new File(logPath).isFile()) {
+            return 0;
+        }
+        
+        Gson gson = new Gson();
+        long count = 0;
+        // Offset just past the last intact line, and whether that line ends with a newline
+        long intactEnd = 0;
+        boolean terminated = true;
+        boolean torn = false;
+        try (FileChannel file = FileChannel.open(Paths.get(logPath), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(file));
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long offset = 0;
+            while (true) {
+                int b = in.read();
+                if (b >= 0 && b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                if (b < 0 && line.size() == 0) {
+                    break;
+                }
+                
+                offset += line.size() + (b < 0 ? 0 : 1);
+                String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+                if (!text.trim().isEmpty()) {
+                    try {
+                        gson.fromJson(text, Record.class);
+                    } catch (JsonSyntaxException e) {
+                        torn = true;
+                        break;
+                    }
+                    count++;
+                }
+                intactEnd = offset;
+                terminated = b >= 0;
+                if (b < 0) {
+                    break;
+                }
+                line.reset();
+            }
+            
+            if (torn) {
+                System.err.println("Truncating torn mutation log record at byte " + intactEnd + " of " + logPath);
+                file.truncate(intactEnd);
+                file.force(false);
+            } else if (!terminated) {
+                file.write(ByteBuffer.wrap(new byte[] { '\n' }), intactEnd);
+                file.force(false);
+            }
+        }
+        return count;
+    }
+}
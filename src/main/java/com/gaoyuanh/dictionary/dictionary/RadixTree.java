@@ -0,0 +1,358 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compact prefix tree of words, used for prefix search and range scans.
+ * Each edge holds a run of characters, so a chain of single-child nodes is stored
+ * as one node. Nodes are immutable: an update copies the path from the root to the
+ * changed node and swaps the root with a compare-and-set, retrying if another
+ * writer got there first, so readers never lock and always see a consistent tree
+ * and writers of different words do not wait for each other.
+ * Children are kept in {@link BinarySnapshot#WORD_ORDER}, so a walk of the tree
+ * yields words in the same order as a binary snapshot index.
+ */
+final class RadixTree {
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Node EMPTY_ROOT = new Node("", false, NO_CHILDREN);
+
+    private final AtomicReference<Node> root = new AtomicReference<>(EMPTY_ROOT);
+
+    /**
+     * Adds a word to the tree
+     * 
+     * @param word The normalized word
+     */
+    void add(String word) {
+        while (true) {
+            Node current = root.get();
+            Node updated = insert(current, word, 0);
+            if (updated == current || root.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes a word from the tree if it is present
+     * 
+     * @param word The normalized word
+     */
+    void remove(String word) {
+        while (true) {
+            Node current = root.get();
+            Node updated = delete(current, word, 0);
+            if (updated == null) {
+                updated = EMPTY_ROOT;
+            }
+            if (updated == current || root.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes all words from the tree
+     */
+    void clear() {
+        root.set(EMPTY_ROOT);
+    }
+
+    /**
+     * Collects words starting with a prefix, in word order. Only the nodes on the
+     * path to the prefix and the nodes of the returned words are visited, so the
+     * cost does not depend on the number of words in the tree.
+     * 
+     * @param prefix The normalized prefix
+     * @param limit Maximum number of words to return
+     * @return The matching words
+     */
+    List<String> wordsWithPrefix(String prefix, int limit) {
+        List<String> words = new ArrayList<>(Math.min(limit, 16));
+        Node node = root.get();
+        StringBuilder path = new StringBuilder(prefix.length() + 16);
+        int depth = 0;
+        while (depth < prefix.length()) {
+            int index = node.indexOf(prefix.charAt(depth));
+            if (index < 0) {
+                return words;
+            }
+            
+            Node child = node.children[index];
+            int length = Math.min(child.label.length(), prefix.length() - depth);
+            if (!child.label.regionMatches(0, prefix, depth, length)) {
+                return words;
+            }
+            path.append(child.label);
+            depth += child.label.length();
+            node = child;
+        }
+        collect(node, path, limit, words);
+        return words;
+    }
+
+    /**
+     * Collects the words at or after a start word, in word order. Subtrees that
+     * sort entirely before the start are skipped without being visited, so the
+     * cost depends on the length of the start word and the limit.
+     * 
+     * @param start The normalized start word
+     * @param limit Maximum number of words to return
+     * @return The words from the start word on
+     */
+    List<String> wordsFrom(String start, int limit) {
+        List<String> words = new ArrayList<>(Math.min(limit, 16));
+        collectFrom(root.get(), new StringBuilder(start.length() + 16), start, limit, words);
+        return words;
+    }
+
+    /**
+     * Offers every word within the matcher's edit distance to it, skipping each
+     * subtree whose prefix is already too far from the target
+     * 
+     * @param matcher Collects the matching words
+     */
+    void visitWithin(FuzzyMatcher matcher) {
+        walk(root.get(), matcher.firstRow(), new StringBuilder(), matcher);
+    }
+
+    private static void walk(Node node, int[] row, StringBuilder path, FuzzyMatcher matcher) {
+        if (node.terminal) {
+            matcher.offer(path.toString(), row);
+        }
+        for (Node child : node.children) {
+            int length = path.length();
+            int[] childRow = row;
+            boolean reachable = true;
+            for (int i = 0; i < child.label.length() && reachable; i++) {
+                char c = child.label.charAt(i);
+                childRow = matcher.nextRow(childRow, c, null);
+                path.append(c);
+                reachable = matcher.canMatch(childRow);
+            }
+            if (reachable) {
+                walk(child, childRow, path, matcher);
+            }
+            path.setLength(length);
+        }
+    }
+
+    private static void collect(Node node, StringBuilder path, int limit, List<String> words) {
+        if (node.terminal) {
+            words.add(path.toString());
+        }
+        for (Node child : node.children) {
+            if (words.size() >= limit) {
+                return;
+            }
+            int length = path.length();
+            path.append(child.label);
+            collect(child, path, limit, words);
+            path.setLength(length);
+        }
+    }
+
+    /**
+     * Collects the words below a node that sort at or after a start word
+     * 
+     * @param path The word of the node, a prefix of the start word
+     */
+    private static void collectFrom(Node node, StringBuilder path, String start, int limit, List<String> words) {
+        int depth = path.length();
+        if (depth == start.length()) {
+            collect(node, path, limit, words);
+            return;
+        }
+        
+        // The node's own word is a proper prefix of the start, so it sorts before it
+        int index = node.indexOf(start.charAt(depth));
+        int next = index < 0 ? -index - 1 : index + 1;
+        if (index >= 0) {
+            Node child = node.children[index];
+            int length = Math.min(child.label.length(), start.length() - depth);
+            int cmp = compareRegion(child.label, start, depth, length);
+            path.append(child.label);
+            if (cmp > 0 || (cmp == 0 && child.label.length() > length)) {
+                // Every word below the child sorts after the start
+                collect(child, path, limit, words);
+            } else if (cmp == 0) {
+                collectFrom(child, path, start, limit, words);
+            }
+            path.setLength(depth);
+        }
+        for (int i = next; i < node.children.length && words.size() < limit; i++) {
+            Node child = node.children[i];
+            path.append(child.label);
+            collect(child, path, limit, words);
+            path.setLength(depth);
+        }
+    }
+
+    /**
+     * Compares the first characters of a label with a region of a word in word order
+     */
+    private static int compareRegion(String label, String word, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            char x = label.charAt(i);
+            char y = word.charAt(offset + i);
+            if (x != y) {
+                return BinarySnapshot.charOrder(x) - BinarySnapshot.charOrder(y);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Inserts the rest of a word below a node whose label has been matched
+     * 
+     * @return The updated node, or the same node if the word was already present
+     */
+    private static Node insert(Node node, String word, int depth) {
+        if (depth == word.length()) {
+            return node.terminal ? node : new Node(node.label, true, node.children);
+        }
+        
+        int index = node.indexOf(word.charAt(depth));
+        if (index < 0) {
+            return node.withChild(-index - 1, new Node(word.substring(depth), true, NO_CHILDREN));
+        }
+        
+        Node child = node.children[index];
+        int common = commonPrefixLength(child.label, word, depth);
+        if (common == child.label.length()) {
+            Node updated = insert(child, word, depth + common);
+            return updated == child ? node : node.withChildAt(index, updated);
+        }
+        
+        // The word leaves the child's label part way: split the label
+        Node lower = new Node(child.label.substring(common), child.terminal, child.children);
+        Node split;
+        if (depth + common == word.length()) {
+            split = new Node(child.label.substring(0, common), true, new Node[] { lower });
+        } else {
+            Node leaf = new Node(word.substring(depth + common), true, NO_CHILDREN);
+            split = new Node(child.label.substring(0, common), false, compareLabels(lower, leaf) < 0
+                    ? new Node[] { lower, leaf } : new Node[] { leaf, lower });
+        }
+        return node.withChildAt(index, split);
+    }
+
+    /**
+     * Deletes the rest of a word below a node whose label has been matched
+     * 
+     * @return The updated node, the same node if the word was absent, or null if
+     *         the node no longer holds any word
+     */
+    private static Node delete(Node node, String word, int depth) {
+        Node result;
+        if (depth == word.length()) {
+            if (!node.terminal) {
+                return node;
+            }
+            result = new Node(node.label, false, node.children);
+        } else {
+            int index = node.indexOf(word.charAt(depth));
+            if (index < 0) {
+                return node;
+            }
+            
+            Node child = node.children[index];
+            if (!word.startsWith(child.label, depth)) {
+                return node;
+            }
+            Node updated = delete(child, word, depth + child.label.length());
+            if (updated == child) {
+                return node;
+            }
+            result = updated == null ? node.withoutChild(index) : node.withChildAt(index, updated);
+        }
+        
+        // Keep the tree compressed; the root is never merged away
+        if (depth == 0 || result.terminal) {
+            return result;
+        }
+        if (result.children.length == 0) {
+            return null;
+        }
+        if (result.children.length == 1) {
+            Node only = result.children[0];
+            return new Node(result.label + only.label, only.terminal, only.children);
+        }
+        return result;
+    }
+
+    private static int commonPrefixLength(String label, String word, int depth) {
+        int max = Math.min(label.length(), word.length() - depth);
+        int i = 0;
+        while (i < max && label.charAt(i) == word.charAt(depth + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int compareLabels(Node a, Node b) {
+        return BinarySnapshot.charOrder(a.label.charAt(0)) - BinarySnapshot.charOrder(b.label.charAt(0));
+    }
+
+    /**
+     * Immutable tree node. The label is the run of characters on the edge from
+     * the parent; children are sorted by the first character of their label.
+     */
+    private static final class Node {
+        final String label;
+        final boolean terminal;
+        final Node[] children;
+        
+        Node(String label, boolean terminal, Node[] children) {
+            this.label = label;
+            this.terminal = terminal;
+            this.children = children;
+        }
+        
+        /**
+         * Binary searches the children for the one whose label starts with a character
+         * 
+         * @return The child index, or -(insertion point) - 1 if there is none
+         */
+        int indexOf(char c) {
+            int key = BinarySnapshot.charOrder(c);
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = BinarySnapshot.charOrder(children[mid].label.charAt(0)) - key;
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+        
+        Node withChild(int position, Node child) {
+            Node[] copy = new Node[children.length + 1];
+            System.arraycopy(children, 0, copy, 0, position);
+            copy[position] = child;
+            System.arraycopy(children, position, copy, position + 1, children.length - position);
+            return new Node(label, terminal, copy);
+        }
+        
+        Node withChildAt(int index, Node child) {
+            Node[] copy = children.clone();
+            copy[index] = child;
+            return new Node(label, terminal, copy);
+        }
+        
+        Node withoutChild(int index) {
+            Node[] copy = new Node[children.length - 1];
+            System.arraycopy(children, 0, copy, 0, index);
+            System.arraycopy(children, index + 1, copy, index, copy.length - index);
+            return new Node(label, terminal, copy);
+        }
+    }
+}
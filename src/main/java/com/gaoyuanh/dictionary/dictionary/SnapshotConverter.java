@@ -0,0 +1,56 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.io.IOException;
+
+/**
+ * Command-line converter between the JSON dictionary format and binary snapshots.
+ * The output format is chosen by the output file extension; after converting,
+ * both files are loaded again to compare startup times.
+ */
+public final class SnapshotConverter {
+    private SnapshotConverter() {
+    }
+
+    /**
+     * Converts a dictionary file
+     *
+     * @param args Command line arguments: inputFile outputFile
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: SnapshotConverter <input.json|input" + BinarySnapshot.FILE_EXTENSION
+                    + "> <output.json|output" + BinarySnapshot.FILE_EXTENSION + ">");
+            System.exit(1);
+        }
+
+        String inputPath = args[0];
+        String outputPath = args[1];
+        try {
+            Dictionary dictionary = new Dictionary();
+            dictionary.loadFromFile(inputPath);
+            dictionary.saveToFile(outputPath);
+
+            System.out.println("Startup comparison:");
+            System.out.println("  " + inputPath + ": " + timeLoad(inputPath) + " ms");
+            System.out.println("  " + outputPath + ": " + timeLoad(outputPath) + " ms");
+        } catch (IOException e) {
+            System.err.println("Error converting dictionary: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Measures how long it takes until a fresh dictionary can answer a lookup
+     *
+     * @param filePath Path to the dictionary file
+     * @return Elapsed time in milliseconds
+     * @throws IOException If the file cannot be loaded
+     */
+    private static long timeLoad(String filePath) throws IOException {
+        long startTime = System.nanoTime();
+        Dictionary dictionary = new Dictionary();
+        dictionary.loadFromFile(filePath);
+        dictionary.search("a");
+        return (System.nanoTime() - startTime) / 1000000;
+    }
+}
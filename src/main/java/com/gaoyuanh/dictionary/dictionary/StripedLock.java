@@ -0,0 +1,105 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed array of locks selected by key hash.
+ * Operations on different keys almost always take different locks, so they do
+ * not contend; whole-dictionary operations take every stripe in index order.
+ * Batches take the stripes of their keys, also in index order, so no two callers
+ * can wait on each other's stripes.
+ */
+final class StripedLock {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * Constructor for StripedLock
+     * 
+     * @param stripeCount Requested number of stripes, rounded up to a power of two
+     */
+    StripedLock(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Gets the lock guarding a key
+     * 
+     * @param key The key
+     * @return The stripe for the key
+     */
+    Lock lockFor(Object key) {
+        return stripes[indexFor(key)];
+    }
+
+    /**
+     * Acquires the stripes guarding a set of keys, each once, in index order
+     * 
+     * @param keys The keys; null keys are skipped
+     * @return The acquired stripe indexes, to pass to {@link #unlockStripes(int[])}
+     */
+    int[] lockStripesFor(Collection<?> keys) {
+        int[] indexes = new int[keys.size()];
+        int count = 0;
+        for (Object key : keys) {
+            if (key != null) {
+                indexes[count++] = indexFor(key);
+            }
+        }
+        Arrays.sort(indexes, 0, count);
+        
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || indexes[i] != indexes[distinct - 1]) {
+                indexes[distinct++] = indexes[i];
+            }
+        }
+        int[] acquired = Arrays.copyOf(indexes, distinct);
+        for (int index : acquired) {
+            stripes[index].lock();
+        }
+        return acquired;
+    }
+
+    /**
+     * Releases stripes acquired by {@link #lockStripesFor(Collection)}
+     * 
+     * @param indexes The acquired stripe indexes
+     */
+    void unlockStripes(int[] indexes) {
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            stripes[indexes[i]].unlock();
+        }
+    }
+
+    private int indexFor(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Acquires every stripe, blocking all per-key operations
+     */
+    void lockAll() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    /**
+     * Releases every stripe acquired by {@link #lockAll()}
+     */
+    void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+}
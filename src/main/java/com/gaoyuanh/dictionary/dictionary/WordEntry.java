@@ -2,10 +2,13 @@ package com.gaoyuanh.dictionary.dictionary;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * WordEntry class that encapsulates a word and its meanings.
+ * Entries are immutable: changing the meanings produces a new entry, so one
+ * instance and its meaning list can be shared by any number of readers.
  * Implements Serializable to support transmission over sockets.
  */
 public class WordEntry implements Serializable {
@@ -21,8 +24,31 @@ public class WordEntry implements Serializable {
      * @param meanings List of meanings for the word
      */
     public WordEntry(String word, List<String> meanings) {
+        this(word, Collections.unmodifiableList(new ArrayList<>(meanings)), false);
+    }
+
+    /**
+     * Constructor that uses an unmodifiable list as is
+     * 
+     * @param word The word
+     * @param meanings Unmodifiable list of meanings
+     * @param shared Unused, distinguishes this constructor from the copying one
+     */
+    private WordEntry(String word, List<String> meanings, boolean shared) {
         this.word = word;
-        this.meanings = new ArrayList<>(meanings);
+        this.meanings = meanings;
+    }
+
+    /**
+     * Creates an entry that takes ownership of a list without copying it.
+     * The caller must not modify the list afterwards.
+     * 
+     * @param word The word
+     * @param meanings List of meanings for the word
+     * @return The new entry
+     */
+    static WordEntry wrap(String word, List<String> meanings) {
+        return new WordEntry(word, Collections.unmodifiableList(meanings), true);
     }
 
     /**
@@ -35,46 +61,58 @@ public class WordEntry implements Serializable {
     }
 
     /**
-     * Gets the list of meanings
+     * Gets the list of meanings. The list is shared and cannot be modified.
      * 
      * @return List of meanings
      */
     public List<String> getMeanings() {
-        return new ArrayList<>(meanings);
+        return meanings;
+    }
+
+    /**
+     * Creates an entry for another word with the same meanings
+     * 
+     * @param newWord The word for the new entry
+     * @return The new entry, sharing this entry's meaning list
+     */
+    public WordEntry withWord(String newWord) {
+        return word.equals(newWord) ? this : new WordEntry(newWord, meanings, true);
     }
 
     /**
-     * Adds a new meaning to the word
+     * Creates a copy of this entry with a new meaning added
      * 
      * @param meaning The meaning to add
-     * @return true if the meaning was added, false if it already exists
+     * @return The new entry, or null if the meaning is empty or already exists
      */
-    public boolean addMeaning(String meaning) {
+    public WordEntry withMeaning(String meaning) {
         if (meaning == null || meaning.trim().isEmpty()) {
-            return false;
+            return null;
         }
         
         String normalizedMeaning = meaning.trim();
         
         if (meanings.contains(normalizedMeaning)) {
-            return false;
+            return null;
         }
         
-        meanings.add(normalizedMeaning);
-        return true;
+        List<String> newMeanings = new ArrayList<>(meanings.size() + 1);
+        newMeanings.addAll(meanings);
+        newMeanings.add(normalizedMeaning);
+        return wrap(word, newMeanings);
     }
 
     /**
-     * Updates an existing meaning with a new one
+     * Creates a copy of this entry with an existing meaning replaced by a new one
      * 
      * @param oldMeaning The existing meaning to update
      * @param newMeaning The new meaning to replace with
-     * @return true if the meaning was updated, false if old meaning doesn't exist
+     * @return The new entry, or null if the old meaning doesn't exist
      */
-    public boolean updateMeaning(String oldMeaning, String newMeaning) {
+    public WordEntry withUpdatedMeaning(String oldMeaning, String newMeaning) {
         if (oldMeaning == null || oldMeaning.trim().isEmpty() || 
             newMeaning == null || newMeaning.trim().isEmpty()) {
-            return false;
+            return null;
         }
         
         String normalizedOldMeaning = oldMeaning.trim();
@@ -82,34 +120,36 @@ public class WordEntry implements Serializable {
         
         int index = meanings.indexOf(normalizedOldMeaning);
         if (index == -1) {
-            return false;
+            return null;
         }
         
+        List<String> newMeanings = new ArrayList<>(meanings);
         // Check if the new meaning already exists elsewhere
         int newIndex = meanings.indexOf(normalizedNewMeaning);
         if (newIndex != -1 && newIndex != index) {
             // If new meaning already exists in another position, just remove the old one
-            meanings.remove(index);
+            newMeanings.remove(index);
         } else {
             // Replace old meaning with new one
-            meanings.set(index, normalizedNewMeaning);
+            newMeanings.set(index, normalizedNewMeaning);
         }
         
-        return true;
+        return wrap(word, newMeanings);
     }
 
     /**
-     * Removes a meaning from the word
+     * Creates a copy of this entry without a meaning
      * 
      * @param meaning The meaning to remove
-     * @return true if the meaning was removed, false if it doesn't exist
+     * @return The new entry, or null if the meaning doesn't exist
      */
-    public boolean removeMeaning(String meaning) {
+    public WordEntry withoutMeaning(String meaning) {
         if (meaning == null || meaning.trim().isEmpty()) {
-            return false;
+            return null;
         }
         
-        return meanings.remove(meaning.trim());
+        List<String> newMeanings = new ArrayList<>(meanings);
+        return newMeanings.remove(meaning.trim()) ? wrap(word, newMeanings) : null;
     }
 
     @Override
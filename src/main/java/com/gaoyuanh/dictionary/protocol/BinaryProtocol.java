@@ -0,0 +1,575 @@
+package com.gaoyuanh.dictionary.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary encoding of {@link Message}, an alternative to JSON lines.
+ * A client selects it by sending {@link #handshake()} as the first bytes of a
+ * connection; the server answers with the magic byte and version and both sides
+ * then exchange frames. A JSON request always starts with '{', so servers can tell
+ * the two apart from the first byte and JSON clients keep working.
+ * 
+ * Frame layout, all integers as unsigned LEB128 varints:
+ * <pre>
+ * length   bytes in the rest of the frame
+ * opcode   one byte, index into the operation table (0 = none)
+ * status   one byte, index into the status table (0 = none)
+ * fields   bit mask of the fields that follow, in bit order
+ * values   strings as length + UTF-8 bytes, lists as count + strings,
+ *          numbers as varints; suggest has no value; a batch as count +
+ *          messages laid out like a frame without its length
+ * </pre>
+ * New operations and statuses are only ever appended to the tables, so codes
+ * stay stable across versions.
+ */
+public final class BinaryProtocol {
+    // First byte a binary client sends, and the first byte of the server's answer
+    public static final byte MAGIC = (byte) 0xB1;
+    public static final byte VERSION = 1;
+
+    // Largest accepted frame, length prefix excluded
+    public static final int MAX_FRAME_BYTES = 1 << 20;
+
+    private static final String[] OPERATIONS = {
+        null,
+        ProtocolConstants.OPERATION_SEARCH,
+        ProtocolConstants.OPERATION_ADD,
+        ProtocolConstants.OPERATION_REMOVE,
+        ProtocolConstants.OPERATION_ADD_MEANING,
+        ProtocolConstants.OPERATION_UPDATE_MEANING,
+        ProtocolConstants.OPERATION_PREFIX_SEARCH,
+        ProtocolConstants.OPERATION_FUZZY_SEARCH,
+        ProtocolConstants.OPERATION_REVERSE_SEARCH,
+        ProtocolConstants.OPERATION_MULTI_SEARCH,
+        ProtocolConstants.OPERATION_BULK_ADD,
+        ProtocolConstants.OPERATION_BULK_UPDATE,
+        ProtocolConstants.OPERATION_SCAN,
+        ProtocolConstants.OPERATION_SUBSCRIBE,
+        ProtocolConstants.OPERATION_INVALIDATE
+    };
+
+    private static final String[] STATUSES = {
+        null,
+        ProtocolConstants.STATUS_SUCCESS,
+        ProtocolConstants.STATUS_ERROR,
+        ProtocolConstants.STATUS_NOT_FOUND,
+        ProtocolConstants.STATUS_DUPLICATE,
+        ProtocolConstants.STATUS_MEANING_NOT_FOUND
+    };
+
+    // Field bits
+    private static final int WORD = 1;
+    private static final int MEANINGS = 1 << 1;
+    private static final int OLD_MEANING = 1 << 2;
+    private static final int NEW_MEANING = 1 << 3;
+    private static final int ERROR_MESSAGE = 1 << 4;
+    private static final int LIMIT = 1 << 5;
+    private static final int WORDS = 1 << 6;
+    private static final int MAX_DISTANCE = 1 << 7;
+    private static final int SUGGEST = 1 << 8;
+    private static final int QUERY = 1 << 9;
+    private static final int REQUEST_ID = 1 << 10;
+    private static final int BATCH = 1 << 11;
+    private static final int END_WORD = 1 << 12;
+    private static final int CURSOR = 1 << 13;
+    private static final int TIMEOUT = 1 << 14;
+
+    // Room left in front of the payload for the length prefix
+    private static final int LENGTH_PREFIX_BYTES = 5;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Gets the bytes a client sends to select the binary protocol. They end with a
+     * newline, so a server that only speaks JSON answers with an error line instead
+     * of waiting for more input.
+     * 
+     * @return The handshake bytes
+     */
+    public static byte[] handshake() {
+        return new byte[] { MAGIC, VERSION, '\n' };
+    }
+
+    /**
+     * Gets the bytes a server answers a handshake with
+     * 
+     * @return The handshake answer
+     */
+    public static byte[] handshakeAnswer() {
+        return new byte[] { MAGIC, VERSION };
+    }
+
+    /**
+     * Encodes a message as a complete frame, length prefix included
+     * 
+     * @param message The message to encode
+     * @return The frame bytes
+     */
+    public static byte[] encode(Message message) {
+        Encoder encoder = new Encoder();
+        writeMessage(encoder, message);
+        return encoder.toFrame();
+    }
+
+    private static void writeMessage(Encoder encoder, Message message) {
+        encoder.writeByte(code(OPERATIONS, message.getOperation()));
+        encoder.writeByte(code(STATUSES, message.getStatus()));
+        
+        int fields = 0;
+        fields |= message.getWord() != null ? WORD : 0;
+        fields |= message.getMeanings() != null ? MEANINGS : 0;
+        fields |= message.getOldMeaning() != null ? OLD_MEANING : 0;
+        fields |= message.getNewMeaning() != null ? NEW_MEANING : 0;
+        fields |= message.getErrorMessage() != null ? ERROR_MESSAGE : 0;
+        fields |= message.getLimit() != null ? LIMIT : 0;
+        fields |= message.getWords() != null ? WORDS : 0;
+        fields |= message.getMaxDistance() != null ? MAX_DISTANCE : 0;
+        fields |= message.isSuggest() ? SUGGEST : 0;
+        fields |= message.getQuery() != null ? QUERY : 0;
+        fields |= message.getRequestId() != null ? REQUEST_ID : 0;
+        fields |= message.getBatch() != null ? BATCH : 0;
+        fields |= message.getEndWord() != null ? END_WORD : 0;
+        fields |= message.getCursor() != null ? CURSOR : 0;
+        fields |= message.getTimeoutMillis() != null ? TIMEOUT : 0;
+        encoder.writeVarint(fields);
+        
+        if ((fields & WORD) != 0) {
+            encoder.writeString(message.getWord());
+        }
+        if ((fields & MEANINGS) != 0) {
+            encoder.writeStrings(message.getMeanings());
+        }
+        if ((fields & OLD_MEANING) != 0) {
+            encoder.writeString(message.getOldMeaning());
+        }
+        if ((fields & NEW_MEANING) != 0) {
+            encoder.writeString(message.getNewMeaning());
+        }
+        if ((fields & ERROR_MESSAGE) != 0) {
+            encoder.writeString(message.getErrorMessage());
+        }
+        if ((fields & LIMIT) != 0) {
+            encoder.writeVarint(zigZag(message.getLimit()));
+        }
+        if ((fields & WORDS) != 0) {
+            encoder.writeStrings(message.getWords());
+        }
+        if ((fields & MAX_DISTANCE) != 0) {
+            encoder.writeVarint(zigZag(message.getMaxDistance()));
+        }
+        if ((fields & QUERY) != 0) {
+            encoder.writeString(message.getQuery());
+        }
+        if ((fields & REQUEST_ID) != 0) {
+            encoder.writeVarint(message.getRequestId());
+        }
+        if ((fields & BATCH) != 0) {
+            encoder.writeVarint(message.getBatch().size());
+            for (Message item : message.getBatch()) {
+                writeMessage(encoder, item);
+            }
+        }
+        if ((fields & END_WORD) != 0) {
+            encoder.writeString(message.getEndWord());
+        }
+        if ((fields & CURSOR) != 0) {
+            encoder.writeString(message.getCursor());
+        }
+        if ((fields & TIMEOUT) != 0) {
+            encoder.writeVarint(Math.max(0, message.getTimeoutMillis()));
+        }
+    }
+
+    /**
+     * Adds a request ID to an encoded frame without decoding it, so a cached
+     * response can be reused for any request. The ID is the last field of a
+     * frame without any field of a higher bit, so it is appended after the other fields.
+     * 
+     * @param frame A frame from {@link #encode(Message)} with no field from the request ID on
+     * @param requestId The request ID
+     * @return The frame with the request ID
+     * @throws IllegalArgumentException If the frame already has a request ID or a field after it
+     */
+    public static byte[] withRequestId(byte[] frame, long requestId) {
+        Decoder decoder = new Decoder(frame, 0, frame.length);
+        int header;
+        long fields;
+        try {
+            decoder.readVarint();
+            header = decoder.position;
+            decoder.readByte();
+            decoder.readByte();
+            fields = decoder.readVarint();
+            if (fields >= REQUEST_ID) {
+                throw new IllegalArgumentException("Frame already has a request ID or a field after it");
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed frame", e);
+        }
+        
+        // Sized up front and written in one pass, as this runs for every cache hit
+        fields |= REQUEST_ID;
+        int bodyLength = frame.length - decoder.position;
+        int payloadLength = 2 + varintSize(fields) + bodyLength + varintSize(requestId);
+        byte[] result = new byte[varintSize(payloadLength) + payloadLength];
+        int position = putVarint(result, 0, payloadLength);
+        result[position++] = frame[header];
+        result[position++] = frame[header + 1];
+        position = putVarint(result, position, fields);
+        System.arraycopy(frame, decoder.position, result, position, bodyLength);
+        putVarint(result, position + bodyLength, requestId);
+        return result;
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        for (long rest = value >>> 7; rest != 0; rest >>>= 7) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int putVarint(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Decodes the part of a frame after its length prefix
+     * 
+     * @param payload Buffer holding the frame
+     * @param offset Position of the opcode
+     * @param length Number of bytes in the frame
+     * @return The decoded message
+     * @throws IOException If the frame is malformed
+     */
+    public static Message decode(byte[] payload, int offset, int length) throws IOException {
+        return readMessage(new Decoder(payload, offset, offset + length), true);
+    }
+
+    private static Message readMessage(Decoder decoder, boolean topLevel) throws IOException {
+        Message message = new Message();
+        int opcode = decoder.readByte();
+        // An unknown operation is passed on by name so it gets an error response
+        message.setOperation(opcode < OPERATIONS.length ? OPERATIONS[opcode] : "OPCODE_" + opcode);
+        int status = decoder.readByte();
+        if (status >= STATUSES.length) {
+            throw new IOException("Unknown status code " + status);
+        }
+        message.setStatus(STATUSES[status]);
+        
+        long fields = decoder.readVarint();
+        if ((fields & WORD) != 0) {
+            message.setWord(decoder.readString());
+        }
+        if ((fields & MEANINGS) != 0) {
+            message.setMeanings(decoder.readStrings());
+        }
+        if ((fields & OLD_MEANING) != 0) {
+            message.setOldMeaning(decoder.readString());
+        }
+        if ((fields & NEW_MEANING) != 0) {
+            message.setNewMeaning(decoder.readString());
+        }
+        if ((fields & ERROR_MESSAGE) != 0) {
+            message.setErrorMessage(decoder.readString());
+        }
+        if ((fields & LIMIT) != 0) {
+            message.setLimit(unZigZag(decoder.readVarint()));
+        }
+        if ((fields & WORDS) != 0) {
+            message.setWords(decoder.readStrings());
+        }
+        if ((fields & MAX_DISTANCE) != 0) {
+            message.setMaxDistance(unZigZag(decoder.readVarint()));
+        }
+        if ((fields & SUGGEST) != 0) {
+            message.setSuggest(true);
+        }
+        if ((fields & QUERY) != 0) {
+            message.setQuery(decoder.readString());
+        }
+        if ((fields & REQUEST_ID) != 0) {
+            message.setRequestId(decoder.readVarint());
+        }
+        if ((fields & BATCH) != 0) {
+            if (!topLevel) {
+                throw new IOException("Nested batch");
+            }
+            int count = decoder.readCount();
+            List<Message> batch = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                batch.add(readMessage(decoder, false));
+            }
+            message.setBatch(batch);
+        }
+        if ((fields & END_WORD) != 0) {
+            message.setEndWord(decoder.readString());
+        }
+        if ((fields & CURSOR) != 0) {
+            message.setCursor(decoder.readString());
+        }
+        if ((fields & TIMEOUT) != 0) {
+            message.setTimeoutMillis(decoder.readVarint());
+        }
+        return message;
+    }
+
+    /**
+     * Reads one frame from a stream
+     * 
+     * @param in The stream, positioned at a length prefix
+     * @return The decoded message, or null if the stream ended before the frame
+     * @throws IOException If reading fails, the stream ends inside a frame or the frame is malformed
+     */
+    public static Message readFrame(InputStream in) throws IOException {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return null;
+                }
+                throw new EOFException("Connection closed inside a frame");
+            }
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            if (shift >= 28) {
+                throw new IOException("Malformed frame length");
+            }
+        }
+        checkFrameLength(length);
+        
+        byte[] payload = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(payload, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Connection closed inside a frame");
+            }
+            read += n;
+        }
+        return decode(payload, 0, length);
+    }
+
+    /**
+     * Checks a frame length read from the wire
+     * 
+     * @param length The frame length
+     * @throws IOException If the frame is empty or larger than {@link #MAX_FRAME_BYTES}
+     */
+    public static void checkFrameLength(int length) throws IOException {
+        if (length < 2 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid frame length " + length);
+        }
+    }
+
+    private static int code(String[] table, String name) {
+        if (name == null) {
+            return 0;
+        }
+        for (int i = 1; i < table.length; i++) {
+            if (table[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No binary code for " + name);
+    }
+
+    private static long zigZag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int unZigZag(long value) {
+        int v = (int) value;
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Growable output buffer that leaves room for the length prefix in front
+     */
+    private static final class Encoder {
+        private byte[] buffer = new byte[128];
+        private int position = LENGTH_PREFIX_BYTES;
+        
+        void writeByte(int b) {
+            ensure(1);
+            buffer[position++] = (byte) b;
+        }
+        
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+        
+        /**
+         * Writes a string as its UTF-8 length and bytes, without an intermediate array
+         */
+        void writeString(String s) {
+            int length = s.length();
+            int utf8Length = 0;
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    utf8Length++;
+                } else if (c < 0x800) {
+                    utf8Length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    utf8Length += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    utf8Length++; // Unpaired surrogate, written as '?'
+                } else {
+                    utf8Length += 3;
+                }
+            }
+            writeVarint(utf8Length);
+            ensure(utf8Length);
+            
+            byte[] b = buffer;
+            int p = position;
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    b[p++] = (byte) c;
+                } else if (c < 0x800) {
+                    b[p++] = (byte) (0xC0 | (c >> 6));
+                    b[p++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    b[p++] = (byte) (0xF0 | (cp >> 18));
+                    b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    b[p++] = (byte) (0x80 | (cp & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    b[p++] = '?';
+                } else {
+                    b[p++] = (byte) (0xE0 | (c >> 12));
+                    b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    b[p++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            position = p;
+        }
+        
+        void writeStrings(List<String> strings) {
+            writeVarint(strings.size());
+            for (String s : strings) {
+                writeString(s);
+            }
+        }
+        
+        /**
+         * Writes the length prefix right in front of the payload
+         * 
+         * @return The complete frame
+         */
+        byte[] toFrame() {
+            int length = position - LENGTH_PREFIX_BYTES;
+            int prefixBytes = 1;
+            for (int v = length >>> 7; v != 0; v >>>= 7) {
+                prefixBytes++;
+            }
+            int start = LENGTH_PREFIX_BYTES - prefixBytes;
+            int p = start;
+            int v = length;
+            while ((v & ~0x7F) != 0) {
+                buffer[p++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buffer[p] = (byte) v;
+            return Arrays.copyOfRange(buffer, start, position);
+        }
+        
+        private void ensure(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+    }
+
+    /**
+     * Reader over one frame that rejects reads past its end
+     */
+    private static final class Decoder {
+        private final byte[] buffer;
+        private final int end;
+        private int position;
+        
+        Decoder(byte[] buffer, int position, int end) {
+            this.buffer = buffer;
+            this.position = position;
+            this.end = end;
+        }
+        
+        int readByte() throws IOException {
+            if (position >= end) {
+                throw new IOException("Truncated frame");
+            }
+            return buffer[position++] & 0xFF;
+        }
+        
+        long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+        
+        String readString() throws IOException {
+            long length = readVarint();
+            // A ten-byte varint can be negative, which must not pass for a short length
+            if (length < 0 || length > end - position) {
+                throw new IOException("Truncated frame");
+            }
+            String s = new String(buffer, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return s;
+        }
+        
+        /**
+         * Reads the count of a list whose items take at least one byte each,
+         * which bounds a bogus count by the bytes left in the frame
+         */
+        int readCount() throws IOException {
+            long count = readVarint();
+            if (count < 0 || count > end - position) {
+                throw new IOException("Truncated frame");
+            }
+            return (int) count;
+        }
+        
+        List<String> readStrings() throws IOException {
+            int count = readCount();
+            List<String> strings = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                strings.add(readString());
+            }
+            return strings;
+        }
+    }
+}
@@ -17,6 +17,16 @@ public class Message implements Serializable {
     private String oldMeaning;
     private String newMeaning;
     private String errorMessage;
+    private Integer limit;
+    private List<String> words;
+    private Integer maxDistance;
+    private Boolean suggest;
+    private String query;
+    private Long requestId;
+    private List<Message> batch;
+    private String endWord;
+    private String cursor;
+    private Long timeoutMillis;
 
     /**
      * Default constructor
@@ -158,4 +168,191 @@ public class Message implements Serializable {
     public void setErrorMessage(String errorMessage) {
         this.errorMessage = errorMessage;
     }
+
+    /**
+     * Gets the maximum number of results (for prefix search)
+     * 
+     * @return The result limit, or null if not set
+     */
+    public Integer getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sets the maximum number of results (for prefix search)
+     * 
+     * @param limit The result limit to set
+     */
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Gets the list of matching words (for prefix search)
+     * 
+     * @return The list of words
+     */
+    public List<String> getWords() {
+        return words;
+    }
+
+    /**
+     * Sets the list of matching words (for prefix search)
+     * 
+     * @param words The list of words to set
+     */
+    public void setWords(List<String> words) {
+        this.words = words;
+    }
+
+    /**
+     * Gets the maximum edit distance (for fuzzy search)
+     * 
+     * @return The maximum edit distance, or null if not set
+     */
+    public Integer getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * Sets the maximum edit distance (for fuzzy search)
+     * 
+     * @param maxDistance The maximum edit distance to set
+     */
+    public void setMaxDistance(Integer maxDistance) {
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * Checks whether a search should return suggestions when the word is not found
+     * 
+     * @return true if suggestions were requested
+     */
+    public boolean isSuggest() {
+        return suggest != null && suggest;
+    }
+
+    /**
+     * Sets whether a search should return suggestions when the word is not found
+     * 
+     * @param suggest true to request suggestions
+     */
+    public void setSuggest(boolean suggest) {
+        this.suggest = suggest ? Boolean.TRUE : null;
+    }
+
+    /**
+     * Gets the query text (for reverse search)
+     * 
+     * @return The query text
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Sets the query text (for reverse search)
+     * 
+     * @param query The query text to set
+     */
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    /**
+     * Gets the request ID. A response carries the ID of its request, so a client with
+     * several requests in flight can match responses that arrive out of order.
+     * 
+     * @return The request ID, or null if the request had none
+     */
+    public Long getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Sets the request ID
+     * 
+     * @param requestId The request ID to set
+     */
+    public void setRequestId(Long requestId) {
+        this.requestId = requestId;
+    }
+
+    /**
+     * Gets the batch items: the entries of a bulk write request, or the result for
+     * each word or entry of a batch response, in request order
+     * 
+     * @return The batch items
+     */
+    public List<Message> getBatch() {
+        return batch;
+    }
+
+    /**
+     * Sets the batch items
+     * 
+     * @param batch The batch items to set
+     */
+    public void setBatch(List<Message> batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * Gets the word that ends a scan, excluded from its results
+     * 
+     * @return The end word, or null for a scan to the end of the dictionary
+     */
+    public String getEndWord() {
+        return endWord;
+    }
+
+    /**
+     * Sets the word that ends a scan
+     * 
+     * @param endWord The end word to set
+     */
+    public void setEndWord(String endWord) {
+        this.endWord = endWord;
+    }
+
+    /**
+     * Gets the continuation cursor of a scan. A response carries one when more
+     * entries follow; sending it back with the next request resumes the scan
+     * after the last entry returned. Its content is opaque to clients.
+     * 
+     * @return The cursor, or null at the start or end of a scan
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Sets the continuation cursor of a scan
+     * 
+     * @param cursor The cursor to set
+     */
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Gets the deadline of a request, as the time its sender still waits for the
+     * response when it is sent. A duration rather than a point in time, so the
+     * client's and server's clocks need not agree: the server counts it from
+     * when the request arrives, and does not execute the request once it has passed.
+     * 
+     * @return The time left in milliseconds, or null for no deadline
+     */
+    public Long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Sets the deadline of a request
+     * 
+     * @param timeoutMillis The time left in milliseconds, or null for no deadline
+     */
+    public void setTimeoutMillis(Long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
 } 
\ No newline at end of file
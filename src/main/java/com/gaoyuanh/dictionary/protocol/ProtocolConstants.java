@@ -11,6 +11,16 @@ public class ProtocolConstants {
     public static final String OPERATION_REMOVE = "REMOVE";
     public static final String OPERATION_ADD_MEANING = "ADD_MEANING";
     public static final String OPERATION_UPDATE_MEANING = "UPDATE_MEANING";
+    public static final String OPERATION_PREFIX_SEARCH = "PREFIX_SEARCH";
+    public static final String OPERATION_FUZZY_SEARCH = "FUZZY_SEARCH";
+    public static final String OPERATION_REVERSE_SEARCH = "REVERSE_SEARCH";
+    public static final String OPERATION_MULTI_SEARCH = "MULTI_SEARCH";
+    public static final String OPERATION_BULK_ADD = "BULK_ADD";
+    public static final String OPERATION_BULK_UPDATE = "BULK_UPDATE";
+    public static final String OPERATION_SCAN = "SCAN";
+    public static final String OPERATION_SUBSCRIBE = "SUBSCRIBE";
+    // Pushed by the server to subscribed connections, without a request ID
+    public static final String OPERATION_INVALIDATE = "INVALIDATE";
     
     // Status codes
     public static final String STATUS_SUCCESS = "SUCCESS";
@@ -19,6 +29,37 @@ public class ProtocolConstants {
     public static final String STATUS_DUPLICATE = "DUPLICATE";
     public static final String STATUS_MEANING_NOT_FOUND = "MEANING_NOT_FOUND";
     
+    // Prefix search result limits
+    public static final int DEFAULT_PREFIX_LIMIT = 10;
+    public static final int MAX_PREFIX_LIMIT = 1000;
+
+    // Fuzzy search edit distances and result limits
+    public static final int DEFAULT_FUZZY_DISTANCE = 2;
+    public static final int MAX_FUZZY_DISTANCE = 3;
+    public static final int DEFAULT_FUZZY_LIMIT = 10;
+    public static final int MAX_FUZZY_LIMIT = 100;
+    public static final int SUGGESTION_LIMIT = 5;
+
+    // Reverse search result limits
+    public static final int DEFAULT_REVERSE_LIMIT = 20;
+    public static final int MAX_REVERSE_LIMIT = 1000;
+
+    // Scan page sizes
+    public static final int DEFAULT_SCAN_LIMIT = 100;
+    public static final int MAX_SCAN_LIMIT = 1000;
+
+    // Most changed words in one INVALIDATE push
+    public static final int MAX_INVALIDATION_WORDS = 256;
+
+    // Most words or entries in one batch request
+    public static final int MAX_BATCH_SIZE = 10000;
+
+    // Requests with an ID that may be in flight on one connection; the client's
+    // default window, and the most the server executes concurrently before it
+    // stops reading from the connection
+    public static final int DEFAULT_IN_FLIGHT_WINDOW = 32;
+    public static final int MAX_IN_FLIGHT_REQUESTS = 128;
+
     // Dictionary file format
     public static final String WORD_SEPARATOR = ":";
     public static final String MEANING_PREFIX = "    ";
@@ -1,14 +1,22 @@
 package com.gaoyuanh.dictionary.server;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.gaoyuanh.dictionary.dictionary.Dictionary;
-import com.gaoyuanh.dictionary.dictionary.WordEntry;
+import com.gaoyuanh.dictionary.protocol.BinaryProtocol;
 import com.gaoyuanh.dictionary.protocol.Message;
 import com.gaoyuanh.dictionary.protocol.ProtocolConstants;
 import com.google.gson.Gson;
@@ -16,20 +24,41 @@ import com.google.gson.JsonSyntaxException;
 
 /**
  * Handles client connections in a separate thread.
- * Processes client requests and sends responses.
+ * Reads requests from the connection, has them executed by a {@link RequestProcessor}
+ * and sends the responses.
+ * Requests that carry an ID are pipelined: with a request executor they run
+ * concurrently while the next ones are read, and each response is sent as soon as
+ * it is ready, possibly out of order. Requests without an ID are answered in order.
+ * A client that opens with the {@link BinaryProtocol} handshake is served binary
+ * frames instead of JSON lines. Responses are written as the encoded bytes the
+ * processor returns, so cached responses go straight to the socket.
+ * After a SUBSCRIBE request the connection also receives INVALIDATE messages,
+ * written on the request executor so a slow client does not hold up the broadcaster.
  */
 public class ClientHandler implements Runnable {
     private final Socket clientSocket;
-    private final Dictionary dictionary;
+    private final RequestProcessor processor;
+    private final Executor requestExecutor;
+    private final Semaphore inFlight;
+    private final Lock writeLock;
     private final Gson gson;
-    private PrintWriter out;
+    private OutputStream out;
     private BufferedReader in;
+    private InputStream binaryIn;
+    private boolean binary;
     private boolean running;
     private Runnable disconnectCallback;
-    private String dictionaryFilePath; // Path to the dictionary file for saving
-
-    // Lock object for synchronized dictionary saves
-    private static final Object SAVE_LOCK = new Object();
+    private final InvalidationBroadcaster.Subscriber subscriber = new InvalidationBroadcaster.Subscriber() {
+        @Override
+        public boolean isBinary() {
+            return binary;
+        }
+        
+        @Override
+        public void push(byte[] encoded) {
+            pushBytes(encoded);
+        }
+    };
 
     /**
      * Constructor for ClientHandler
@@ -38,8 +67,32 @@ public class ClientHandler implements Runnable {
      * @param dictionary The shared dictionary instance
      */
     public ClientHandler(Socket clientSocket, Dictionary dictionary) {
+        this(clientSocket, new RequestProcessor(dictionary, null));
+    }
+
+    /**
+     * Constructor for ClientHandler with a shared request processor
+     * 
+     * @param clientSocket The client socket connection
+     * @param processor The processor that executes requests
+     */
+    public ClientHandler(Socket clientSocket, RequestProcessor processor) {
+        this(clientSocket, processor, null);
+    }
+
+    /**
+     * Constructor for ClientHandler that executes pipelined requests concurrently
+     * 
+     * @param clientSocket The client socket connection
+     * @param processor The processor that executes requests
+     * @param requestExecutor Executes requests that carry an ID, or null to execute every request in order
+     */
+    public ClientHandler(Socket clientSocket, RequestProcessor processor, Executor requestExecutor) {
         this.clientSocket = clientSocket;
-        this.dictionary = dictionary;
+        this.processor = processor;
+        this.requestExecutor = requestExecutor;
+        this.inFlight = new Semaphore(ProtocolConstants.MAX_IN_FLIGHT_REQUESTS);
+        this.writeLock = new ReentrantLock();
         this.gson = new Gson();
         this.running = true;
     }
@@ -53,9 +106,20 @@ public class ClientHandler implements Runnable {
      */
     public ClientHandler(Socket clientSocket, Dictionary dictionary, String dictionaryFilePath) {
         this(clientSocket, dictionary);
-        this.dictionaryFilePath = dictionaryFilePath;
+        processor.setDictionaryFilePath(dictionaryFilePath);
     }
     
+    /**
+     * Constructor for ClientHandler with server-owned persistence
+     * 
+     * @param clientSocket The client socket connection
+     * @param dictionary The shared dictionary instance
+     * @param persistenceScheduler Scheduler that persists changes in the background
+     */
+    public ClientHandler(Socket clientSocket, Dictionary dictionary, PersistenceScheduler persistenceScheduler) {
+        this(clientSocket, new RequestProcessor(dictionary, persistenceScheduler));
+    }
+
     /**
      * Sets a callback to be executed when the client disconnects
      * 
@@ -71,62 +135,68 @@ public class ClientHandler implements Runnable {
      * @param dictionaryFilePath Path to save the dictionary file
      */
     public void setDictionaryFilePath(String dictionaryFilePath) {
-        this.dictionaryFilePath = dictionaryFilePath;
-    }
-
-    /**
-     * Saves the dictionary to the specified file path
-     * Uses synchronized block to prevent concurrent writes
-     */
-    private void saveDictionaryToFile() {
-        if (dictionaryFilePath == null || dictionaryFilePath.trim().isEmpty()) {
-            System.out.println("No dictionary file path specified, skipping save");
-            return;
-        }
-        
-        synchronized (SAVE_LOCK) {
-            try {
-                dictionary.saveToFile(dictionaryFilePath);
-            } catch (IOException e) {
-                System.err.println("Error saving dictionary to file: " + e.getMessage());
-            }
-        }
+        processor.setDictionaryFilePath(dictionaryFilePath);
     }
 
     @Override
     public void run() {
         try {
-            // Initialize input and output streams
-            out = new PrintWriter(clientSocket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+            // Initialize input and output streams for the protocol the client chose
+            InputStream input = new BufferedInputStream(clientSocket.getInputStream());
+            binary = acceptBinaryHandshake(input);
+            out = new BufferedOutputStream(clientSocket.getOutputStream());
+            if (binary) {
+                binaryIn = input;
+                out.write(BinaryProtocol.handshakeAnswer());
+                out.flush();
+            } else {
+                in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            }
             
             // Process client requests
             String inputLine;
             while (running) {
                 try {
-                    inputLine = in.readLine();
-                    if (inputLine == null) {
-                        // Client has closed the connection
-                        System.out.println("Client disconnected normally: " + clientSocket.getInetAddress());
+                    Message request;
+                    if (binary) {
+                        request = BinaryProtocol.readFrame(binaryIn);
+                        if (request == null) {
+                            System.out.println("Client disconnected normally: " + clientSocket.getInetAddress());
+                            break;
+                        }
+                    } else {
+                        inputLine = in.readLine();
+                        if (inputLine == null) {
+                            // Client has closed the connection
+                            System.out.println("Client disconnected normally: " + clientSocket.getInetAddress());
                         
-                        break;
-                    }
+                            break;
+                        }
                     
-                    // Parse the client message from JSON
-                    Message request = gson.fromJson(inputLine, Message.class);
-                    if (request == null) {
-                        sendErrorResponse("Invalid request format");
-                        continue;
+                        // Parse the client message from JSON
+                        request = gson.fromJson(inputLine, Message.class);
+                        if (request == null) {
+                            sendErrorResponse("Invalid request format");
+                            continue;
+                        }
                     }
                     
                     // Process the request based on operation type
-                    processRequest(request);
+                    long receivedNanos = System.nanoTime();
+                    if (request.getRequestId() != null && requestExecutor != null) {
+                        dispatch(request, receivedNanos);
+                    } else {
+                        sendBytes(processor.processEncoded(request, binary, subscriber, receivedNanos));
+                    }
                 } catch (JsonSyntaxException e) {
                     sendErrorResponse("Invalid JSON format: " + e.getMessage());
                 } catch (IOException e) {
                     // Socket was closed or connection was reset
                     System.out.println("Client disconnected abruptly: " + clientSocket.getInetAddress());
                     break;
+                } catch (InterruptedException e) {
+                    // The server is shutting down
+                    break;
                 } catch (Exception e) {
                     sendErrorResponse("Error processing request: " + e.getMessage());
                 }
@@ -139,230 +209,104 @@ public class ClientHandler implements Runnable {
     }
 
     /**
-     * Processes client requests based on operation type
+     * Checks whether the client opened with the binary protocol handshake, and if
+     * so consumes it. Otherwise nothing is consumed.
      * 
-     * @param request The client request message
+     * @param input The buffered connection input
+     * @return true if the client uses the binary protocol
+     * @throws IOException If reading fails
      */
-    private void processRequest(Message request) {
-        switch (request.getOperation()) {
-            case ProtocolConstants.OPERATION_SEARCH:
-                handleSearch(request);
-                break;
-            case ProtocolConstants.OPERATION_ADD:
-                handleAdd(request);
-                break;
-            case ProtocolConstants.OPERATION_REMOVE:
-                handleRemove(request);
-                break;
-            case ProtocolConstants.OPERATION_ADD_MEANING:
-                handleAddMeaning(request);
-                break;
-            case ProtocolConstants.OPERATION_UPDATE_MEANING:
-                handleUpdateMeaning(request);
-                break;
-            default:
-                sendErrorResponse("Unknown operation: " + request.getOperation());
+    private boolean acceptBinaryHandshake(InputStream input) throws IOException {
+        byte[] handshake = BinaryProtocol.handshake();
+        input.mark(handshake.length);
+        if (input.read() != (BinaryProtocol.MAGIC & 0xFF)) {
+            input.reset();
+            return false;
         }
+        
+        for (int i = 1; i < handshake.length; i++) {
+            if (input.read() != handshake[i]) {
+                throw new IOException("Unsupported binary protocol handshake");
+            }
+        }
+        return true;
     }
 
     /**
-     * Handles word search requests
+     * Executes a request on the request executor and sends its response when done.
+     * Blocks while the connection already has the maximum number of requests in
+     * flight, which stops reading and so pushes back on the client.
      * 
-     * @param request The search request message
+     * @param request The client request message
+     * @param receivedNanos When the request was read, for its deadline
+     * @throws InterruptedException If interrupted while waiting for a free slot
      */
-    private void handleSearch(Message request) {
-        String word = request.getWord();
-        if (word == null || word.trim().isEmpty()) {
-            sendErrorResponse("Word cannot be empty");
-            return;
-        }
-        
-        WordEntry entry = dictionary.search(word);
-        if (entry == null) {
-            Message response = new Message(ProtocolConstants.OPERATION_SEARCH);
-            response.setStatus(ProtocolConstants.STATUS_NOT_FOUND);
-            response.setWord(word);
-            sendResponse(response);
-        } else {
-            Message response = new Message(ProtocolConstants.OPERATION_SEARCH);
-            response.setStatus(ProtocolConstants.STATUS_SUCCESS);
-            response.setWord(entry.getWord());
-            response.setMeanings(entry.getMeanings());
-            sendResponse(response);
+    private void dispatch(Message request, long receivedNanos) throws InterruptedException {
+        inFlight.acquire();
+        try {
+            requestExecutor.execute(() -> {
+                try {
+                    sendBytes(processor.processEncoded(request, binary, subscriber, receivedNanos));
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            sendBytes(processor.processEncoded(request, binary, subscriber, receivedNanos));
         }
     }
 
     /**
-     * Handles requests to add a new word
+     * Sends an error response to the client
      * 
-     * @param request The add word request message
+     * @param errorMessage The error message to send
      */
-    private void handleAdd(Message request) {
-        String word = request.getWord();
-        List<String> meanings = request.getMeanings();
-        
-        if (word == null || word.trim().isEmpty()) {
-            sendErrorResponse("Word cannot be empty");
-            return;
-        }
-        
-        if (meanings == null || meanings.isEmpty()) {
-            sendErrorResponse("Meanings cannot be empty");
-            return;
-        }
-        
-        boolean success = dictionary.add(word, meanings);
-        
-        Message response = new Message(ProtocolConstants.OPERATION_ADD);
-        response.setWord(word);
-        
-        if (success) {
-            response.setStatus(ProtocolConstants.STATUS_SUCCESS);
-            // Save dictionary to file after successful add
-            saveDictionaryToFile();
-        } else {
-            response.setStatus(ProtocolConstants.STATUS_DUPLICATE);
-        }
-        
-        sendResponse(response);
+    private void sendErrorResponse(String errorMessage) {
+        sendResponse(RequestProcessor.errorResponse(errorMessage));
     }
 
     /**
-     * Handles requests to remove a word
+     * Sends a response message to the client
      * 
-     * @param request The remove word request message
+     * @param response The response message
      */
-    private void handleRemove(Message request) {
-        String word = request.getWord();
-        
-        if (word == null || word.trim().isEmpty()) {
-            sendErrorResponse("Word cannot be empty");
-            return;
-        }
-        
-        boolean success = dictionary.remove(word);
-        
-        Message response = new Message(ProtocolConstants.OPERATION_REMOVE);
-        response.setWord(word);
-        
-        if (success) {
-            response.setStatus(ProtocolConstants.STATUS_SUCCESS);
-            // Save dictionary to file after successful remove
-            saveDictionaryToFile();
-        } else {
-            response.setStatus(ProtocolConstants.STATUS_NOT_FOUND);
-        }
-        
-        sendResponse(response);
+    private void sendResponse(Message response) {
+        sendBytes(RequestProcessor.encode(response, binary));
     }
-
+        
     /**
-     * Handles requests to add a new meaning to an existing word
+     * Sends an encoded response to the client
      * 
-     * @param request The add meaning request message
+     * @param response The encoded response
      */
-    private void handleAddMeaning(Message request) {
-        String word = request.getWord();
-        List<String> meanings = request.getMeanings();
-        
-        if (word == null || word.trim().isEmpty()) {
-            sendErrorResponse("Word cannot be empty");
-            return;
-        }
-        
-        if (meanings == null || meanings.isEmpty()) {
-            sendErrorResponse("New meaning cannot be empty");
-            return;
-        }
-        
-        String newMeaning = meanings.get(0);
-        boolean success = dictionary.addMeaning(word, newMeaning);
-        
-        Message response = new Message(ProtocolConstants.OPERATION_ADD_MEANING);
-        response.setWord(word);
-        
-        if (success) {
-            response.setStatus(ProtocolConstants.STATUS_SUCCESS);
-            // Save dictionary to file after successful add meaning
-            saveDictionaryToFile();
-        } else {
-            // Could be not found or duplicate, check if word exists
-            if (dictionary.search(word) == null) {
-                response.setStatus(ProtocolConstants.STATUS_NOT_FOUND);
-            } else {
-                response.setStatus(ProtocolConstants.STATUS_DUPLICATE);
-            }
+    private void sendBytes(byte[] response) {
+        writeLock.lock();
+        try {
+            out.write(response);
+            out.flush();
+        } catch (IOException e) {
+            // The read loop notices the broken connection
+        } finally {
+            writeLock.unlock();
         }
-        
-        sendResponse(response);
     }
 
     /**
-     * Handles requests to update an existing meaning of a word
+     * Sends a pushed message, on the request executor when there is one
      * 
-     * @param request The update meaning request message
+     * @param message The encoded message
      */
-    private void handleUpdateMeaning(Message request) {
-        String word = request.getWord();
-        String oldMeaning = request.getOldMeaning();
-        String newMeaning = request.getNewMeaning();
-        
-        if (word == null || word.trim().isEmpty()) {
-            sendErrorResponse("Word cannot be empty");
-            return;
-        }
-        
-        if (oldMeaning == null || oldMeaning.trim().isEmpty()) {
-            sendErrorResponse("Existing meaning cannot be empty");
+    private void pushBytes(byte[] message) {
+        if (requestExecutor == null) {
+            sendBytes(message);
             return;
         }
-        
-        if (newMeaning == null || newMeaning.trim().isEmpty()) {
-            sendErrorResponse("New meaning cannot be empty");
-            return;
-        }
-        
-        boolean success = dictionary.updateMeaning(word, oldMeaning, newMeaning);
-        
-        Message response = new Message(ProtocolConstants.OPERATION_UPDATE_MEANING);
-        response.setWord(word);
-        
-        if (success) {
-            response.setStatus(ProtocolConstants.STATUS_SUCCESS);
-            // Save dictionary to file after successful update meaning
-            saveDictionaryToFile();
-        } else {
-            // Could be word not found or meaning not found
-            if (dictionary.search(word) == null) {
-                response.setStatus(ProtocolConstants.STATUS_NOT_FOUND);
-            } else {
-                response.setStatus(ProtocolConstants.STATUS_MEANING_NOT_FOUND);
-            }
+        try {
+            requestExecutor.execute(() -> sendBytes(message));
+        } catch (RejectedExecutionException e) {
+            // The server is shutting down
         }
-        
-        sendResponse(response);
-    }
-
-    /**
-     * Sends an error response to the client
-     * 
-     * @param errorMessage The error message to send
-     */
-    private void sendErrorResponse(String errorMessage) {
-        Message errorResponse = new Message();
-        errorResponse.setStatus(ProtocolConstants.STATUS_ERROR);
-        errorResponse.setErrorMessage(errorMessage);
-        sendResponse(errorResponse);
-    }
-
-    /**
-     * Sends a response message to the client
-     * 
-     * @param response The response message
-     */
-    private void sendResponse(Message response) {
-        String jsonResponse = gson.toJson(response);
-        out.println(jsonResponse);
     }
 
     /**
@@ -370,6 +314,7 @@ public class ClientHandler implements Runnable {
      */
     private void closeConnection() {
         running = false;
+        processor.unsubscribe(subscriber);
         
         try {
             if (in != null) {
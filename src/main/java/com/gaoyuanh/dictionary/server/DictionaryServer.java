@@ -1,5 +1,6 @@
 package com.gaoyuanh.dictionary.server;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -13,19 +14,48 @@ import com.gaoyuanh.dictionary.dictionary.Dictionary;
 
 /**
  * Main server class that initializes the dictionary and handles client connections.
- * Implements a multi-threaded server using a thread pool architecture.
+ * Implements a multi-threaded server using a thread pool architecture: either one
+ * pooled thread per connection, one virtual thread per connection, or a selector
+ * thread that multiplexes all connections and hands requests to the pool
+ * (see {@link Engine}).
  */
 public class DictionaryServer {
+    /**
+     * How client connections are served
+     */
+    public enum Engine {
+        // Blocking sockets; each connection occupies a pool thread while it is open
+        BLOCKING,
+        // Non-blocking sockets on one selector thread; pool threads only execute requests
+        NIO,
+        // Blocking sockets, each connection on its own virtual thread (Java 21+); no pool size limit
+        VIRTUAL
+    }
+
     private ServerSocket serverSocket;
     private final Dictionary dictionary;
     private ExecutorService threadPool;
+    private ExecutorService requestPool; // Executes pipelined requests of blocking connections
+    private RequestProcessor requestProcessor;
     private boolean running;
     private final int port;
     private final String dictionaryFilePath;
     private final int threadPoolSize;
+    private PersistenceScheduler persistenceScheduler;
+    private long flushIntervalMillis = PersistenceScheduler.DEFAULT_FLUSH_INTERVAL_MS;
+    private int dirtyThreshold = PersistenceScheduler.DEFAULT_DIRTY_THRESHOLD;
+    private PersistenceScheduler.DurabilityMode durabilityMode = PersistenceScheduler.DurabilityMode.ACK_AFTER_FLUSH;
+    private Engine engine = Engine.BLOCKING;
+    private NioServerEngine nioEngine;
+    private long responseCacheBytes = ResponseCache.DEFAULT_CAPACITY_BYTES;
+    private volatile ResponseCache responseCache;
+    private volatile InvalidationBroadcaster invalidationBroadcaster;
 
     // Default port if not specified
     public static final int DEFAULT_PORT = 8080;
+
+    // Pending connections the operating system queues before they are accepted
+    static final int ACCEPT_BACKLOG = 1024;
     
     // Listener for client connection events
     private IntConsumer clientConnectionListener;
@@ -50,9 +80,21 @@ public class DictionaryServer {
      * @param threadPoolSize The size of the thread pool for handling client connections
      */
     public DictionaryServer(int port, String dictionaryFilePath, int threadPoolSize) {
+        this(port, dictionaryFilePath, threadPoolSize, Dictionary.Storage.HASH_MAP);
+    }
+
+    /**
+     * Constructor for the DictionaryServer with custom thread pool size and dictionary storage
+     * 
+     * @param port The port number to listen on
+     * @param dictionaryFilePath Path to the dictionary file
+     * @param threadPoolSize The size of the thread pool for handling client connections
+     * @param storage How the dictionary stores its in-memory map of words
+     */
+    public DictionaryServer(int port, String dictionaryFilePath, int threadPoolSize, Dictionary.Storage storage) {
         this.port = port;
         this.dictionaryFilePath = dictionaryFilePath;
-        this.dictionary = new Dictionary();
+        this.dictionary = new Dictionary(Dictionary.DEFAULT_LOCK_STRIPES, storage);
         this.running = false;
         this.threadPoolSize = threadPoolSize;
     }
@@ -66,6 +108,86 @@ public class DictionaryServer {
         this.clientConnectionListener = listener;
     }
     
+    /**
+     * Configures background persistence. Takes effect the next time the server starts.
+     * 
+     * @param flushIntervalMillis Time between flushes in milliseconds
+     * @param dirtyThreshold Number of unflushed changes that triggers an early flush
+     * @param durabilityMode Whether clients are answered after or before the flush
+     */
+    public void setPersistenceOptions(long flushIntervalMillis, int dirtyThreshold,
+                                      PersistenceScheduler.DurabilityMode durabilityMode) {
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.dirtyThreshold = dirtyThreshold;
+        this.durabilityMode = durabilityMode;
+    }
+
+    /**
+     * Selects how client connections are served. Takes effect the next time the server starts.
+     * 
+     * @param engine The server engine
+     */
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Gets the engine used to serve client connections
+     * 
+     * @return The server engine
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Sets the memory budget of the cache of encoded SEARCH responses. Takes effect
+     * the next time the server starts.
+     * 
+     * @param capacityBytes The budget in bytes, or 0 to disable the cache
+     */
+    public void setResponseCacheCapacity(long capacityBytes) {
+        this.responseCacheBytes = capacityBytes;
+    }
+
+    /**
+     * Sets the false positive rate of the filter that answers searches for words
+     * that are not in a binary snapshot dictionary without searching the file
+     * 
+     * @param falsePositiveRate The rate, between 0 and 1, or 0 to disable the filter
+     */
+    public void setSnapshotFilterFalsePositiveRate(double falsePositiveRate) {
+        dictionary.setSnapshotFilterFalsePositiveRate(falsePositiveRate);
+    }
+
+    /**
+     * Gets the cache of encoded SEARCH responses, for its hit ratio and memory use
+     * 
+     * @return The cache, or null if the server is not running or the cache is disabled
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Gets the broadcaster that pushes changed words to subscribed clients
+     * 
+     * @return The broadcaster, or null if the server is not running
+     */
+    public InvalidationBroadcaster getInvalidationBroadcaster() {
+        return invalidationBroadcaster;
+    }
+
+    /**
+     * Gets the number of requests answered with an error because their deadline
+     * passed while they waited to be executed
+     * 
+     * @return The expired request count, or 0 if the server has not been started
+     */
+    public long getExpiredRequestCount() {
+        return requestProcessor == null ? 0 : requestProcessor.getExpiredRequestCount();
+    }
+
     /**
      * Notifies the client connection listener if one is set
      * 
@@ -89,12 +211,19 @@ public class DictionaryServer {
             // Try to load dictionary from file
             boolean dictionaryLoaded = false;
             if (dictionaryFilePath != null && !dictionaryFilePath.trim().isEmpty()) {
-                try {
-                    dictionary.loadFromFile(dictionaryFilePath);
-                    dictionaryLoaded = true;
-                    System.out.println("Loaded dictionary from file: " + dictionaryFilePath);
-                } catch (IOException e) {
-                    System.err.println("Error loading dictionary file: " + e.getMessage());
+                if (new File(dictionaryFilePath).exists()) {
+                    try {
+                        dictionary.loadFromFile(dictionaryFilePath, this::reportLoadProgress);
+                        dictionaryLoaded = true;
+                        System.out.println("Loaded dictionary from file: " + dictionaryFilePath);
+                    } catch (IOException e) {
+                        // Starting with the default words would overwrite the file and its log
+                        System.err.println("Error loading dictionary file: " + e.getMessage());
+                        System.err.println("Server not started; the dictionary file and its mutation log are unchanged");
+                        return false;
+                    }
+                } else {
+                    System.out.println("Dictionary file not found: " + dictionaryFilePath);
                     System.out.println("Using default dictionary...");
                 }
             }
@@ -105,16 +234,55 @@ public class DictionaryServer {
                 System.out.println("Loaded default dictionary");
             }
             
-            // Create server socket
-            serverSocket = new ServerSocket(port);
-            threadPool = Executors.newFixedThreadPool(threadPoolSize);
-            running = true;
+            openMutationLog(dictionaryLoaded);
             
-            System.out.println("Dictionary Server started on port " + port);
-            System.out.println("Dictionary contains " + dictionary.size() + " entries");
+            // Start background persistence
+            if (dictionaryFilePath != null && !dictionaryFilePath.trim().isEmpty()) {
+                persistenceScheduler = new PersistenceScheduler(dictionary, dictionaryFilePath,
+                        flushIntervalMillis, dirtyThreshold, durabilityMode);
+                persistenceScheduler.start();
+            }
+            
+            requestProcessor = new RequestProcessor(dictionary, persistenceScheduler);
+            if (responseCacheBytes > 0) {
+                responseCache = new ResponseCache(responseCacheBytes);
+                dictionary.addChangeListener(responseCache);
+                requestProcessor.setResponseCache(responseCache);
+            }
+            // Pushes changed words to clients that subscribe to keep near caches coherent
+            invalidationBroadcaster = new InvalidationBroadcaster();
+            invalidationBroadcaster.start();
+            dictionary.addChangeListener(invalidationBroadcaster);
+            requestProcessor.setInvalidationBroadcaster(invalidationBroadcaster);
+            if (engine == Engine.NIO) {
+                // Multiplex connections on a selector; the pool only executes requests
+                nioEngine = new NioServerEngine(port, requestProcessor, threadPoolSize,
+                        this::notifyClientConnectionChange);
+                nioEngine.start();
+                running = true;
+            } else {
+                // Create server socket
+                serverSocket = new ServerSocket(port, ACCEPT_BACKLOG);
+                threadPool = engine == Engine.VIRTUAL ? newVirtualThreadExecutor() : null;
+                if (threadPool == null) {
+                    threadPool = Executors.newFixedThreadPool(threadPoolSize);
+                    // Connections hold their pool thread, so pipelined requests need their own
+                    requestPool = Executors.newFixedThreadPool(threadPoolSize);
+                } else {
+                    // A virtual thread per pipelined request as well
+                    requestPool = threadPool;
+                }
+                running = true;
             
-            // Start the client accept thread
-            acceptClients();
+                // Start the client accept thread
+                acceptClients();
+            }
+            
+            System.out.println("Dictionary Server started on port " + port + " (" + engine + " engine)");
+            System.out.println("Dictionary contains " + dictionary.size() + " entries (" + dictionary.getStorage() + " storage)");
+            if (dictionary.getSnapshotFilter() != null) {
+                System.out.println("Snapshot filter: " + dictionary.getSnapshotFilter());
+            }
             
             return true;
         } catch (IOException e) {
@@ -123,6 +291,60 @@ public class DictionaryServer {
         }
     }
 
+    /**
+     * Creates an executor that starts a virtual thread per task. Looked up reflectively
+     * so the server still builds for Java 8; the java21 profile targets the release
+     * that has it.
+     * 
+     * @return The executor, or null if this JVM has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads require Java 21, using a thread pool instead");
+            return null;
+        }
+    }
+
+    /**
+     * Prints dictionary loading progress
+     * 
+     * @param entriesLoaded Number of entries loaded so far
+     * @param bytesRead Number of bytes read so far
+     * @param totalBytes Size of the dictionary file
+     * @param entriesPerSecond Average load rate
+     */
+    private void reportLoadProgress(long entriesLoaded, long bytesRead, long totalBytes, double entriesPerSecond) {
+        long percent = totalBytes > 0 ? bytesRead * 100 / totalBytes : 100;
+        System.out.println("Loading dictionary: " + entriesLoaded + " entries (" + percent + "%, "
+                + Math.round(entriesPerSecond) + " entries/s)");
+    }
+
+    /**
+     * Opens the append-only mutation log next to the dictionary file.
+     * If the file did not exist, a snapshot of the default dictionary is written and
+     * any stale log discarded so that records are never replayed on the wrong base.
+     * 
+     * @param dictionaryLoaded Whether the dictionary was loaded from the file, false if it did not exist
+     */
+    private void openMutationLog(boolean dictionaryLoaded) {
+        if (dictionaryFilePath == null || dictionaryFilePath.trim().isEmpty()) {
+            return;
+        }
+        
+        try {
+            // Records are synced in groups by the persistence scheduler
+            dictionary.openMutationLog(dictionaryFilePath, false);
+            if (!dictionaryLoaded) {
+                dictionary.compact(dictionaryFilePath);
+            }
+            System.out.println("Logging mutations to: " + Dictionary.mutationLogPath(dictionaryFilePath));
+        } catch (IOException e) {
+            System.err.println("Error opening mutation log, falling back to full saves: " + e.getMessage());
+        }
+    }
+
     /**
      * Thread method that accepts client connections
      */
@@ -149,7 +371,7 @@ public class DictionaryServer {
             System.out.println("New client connected: " + clientSocket.getInetAddress());
             
             // Create a new client handler to process the client's requests
-            ClientHandler clientHandler = new ClientHandler(clientSocket, dictionary, dictionaryFilePath);
+            ClientHandler clientHandler = new ClientHandler(clientSocket, requestProcessor, requestPool);
             
             // Set the disconnect callback to notify when client disconnects
             clientHandler.setDisconnectCallback(() -> {
@@ -217,10 +439,45 @@ public class DictionaryServer {
                 serverSocket.close();
             }
             
-            // Shut down the thread pool
+            // Close the selector and its connections
+            if (nioEngine != null) {
+                nioEngine.stop();
+                nioEngine = null;
+            }
+            
+            // Shut down the thread pools
             if (threadPool != null) {
                 threadPool.shutdownNow();
             }
+            if (requestPool != null) {
+                requestPool.shutdownNow();
+                requestPool = null;
+            }
+            
+            // Flush outstanding changes and stop logging mutations
+            if (persistenceScheduler != null) {
+                persistenceScheduler.stop();
+                persistenceScheduler = null;
+            }
+            dictionary.closeMutationLog();
+            
+            if (responseCache != null) {
+                System.out.println("Response cache: " + responseCache);
+                dictionary.removeChangeListener(responseCache);
+                responseCache = null;
+            }
+            if (invalidationBroadcaster != null) {
+                System.out.println("Invalidations: " + invalidationBroadcaster);
+                dictionary.removeChangeListener(invalidationBroadcaster);
+                invalidationBroadcaster.stop();
+                invalidationBroadcaster = null;
+            }
+            if (requestProcessor != null && requestProcessor.getExpiredRequestCount() > 0) {
+                System.out.println("Expired requests: " + requestProcessor.getExpiredRequestCount());
+            }
+            if (dictionary.getSnapshotFilter() != null) {
+                System.out.println("Snapshot filter: " + dictionary.getSnapshotFilter());
+            }
             
             // Interrupt and wait for the accept thread to terminate
             if (acceptThread != null) {
@@ -0,0 +1,211 @@
+package com.gaoyuanh.dictionary.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gaoyuanh.dictionary.dictionary.DictionaryChangeListener;
+import com.gaoyuanh.dictionary.protocol.Message;
+import com.gaoyuanh.dictionary.protocol.ProtocolConstants;
+
+/**
+ * Tells subscribed connections which words changed, so clients can drop them
+ * from their near caches. The dictionary calls the listener methods while it
+ * holds the word's lock, so they only queue the word; a background thread
+ * collects queued words into INVALIDATE messages of up to
+ * {@link ProtocolConstants#MAX_INVALIDATION_WORDS} words, encodes each message
+ * once per protocol and pushes it to every subscriber.
+ * An INVALIDATE message without words tells clients to drop everything. It is
+ * sent when the dictionary is cleared, and when words change faster than they
+ * can be pushed and the queue overflows.
+ */
+public class InvalidationBroadcaster implements DictionaryChangeListener {
+    // Changed words waiting to be pushed; more than this turns into one clear-all
+    public static final int MAX_QUEUED_WORDS = 4096;
+
+    // Queued in place of a word to ask for a clear-all
+    private static final String CLEAR_ALL = new String("");
+
+    /**
+     * A connection that receives INVALIDATE messages
+     */
+    public interface Subscriber {
+        /**
+         * Tells whether messages must be binary frames rather than JSON lines
+         * 
+         * @return true if the connection uses the binary protocol
+         */
+        boolean isBinary();
+        
+        /**
+         * Sends an encoded message without blocking the broadcaster for long
+         * 
+         * @param encoded The message, encoded for the connection's protocol
+         */
+        void push(byte[] encoded);
+    }
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<String> changedWords = new LinkedBlockingQueue<>(MAX_QUEUED_WORDS);
+    private final AtomicBoolean clearPending = new AtomicBoolean();
+    private volatile Thread thread;
+
+    private final AtomicLong pushedMessages = new AtomicLong();
+    private final AtomicLong pushedWords = new AtomicLong();
+    private final AtomicLong clears = new AtomicLong();
+
+    /**
+     * Starts the thread that pushes invalidations
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::run, "invalidation-broadcaster");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the push thread and forgets every subscriber
+     */
+    public void stop() {
+        Thread stopping;
+        synchronized (this) {
+            stopping = thread;
+            thread = null;
+        }
+        
+        if (stopping != null) {
+            stopping.interrupt();
+            try {
+                stopping.join(5000); // Wait up to 5 seconds for the thread to terminate
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        subscribers.clear();
+        changedWords.clear();
+    }
+
+    /**
+     * Starts pushing invalidations to a connection. Words that changed before
+     * this call are not pushed to it.
+     * 
+     * @param subscriber The connection
+     */
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Stops pushing invalidations to a connection; called when it closes
+     * 
+     * @param subscriber The connection
+     */
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Gets the number of subscribed connections
+     * 
+     * @return The subscriber count
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void wordChanged(String word) {
+        if (!subscribers.isEmpty()) {
+            enqueue(word);
+        }
+    }
+
+    @Override
+    public void dictionaryCleared() {
+        if (!subscribers.isEmpty()) {
+            enqueue(CLEAR_ALL);
+        }
+    }
+
+    private void enqueue(String word) {
+        if (!changedWords.offer(word)) {
+            // The push thread is behind; it sees the flag when it next drains the queue
+            clearPending.set(true);
+        }
+    }
+
+    /**
+     * Pushes queued words until stopped
+     */
+    private void run() {
+        List<String> drained = new ArrayList<>(ProtocolConstants.MAX_INVALIDATION_WORDS);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                drained.add(changedWords.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            changedWords.drainTo(drained, ProtocolConstants.MAX_INVALIDATION_WORDS - 1);
+            
+            if (clearPending.getAndSet(false) || drained.contains(CLEAR_ALL)) {
+                // Everything queued so far is covered by the clear-all
+                changedWords.clear();
+                clears.incrementAndGet();
+                broadcast(null);
+            } else {
+                Set<String> words = new LinkedHashSet<>(drained);
+                pushedWords.addAndGet(words.size());
+                broadcast(new ArrayList<>(words));
+            }
+            drained.clear();
+        }
+    }
+
+    /**
+     * Encodes an INVALIDATE message at most once per protocol and sends it to every subscriber
+     * 
+     * @param words The changed words, or null to invalidate everything
+     */
+    private void broadcast(List<String> words) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        
+        Message message = new Message(ProtocolConstants.OPERATION_INVALIDATE);
+        message.setStatus(ProtocolConstants.STATUS_SUCCESS);
+        message.setWords(words);
+        byte[] json = null;
+        byte[] binary = null;
+        for (Subscriber subscriber : subscribers) {
+            byte[] encoded;
+            if (subscriber.isBinary()) {
+                if (binary == null) {
+                    binary = RequestProcessor.encode(message, true);
+                }
+                encoded = binary;
+            } else {
+                if (json == null) {
+                    json = RequestProcessor.encode(message, false);
+                }
+                encoded = json;
+            }
+            subscriber.push(encoded);
+        }
+        pushedMessages.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d subscribers, %d messages pushed, %d words, %d clear-alls",
+                subscribers.size(), pushedMessages.get(), pushedWords.get(), clears.get());
+    }
+}
@@ -0,0 +1,649 @@
+package com.gaoyuanh.dictionary.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import com.gaoyuanh.dictionary.protocol.BinaryProtocol;
+import com.gaoyuanh.dictionary.protocol.Message;
+import com.gaoyuanh.dictionary.protocol.ProtocolConstants;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+/**
+ * Server engine that multiplexes all client connections on one selector thread.
+ * Connections are non-blocking; the selector thread accepts them, reads bytes and
+ * splits them into newline-terminated requests, the same framing the blocking
+ * {@link ClientHandler} uses. Requests are executed by a small worker pool, one
+ * connection at a time per worker, so each client still gets its responses in
+ * request order. Requests that carry an ID are the exception: they are executed
+ * concurrently and answered as they complete, so a client can pipeline them.
+ * Idle connections cost a selection key and a few buffers instead of a thread.
+ * Workers write responses directly when the socket accepts them and leave the rest
+ * to the selector thread. Reading from a client pauses while it has too many
+ * unanswered requests or too much unsent output, so a client that stops reading
+ * cannot make the server buffer without bound.
+ * Requests and responses are encoded as UTF-8 JSON lines, or as
+ * {@link BinaryProtocol} frames when the first bytes of a connection are the
+ * binary handshake.
+ */
+public class NioServerEngine {
+    // Longest accepted request line; longer requests are answered with an error
+    public static final int MAX_LINE_BYTES = 1 << 20;
+
+    // Reading from a connection pauses above these limits
+    private static final int MAX_QUEUED_REQUESTS = 256;
+    private static final long MAX_PENDING_OUTPUT_BYTES = 1 << 20;
+
+    // Requests a worker executes for one connection before yielding to others
+    private static final int MAX_REQUESTS_PER_TURN = 32;
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    // Marks a request line that was dropped for being too long
+    private static final String OVERSIZED_LINE = new String("");
+
+    private static final byte[] HANDSHAKE = BinaryProtocol.handshake();
+
+    private final int port;
+    private final RequestProcessor processor;
+    private final int workerCount;
+    private final IntConsumer connectionListener;
+    private final Gson gson;
+    private final Queue<Runnable> selectorTasks;
+    private final ByteBuffer readBuffer;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private ExecutorService workers;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    /**
+     * Constructor for NioServerEngine
+     * 
+     * @param port The port number to listen on
+     * @param processor The processor that executes requests
+     * @param workerCount Number of worker threads that execute requests
+     * @param connectionListener Receives +1 when a client connects and -1 when it disconnects, may be null
+     */
+    public NioServerEngine(int port, RequestProcessor processor, int workerCount, IntConsumer connectionListener) {
+        this.port = port;
+        this.processor = processor;
+        this.workerCount = workerCount;
+        this.connectionListener = connectionListener;
+        this.gson = new Gson();
+        this.selectorTasks = new ConcurrentLinkedQueue<>();
+        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    }
+
+    /**
+     * Binds the server port and starts the selector thread and the workers
+     * 
+     * @throws IOException If the port cannot be bound
+     */
+    public void start() throws IOException {
+        selector = Selector.open();
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port), DictionaryServer.ACCEPT_BACKLOG);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+            selector.close();
+            throw e;
+        }
+        
+        workers = Executors.newFixedThreadPool(workerCount);
+        running = true;
+        selectorThread = new Thread(this::runSelector, "nio-selector");
+        selectorThread.start();
+    }
+
+    /**
+     * Stops accepting clients, closes every connection and stops the workers
+     */
+    public void stop() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        
+        if (selectorThread != null) {
+            try {
+                selectorThread.join(5000); // Wait up to 5 seconds for the thread to terminate
+            } catch (InterruptedException e) {
+                System.err.println("Interrupted while waiting for selector thread to terminate");
+            }
+        }
+        
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    private void runSelector() {
+        try {
+            while (running) {
+                selector.select();
+                runSelectorTasks();
+                
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    
+                    if (key.isAcceptable()) {
+                        acceptClient();
+                        continue;
+                    }
+                    
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isWritable()) {
+                            connection.flushOutput();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.readRequests();
+                        }
+                        connection.updateInterest();
+                    } catch (IOException e) {
+                        System.out.println("Client disconnected abruptly: " + connection.address);
+                        connection.close();
+                    } catch (RuntimeException e) {
+                        // A bug handling one connection must not stop the selector for all of them
+                        System.err.println("Error handling client " + connection.address + ": " + e);
+                        connection.close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Selector error: " + e.getMessage());
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void runSelectorTasks() {
+        Runnable task;
+        while ((task = selectorTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Runs a task on the selector thread, which owns every selection key
+     * 
+     * @param task The task to run
+     */
+    private void runOnSelector(Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+
+    private void acceptClient() {
+        SocketChannel channel = null;
+        try {
+            channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            System.out.println("New client connected: " + connection.address);
+            notifyConnectionChange(1);
+        } catch (IOException e) {
+            System.err.println("Error accepting client connection: " + e.getMessage());
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Already failing
+                }
+            }
+        }
+    }
+
+    private void closeAll() {
+        try {
+            // Stop accepting first, so reconnecting clients are refused rather than
+            // accepted into the backlog of a closing server
+            serverChannel.close();
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Error closing server socket: " + e.getMessage());
+        }
+    }
+
+    private void notifyConnectionChange(int delta) {
+        if (connectionListener != null) {
+            connectionListener.accept(delta);
+        }
+    }
+
+    /**
+     * A request waiting for a worker, with the time it was read for its deadline
+     */
+    private static final class QueuedRequest {
+        final Object request;
+        final long receivedNanos;
+        
+        QueuedRequest(Object request, long receivedNanos) {
+            this.request = request;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+
+    /**
+     * State of one client connection. Reading and interest changes happen on the
+     * selector thread; queued requests are taken by at most one worker at a time.
+     */
+    private final class Connection implements InvalidationBroadcaster.Subscriber {
+        final SocketChannel channel;
+        final Object address;
+        SelectionKey key;
+        
+        // Bytes of the request line being received (selector thread only)
+        private byte[] line = new byte[256];
+        private int lineLength;
+        private boolean discardingLine;
+        
+        // Protocol negotiation and binary framing state (selector thread only)
+        private int handshakeBytes;
+        private boolean protocolKnown;
+        private int frameLength = -1;
+        private int lengthValue;
+        private int lengthShift;
+        
+        // Set before the first request is queued, so workers see it
+        private boolean binary;
+        
+        private volatile boolean inputClosed;
+        private volatile boolean readPaused;
+        
+        // Request lines or decoded binary requests waiting for a worker, guarded by the connection
+        private final Queue<QueuedRequest> requests = new ArrayDeque<>();
+        private boolean processing;
+        
+        // Requests with an ID handed to other workers and not yet answered
+        private final AtomicInteger inFlight = new AtomicInteger();
+        
+        // Encoded responses not yet written, guarded by the output queue
+        private final Queue<ByteBuffer> output = new ArrayDeque<>();
+        private long pendingOutputBytes;
+        
+        private final AtomicBoolean closed = new AtomicBoolean();
+        
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.address = channel.socket().getInetAddress();
+        }
+        
+        /**
+         * Reads what the client has sent and queues each complete request
+         */
+        void readRequests() throws IOException {
+            readBuffer.clear();
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                // The client has closed its side; answer what it already sent first
+                System.out.println("Client disconnected normally: " + address);
+                inputClosed = true;
+                return;
+            }
+            
+            byte[] bytes = readBuffer.array();
+            int start = protocolKnown ? 0 : readHandshake(bytes, read);
+            if (binary) {
+                readFrames(bytes, start, read);
+                return;
+            }
+            for (int i = start; i < read; i++) {
+                if (bytes[i] == '\n') {
+                    appendToLine(bytes, start, i - start);
+                    completeLine();
+                    start = i + 1;
+                }
+            }
+            appendToLine(bytes, start, read - start);
+        }
+        
+        /**
+         * Tells the protocols apart on the first bytes of the connection and
+         * answers a binary handshake
+         * 
+         * @return The number of bytes consumed by the handshake
+         * @throws IOException If the connection starts like a handshake but is not one
+         */
+        private int readHandshake(byte[] bytes, int read) throws IOException {
+            int i = 0;
+            if (handshakeBytes == 0 && read > 0 && bytes[0] != BinaryProtocol.MAGIC) {
+                protocolKnown = true;
+                return 0;
+            }
+            while (i < read && handshakeBytes < HANDSHAKE.length) {
+                if (bytes[i++] != HANDSHAKE[handshakeBytes++]) {
+                    throw new IOException("Unsupported binary protocol handshake");
+                }
+            }
+            if (handshakeBytes == HANDSHAKE.length) {
+                protocolKnown = true;
+                binary = true;
+                send(ByteBuffer.wrap(BinaryProtocol.handshakeAnswer()));
+            }
+            return i;
+        }
+        
+        /**
+         * Splits binary input into frames and queues each decoded request. A
+         * malformed frame closes the connection, since the framing cannot be recovered.
+         */
+        private void readFrames(byte[] bytes, int offset, int end) throws IOException {
+            int i = offset;
+            while (i < end) {
+                if (frameLength < 0) {
+                    int b = bytes[i++];
+                    lengthValue |= (b & 0x7F) << lengthShift;
+                    if ((b & 0x80) != 0) {
+                        lengthShift += 7;
+                        if (lengthShift > 28) {
+                            throw new IOException("Malformed frame length");
+                        }
+                        continue;
+                    }
+                    BinaryProtocol.checkFrameLength(lengthValue);
+                    frameLength = lengthValue;
+                    lengthValue = 0;
+                    lengthShift = 0;
+                    continue;
+                }
+                
+                int length = Math.min(end - i, frameLength - lineLength);
+                appendToLine(bytes, i, length);
+                i += length;
+                if (lineLength == frameLength) {
+                    Message request = BinaryProtocol.decode(line, 0, lineLength);
+                    frameLength = -1;
+                    lineLength = 0;
+                    queueRequest(request);
+                }
+            }
+        }
+        
+        private void appendToLine(byte[] bytes, int offset, int length) {
+            if (discardingLine || length == 0) {
+                return;
+            }
+            if (lineLength + length > MAX_LINE_BYTES) {
+                discardingLine = true;
+                lineLength = 0;
+                return;
+            }
+            if (lineLength + length > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+            }
+            System.arraycopy(bytes, offset, line, lineLength, length);
+            lineLength += length;
+        }
+        
+        private void completeLine() {
+            String request;
+            if (discardingLine) {
+                request = OVERSIZED_LINE;
+                discardingLine = false;
+            } else {
+                int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                request = new String(line, 0, length, StandardCharsets.UTF_8);
+            }
+            lineLength = 0;
+            queueRequest(request);
+        }
+            
+        private void queueRequest(Object request) {
+            QueuedRequest queued = new QueuedRequest(request, System.nanoTime());
+            synchronized (this) {
+                requests.add(queued);
+                if (processing) {
+                    return;
+                }
+                processing = true;
+            }
+            dispatch();
+        }
+        
+        private void dispatch() {
+            try {
+                workers.execute(this::processRequests);
+            } catch (RejectedExecutionException e) {
+                // The engine is stopping
+            }
+        }
+        
+        /**
+         * Executes queued requests in order on a worker thread
+         */
+        private void processRequests() {
+            for (int i = 0; i < MAX_REQUESTS_PER_TURN; i++) {
+                QueuedRequest queued;
+                synchronized (this) {
+                    queued = requests.poll();
+                    if (queued == null) {
+                        processing = false;
+                        break;
+                    }
+                }
+                Object request = queued.request;
+                
+                if (closed.get()) {
+                    return;
+                }
+                
+                Message response;
+                if (request == OVERSIZED_LINE) {
+                    response = RequestProcessor.errorResponse("Request exceeds " + MAX_LINE_BYTES + " bytes");
+                } else {
+                    try {
+                        Message message = request instanceof Message ? (Message) request
+                                : gson.fromJson((String) request, Message.class);
+                        if (message == null) {
+                            response = RequestProcessor.errorResponse("Invalid request format");
+                        } else if (message.getRequestId() != null) {
+                            executeConcurrently(message, queued.receivedNanos);
+                            continue;
+                        } else {
+                            send(ByteBuffer.wrap(processor.processEncoded(message, binary, this,
+                                    queued.receivedNanos)));
+                            continue;
+                        }
+                    } catch (JsonSyntaxException e) {
+                        response = RequestProcessor.errorResponse("Invalid JSON format: " + e.getMessage());
+                    }
+                }
+                sendResponse(response);
+            }
+            
+            synchronized (this) {
+                if (processing) {
+                    // Let other connections have the worker before continuing
+                    dispatch();
+                }
+            }
+            if (readPaused || inputClosed) {
+                runOnSelector(this::updateInterest);
+            }
+        }
+        
+        /**
+         * Executes a pipelined request on another worker, so that the requests
+         * behind it do not wait for it and it is answered as soon as it completes
+         */
+        private void executeConcurrently(Message request, long receivedNanos) {
+            inFlight.incrementAndGet();
+            try {
+                workers.execute(() -> {
+                    try {
+                        send(ByteBuffer.wrap(processor.processEncoded(request, binary, this, receivedNanos)));
+                    } finally {
+                        inFlight.decrementAndGet();
+                        if (readPaused || inputClosed) {
+                            runOnSelector(this::updateInterest);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The engine is stopping
+                inFlight.decrementAndGet();
+            }
+        }
+        
+        /**
+         * Writes a response, directly if nothing is queued ahead of it and the socket
+         * accepts it, otherwise through the selector thread
+         */
+        private void sendResponse(Message response) {
+            send(ByteBuffer.wrap(RequestProcessor.encode(response, binary)));
+        }
+        
+        private void send(ByteBuffer buffer) {
+            boolean queued;
+            synchronized (output) {
+                if (output.isEmpty()) {
+                    try {
+                        channel.write(buffer);
+                    } catch (IOException e) {
+                        runOnSelector(this::close);
+                        return;
+                    }
+                }
+                queued = buffer.hasRemaining();
+                if (queued) {
+                    output.add(buffer);
+                    pendingOutputBytes += buffer.remaining();
+                }
+            }
+            if (queued) {
+                runOnSelector(this::updateInterest);
+            }
+        }
+        
+        @Override
+        public boolean isBinary() {
+            return binary;
+        }
+        
+        /**
+         * Sends an INVALIDATE message like a response; what the socket does not
+         * accept at once is left to the selector thread
+         */
+        @Override
+        public void push(byte[] encoded) {
+            if (!closed.get()) {
+                send(ByteBuffer.wrap(encoded));
+            }
+        }
+        
+        /**
+         * Writes queued responses until the socket stops accepting bytes
+         */
+        void flushOutput() throws IOException {
+            synchronized (output) {
+                ByteBuffer buffer;
+                while ((buffer = output.peek()) != null) {
+                    int written = channel.write(buffer);
+                    pendingOutputBytes -= written;
+                    if (buffer.hasRemaining()) {
+                        return;
+                    }
+                    output.poll();
+                }
+            }
+        }
+        
+        /**
+         * Recomputes the events the selector waits for, pausing reads under
+         * backpressure, and closes the connection once a finished client has been
+         * answered. Runs on the selector thread.
+         */
+        void updateInterest() {
+            if (!key.isValid()) {
+                return;
+            }
+            
+            boolean busy;
+            boolean backlogged;
+            int executing = inFlight.get();
+            synchronized (this) {
+                busy = processing || !requests.isEmpty() || executing > 0;
+                backlogged = requests.size() >= MAX_QUEUED_REQUESTS
+                        || executing >= ProtocolConstants.MAX_IN_FLIGHT_REQUESTS;
+            }
+            boolean hasOutput;
+            synchronized (output) {
+                hasOutput = !output.isEmpty();
+                backlogged |= pendingOutputBytes >= MAX_PENDING_OUTPUT_BYTES;
+            }
+            
+            if (inputClosed && !busy && !hasOutput) {
+                close();
+                return;
+            }
+            
+            readPaused = backlogged;
+            int ops = hasOutput ? SelectionKey.OP_WRITE : 0;
+            if (!inputClosed && !backlogged) {
+                ops |= SelectionKey.OP_READ;
+            }
+            key.interestOps(ops);
+        }
+        
+        /**
+         * Closes the connection and reports the disconnection once
+         */
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            
+            processor.unsubscribe(this);
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+                System.out.println("Client disconnected: " + address);
+            } catch (IOException e) {
+                System.err.println("Error closing client connection: " + e.getMessage());
+            }
+            notifyConnectionChange(-1);
+        }
+    }
+}
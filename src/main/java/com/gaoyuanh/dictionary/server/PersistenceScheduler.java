@@ -0,0 +1,205 @@
+package com.gaoyuanh.dictionary.server;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.gaoyuanh.dictionary.dictionary.Dictionary;
+
+/**
+ * Background persistence for the dictionary, owned by the server.
+ * Client handlers report dirty state instead of saving themselves; notifications
+ * from all handlers are coalesced into one flush per interval, or sooner once
+ * the number of unflushed changes reaches the dirty threshold (group commit).
+ */
+public class PersistenceScheduler {
+    /**
+     * When a client receives the response to a mutation
+     */
+    public enum DurabilityMode {
+        // Respond only after the change has been flushed to disk
+        ACK_AFTER_FLUSH,
+        // Respond as soon as the change is applied in memory
+        ACK_IMMEDIATELY
+    }
+
+    // Default time between flushes in milliseconds
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 10;
+    // Default number of unflushed changes that triggers an early flush
+    public static final int DEFAULT_DIRTY_THRESHOLD = 64;
+
+    private final Dictionary dictionary;
+    private final String dictionaryFilePath;
+    private final long flushIntervalMillis;
+    private final int dirtyThreshold;
+    private final DurabilityMode durabilityMode;
+    private ScheduledExecutorService scheduler;
+    // Serializes flushes from the background thread, stop() and handler threads;
+    // not a monitor, so waiting handlers on virtual threads do not pin their carriers
+    private final Lock flushLock = new ReentrantLock();
+
+    // Changes since the last flush, and the future completed by the next flush
+    private int dirtyCount;
+    private CompletableFuture<Void> nextFlush;
+
+    /**
+     * Constructor for PersistenceScheduler
+     * 
+     * @param dictionary The dictionary to persist
+     * @param dictionaryFilePath Path to the dictionary file
+     * @param flushIntervalMillis Time between flushes in milliseconds
+     * @param dirtyThreshold Number of unflushed changes that triggers an early flush
+     * @param durabilityMode When mutations are acknowledged to clients
+     */
+    public PersistenceScheduler(Dictionary dictionary, String dictionaryFilePath, long flushIntervalMillis,
+                                int dirtyThreshold, DurabilityMode durabilityMode) {
+        this.dictionary = dictionary;
+        this.dictionaryFilePath = dictionaryFilePath;
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.dirtyThreshold = Math.max(1, dirtyThreshold);
+        this.durabilityMode = durabilityMode;
+        this.nextFlush = new CompletableFuture<>();
+    }
+
+    /**
+     * Starts the background snapshotter thread
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dictionary-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushIfDirty, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records that the dictionary has changed and needs to be persisted
+     * 
+     * @return Future completed when the change has been flushed
+     */
+    public CompletableFuture<Void> markDirty() {
+        CompletableFuture<Void> flush;
+        ScheduledExecutorService running;
+        boolean thresholdReached;
+        synchronized (this) {
+            dirtyCount++;
+            flush = nextFlush;
+            running = scheduler;
+            thresholdReached = dirtyCount == dirtyThreshold;
+        }
+        
+        if (running == null) {
+            // Not started or already stopped, so flush on the caller's thread
+            flushIfDirty();
+        } else if (thresholdReached) {
+            try {
+                running.execute(this::flushIfDirty);
+            } catch (RejectedExecutionException e) {
+                flushIfDirty();
+            }
+        }
+        return flush;
+    }
+
+    /**
+     * Gets the durability mode
+     * 
+     * @return The durability mode
+     */
+    public DurabilityMode getDurabilityMode() {
+        return durabilityMode;
+    }
+
+    /**
+     * Checks whether the background thread is running
+     * 
+     * @return true if started and not yet stopped
+     */
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+
+    /**
+     * Stops the background thread and flushes any outstanding changes
+     */
+    public void stop() {
+        ScheduledExecutorService stopping;
+        synchronized (this) {
+            stopping = scheduler;
+            scheduler = null;
+        }
+        
+        if (stopping != null) {
+            stopping.shutdown();
+            try {
+                stopping.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushIfDirty();
+    }
+
+    /**
+     * Writes all changes made since the last flush and completes the waiting futures.
+     * With a mutation log this is one sync for the whole group, and the futures
+     * complete as soon as it is done; compaction, when the log is due, follows and a
+     * failed one is only reported, since the changes are already in the log.
+     * Without a log the full dictionary file is rewritten.
+     */
+    private void flushIfDirty() {
+        CompletableFuture<Void> completing;
+        synchronized (this) {
+            if (dirtyCount == 0) {
+                return;
+            }
+            completing = nextFlush;
+            nextFlush = new CompletableFuture<>();
+            dirtyCount = 0;
+        }
+        
+        flushLock.lock();
+        try {
+            if (dictionary.isMutationLogOpen()) {
+                dictionary.syncMutationLog();
+                completing.complete(null);
+                compactIfDue();
+            } else {
+                dictionary.saveToFile(dictionaryFilePath);
+                completing.complete(null);
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving dictionary to file: " + e.getMessage());
+            completing.completeExceptionally(e);
+        } catch (RuntimeException e) {
+            System.err.println("Error saving dictionary to file: " + e.getMessage());
+            completing.completeExceptionally(e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Rewrites the dictionary file and empties the log if the log is due for compaction
+     */
+    private void compactIfDue() {
+        try {
+            if (dictionary.needsCompaction()) {
+                dictionary.compact(dictionaryFilePath);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error compacting dictionary file: " + e.getMessage());
+        }
+    }
+}
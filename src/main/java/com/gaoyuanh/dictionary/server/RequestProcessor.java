@@ -0,0 +1,860 @@
+package com.gaoyuanh.dictionary.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.gaoyuanh.dictionary.dictionary.Dictionary;
+import com.gaoyuanh.dictionary.dictionary.LookupKey;
+import com.gaoyuanh.dictionary.dictionary.WordEntry;
+import com.gaoyuanh.dictionary.protocol.BinaryProtocol;
+import com.gaoyuanh.dictionary.protocol.Message;
+import com.gaoyuanh.dictionary.protocol.ProtocolConstants;
+import com.google.gson.Gson;
+
+/**
+ * Executes protocol requests against the dictionary and builds the responses.
+ * Independent of the transport, so every server engine answers requests the same way.
+ * Thread-safe: one processor can be shared by all connections.
+ * With a {@link ResponseCache}, found SEARCH responses are kept encoded and
+ * reused, so transports that write encoded responses skip building and
+ * serializing them.
+ * A request whose deadline passed while it waited to be executed is answered
+ * with an error without doing any work; its client has stopped waiting.
+ */
+public class RequestProcessor {
+    private final Dictionary dictionary;
+    private final PersistenceScheduler persistenceScheduler; // Server-owned background persistence
+    private volatile String dictionaryFilePath; // Path to the dictionary file for saving
+    private volatile ResponseCache responseCache; // Encoded SEARCH responses, may be null
+    private volatile InvalidationBroadcaster invalidationBroadcaster; // Serves SUBSCRIBE, may be null
+    private final AtomicLong expiredRequests = new AtomicLong();
+
+    private static final Gson GSON = new Gson();
+
+    // Reusable probe of each thread for response cache lookups
+    private static final ThreadLocal<LookupKey> LOOKUP_KEYS = ThreadLocal.withInitial(LookupKey::new);
+
+    // Spliced before the closing brace of a cached JSON response
+    private static final byte[] JSON_REQUEST_ID = ",\"requestId\":".getBytes(StandardCharsets.UTF_8);
+
+    // Lock for dictionary saves; a ReentrantLock rather than a monitor so that a
+    // virtual thread waiting on file I/O does not pin its carrier thread
+    private static final Lock SAVE_LOCK = new ReentrantLock();
+
+    /**
+     * Constructor for RequestProcessor
+     * 
+     * @param dictionary The shared dictionary instance
+     * @param persistenceScheduler Scheduler that persists changes in the background, may be null
+     */
+    public RequestProcessor(Dictionary dictionary, PersistenceScheduler persistenceScheduler) {
+        this.dictionary = dictionary;
+        this.persistenceScheduler = persistenceScheduler;
+    }
+
+    /**
+     * Sets the dictionary file path for saving when there is no persistence scheduler
+     * 
+     * @param dictionaryFilePath Path to save the dictionary file
+     */
+    public void setDictionaryFilePath(String dictionaryFilePath) {
+        this.dictionaryFilePath = dictionaryFilePath;
+    }
+
+    /**
+     * Sets the cache of encoded SEARCH responses. The cache must also be the
+     * dictionary's change listener, so that it drops words as they change.
+     * 
+     * @param responseCache The cache, or null for none
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Sets the broadcaster that SUBSCRIBE requests register connections with.
+     * The broadcaster must also be the dictionary's change listener.
+     * 
+     * @param invalidationBroadcaster The broadcaster, or null to refuse subscriptions
+     */
+    public void setInvalidationBroadcaster(InvalidationBroadcaster invalidationBroadcaster) {
+        this.invalidationBroadcaster = invalidationBroadcaster;
+    }
+
+    /**
+     * Gets the number of requests that were not executed because their deadline had passed
+     * 
+     * @return The expired request count
+     */
+    public long getExpiredRequestCount() {
+        return expiredRequests.get();
+    }
+
+    /**
+     * Executes a request from a connection that can receive pushed messages, and
+     * encodes its response. A request whose deadline has passed since it arrived
+     * is answered with an error instead. A SUBSCRIBE request registers the
+     * connection for invalidations; every other request is handled as by
+     * {@link #processEncoded(Message, boolean)}.
+     * 
+     * @param request The client request message
+     * @param binary true for a binary protocol frame, false for a JSON line
+     * @param subscriber The connection the request came from
+     * @param receivedNanos {@link System#nanoTime()} when the request was read from the connection
+     * @return The encoded response, carrying the request's ID
+     */
+    public byte[] processEncoded(Message request, boolean binary, InvalidationBroadcaster.Subscriber subscriber,
+                                 long receivedNanos) {
+        Long timeoutMillis = request.getTimeoutMillis();
+        if (timeoutMillis != null
+                && System.nanoTime() - receivedNanos >= TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+            expiredRequests.incrementAndGet();
+            Message response = errorResponse("Deadline exceeded before the request was executed");
+            response.setRequestId(request.getRequestId());
+            return encode(response, binary);
+        }
+        if (!ProtocolConstants.OPERATION_SUBSCRIBE.equals(request.getOperation())) {
+            return processEncoded(request, binary);
+        }
+        
+        InvalidationBroadcaster broadcaster = invalidationBroadcaster;
+        Message response;
+        if (broadcaster == null) {
+            response = errorResponse("Invalidations are not enabled on this server");
+        } else {
+            broadcaster.subscribe(subscriber);
+            response = new Message(ProtocolConstants.OPERATION_SUBSCRIBE);
+            response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+        }
+        response.setRequestId(request.getRequestId());
+        return encode(response, binary);
+    }
+
+    /**
+     * Stops pushing invalidations to a connection that is closing
+     * 
+     * @param subscriber The connection
+     */
+    public void unsubscribe(InvalidationBroadcaster.Subscriber subscriber) {
+        InvalidationBroadcaster broadcaster = invalidationBroadcaster;
+        if (broadcaster != null) {
+            broadcaster.unsubscribe(subscriber);
+        }
+    }
+
+    /**
+     * Executes a request and encodes its response for the wire, serving found
+     * SEARCH responses from the response cache when there is one
+     * 
+     * @param request The client request message
+     * @param binary true for a binary protocol frame, false for a JSON line
+     * @return The encoded response, carrying the request's ID
+     */
+    public byte[] processEncoded(Message request, boolean binary) {
+        ResponseCache cache = responseCache;
+        if (cache == null || !ProtocolConstants.OPERATION_SEARCH.equals(request.getOperation())
+                || request.getWord() == null) {
+            return encode(process(request), binary);
+        }
+        
+        // Same normalization as Dictionary.search; a String is only created on a miss
+        LookupKey key = LOOKUP_KEYS.get().set(request.getWord());
+        byte[] cached = cache.get(key, binary);
+        if (cached != null) {
+            return withRequestId(cached, request.getRequestId(), binary);
+        }
+        
+        String word = key.toString();
+        long stamp = cache.startFill();
+        Message response = process(request);
+        if (!ProtocolConstants.STATUS_SUCCESS.equals(response.getStatus())) {
+            return encode(response, binary);
+        }
+        response.setRequestId(null);
+        byte[] encoded = encode(response, binary);
+        cache.put(word, binary, encoded, stamp);
+        return withRequestId(encoded, request.getRequestId(), binary);
+    }
+
+    /**
+     * Encodes a response for the wire
+     * 
+     * @param response The response message
+     * @param binary true for a binary protocol frame, false for a JSON line
+     * @return The encoded response
+     */
+    public static byte[] encode(Message response, boolean binary) {
+        if (binary) {
+            return BinaryProtocol.encode(response);
+        }
+        return (GSON.toJson(response) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Adds a request ID to an encoded response that has none
+     * 
+     * @param encoded The encoded response
+     * @param requestId The request ID, or null to leave the response as is
+     * @param binary true for a binary protocol frame, false for a JSON line
+     * @return The encoded response with the request ID
+     */
+    private static byte[] withRequestId(byte[] encoded, Long requestId, boolean binary) {
+        if (requestId == null) {
+            return encoded;
+        }
+        if (binary) {
+            return BinaryProtocol.withRequestId(encoded, requestId);
+        }
+        
+        // Replace the closing "}\n" of the JSON line; requestId is serialized last.
+        // The digits are written in place rather than formatted into a String.
+        long id = requestId;
+        int digits = 1;
+        for (long rest = id / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int sign = id < 0 ? 1 : 0;
+        int idStart = encoded.length - 2 + JSON_REQUEST_ID.length;
+        byte[] withId = new byte[idStart + sign + digits + 2];
+        System.arraycopy(encoded, 0, withId, 0, encoded.length - 2);
+        System.arraycopy(JSON_REQUEST_ID, 0, withId, encoded.length - 2, JSON_REQUEST_ID.length);
+        if (sign == 1) {
+            withId[idStart] = '-';
+        }
+        for (int i = idStart + sign + digits - 1; i >= idStart + sign; i--) {
+            withId[i] = (byte) ('0' + Math.abs(id % 10));
+            id /= 10;
+        }
+        withId[withId.length - 2] = '}';
+        withId[withId.length - 1] = '\n';
+        return withId;
+    }
+
+    /**
+     * Executes a request
+     * 
+     * @param request The client request message
+     * @return The response message to send back, carrying the request's ID
+     */
+    public Message process(Message request) {
+        Message response;
+        if (request.getOperation() == null) {
+            response = errorResponse("Missing operation");
+        } else {
+            try {
+                response = processRequest(request);
+            } catch (RuntimeException e) {
+                response = errorResponse("Error processing request: " + e.getMessage());
+            }
+        }
+        response.setRequestId(request.getRequestId());
+        return response;
+    }
+
+    /**
+     * Builds an error response
+     * 
+     * @param errorMessage The error message to send
+     * @return The error response message
+     */
+    public static Message errorResponse(String errorMessage) {
+        Message errorResponse = new Message();
+        errorResponse.setStatus(ProtocolConstants.STATUS_ERROR);
+        errorResponse.setErrorMessage(errorMessage);
+        return errorResponse;
+    }
+
+    /**
+     * Persists the dictionary after a successful mutation.
+     * With a persistence scheduler the change is only reported as dirty; the handler
+     * waits for the group flush when the durability mode requires it.
+     * Otherwise, when a mutation log is open the change is already durable, so the
+     * full file is only rewritten once the log is due for compaction.
+     * Holds the save lock to prevent concurrent writes
+     * 
+     * @return false if the save the acknowledgement waits for failed, so the
+     *         change must not be reported as successful
+     */
+    private boolean saveDictionaryToFile() {
+        if (persistenceScheduler != null) {
+            CompletableFuture<Void> flushed = persistenceScheduler.markDirty();
+            if (persistenceScheduler.getDurabilityMode() == PersistenceScheduler.DurabilityMode.ACK_AFTER_FLUSH) {
+                try {
+                    flushed.join();
+                } catch (CompletionException e) {
+                    System.err.println("Error saving dictionary to file: " + e.getCause().getMessage());
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        if (dictionaryFilePath == null || dictionaryFilePath.trim().isEmpty()) {
+            System.out.println("No dictionary file path specified, skipping save");
+            return true;
+        }
+        
+        SAVE_LOCK.lock();
+        try {
+            if (!dictionary.isMutationLogOpen()) {
+                dictionary.saveToFile(dictionaryFilePath);
+            } else if (dictionary.needsCompaction()) {
+                // The change is already in the log, so a failed compaction does not lose it
+                try {
+                    dictionary.compact(dictionaryFilePath);
+                } catch (IOException e) {
+                    System.err.println("Error compacting dictionary file: " + e.getMessage());
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving dictionary to file: " + e.getMessage());
+            return false;
+        } finally {
+            SAVE_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Turns a successful change response into an error because the change was not saved
+     * 
+     * @param response The response to the change
+     */
+    private static void reportSaveFailure(Message response) {
+        response.setStatus(ProtocolConstants.STATUS_ERROR);
+        response.setErrorMessage("The change was applied but could not be saved, and may be lost on restart");
+    }
+
+    /**
+     * Dispatches a request to the handler for its operation type
+     * 
+     * @param request The client request message
+     * @return The response message
+     */
+    private Message processRequest(Message request) {
+        switch (request.getOperation()) {
+            case ProtocolConstants.OPERATION_SEARCH:
+                return handleSearch(request);
+            case ProtocolConstants.OPERATION_ADD:
+                return handleAdd(request);
+            case ProtocolConstants.OPERATION_REMOVE:
+                return handleRemove(request);
+            case ProtocolConstants.OPERATION_ADD_MEANING:
+                return handleAddMeaning(request);
+            case ProtocolConstants.OPERATION_UPDATE_MEANING:
+                return handleUpdateMeaning(request);
+            case ProtocolConstants.OPERATION_PREFIX_SEARCH:
+                return handlePrefixSearch(request);
+            case ProtocolConstants.OPERATION_FUZZY_SEARCH:
+                return handleFuzzySearch(request);
+            case ProtocolConstants.OPERATION_REVERSE_SEARCH:
+                return handleReverseSearch(request);
+            case ProtocolConstants.OPERATION_MULTI_SEARCH:
+                return handleMultiSearch(request);
+            case ProtocolConstants.OPERATION_BULK_ADD:
+                return handleBulkAdd(request);
+            case ProtocolConstants.OPERATION_BULK_UPDATE:
+                return handleBulkUpdate(request);
+            case ProtocolConstants.OPERATION_SCAN:
+                return handleScan(request);
+            default:
+                return errorResponse("Unknown operation: " + request.getOperation());
+        }
+    }
+
+    /**
+     * Handles word search requests
+     * 
+     * @param request The search request message
+     * @return The response message
+     */
+    private Message handleSearch(Message request) {
+        String word = request.getWord();
+        if (word == null || word.trim().isEmpty()) {
+            return errorResponse("Word cannot be empty");
+        }
+        
+        WordEntry entry = dictionary.search(word);
+        if (entry == null) {
+            Message response = new Message(ProtocolConstants.OPERATION_SEARCH);
+            response.setStatus(ProtocolConstants.STATUS_NOT_FOUND);
+            response.setWord(word);
+            if (request.isSuggest()) {
+                response.setWords(dictionary.fuzzySearch(word, ProtocolConstants.DEFAULT_FUZZY_DISTANCE,
+                        ProtocolConstants.SUGGESTION_LIMIT));
+            }
+            return response;
+        } else {
+            Message response = new Message(ProtocolConstants.OPERATION_SEARCH);
+            response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+            response.setWord(entry.getWord());
+            response.setMeanings(entry.getMeanings());
+            return response;
+        }
+    }
+
+    /**
+     * Handles requests to search for several words in one round trip
+     * 
+     * @param request The multi search request message, with the words to search for
+     * @return The response message, with one search result per word
+     */
+    private Message handleMultiSearch(Message request) {
+        List<String> words = request.getWords();
+        String error = checkBatchSize(words, "Words");
+        if (error != null) {
+            return errorResponse(error);
+        }
+        
+        List<WordEntry> entries = dictionary.searchAll(words);
+        List<Message> results = new ArrayList<>(words.size());
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            WordEntry entry = entries.get(i);
+            Message result = new Message();
+            if (word == null || word.trim().isEmpty()) {
+                result.setStatus(ProtocolConstants.STATUS_ERROR);
+                result.setErrorMessage("Word cannot be empty");
+            } else if (entry == null) {
+                result.setStatus(ProtocolConstants.STATUS_NOT_FOUND);
+                result.setWord(word);
+            } else {
+                result.setStatus(ProtocolConstants.STATUS_SUCCESS);
+                result.setWord(entry.getWord());
+                result.setMeanings(entry.getMeanings());
+            }
+            results.add(result);
+        }
+        
+        Message response = new Message(ProtocolConstants.OPERATION_MULTI_SEARCH);
+        response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+        response.setBatch(results);
+        return response;
+    }
+
+    /**
+     * Checks the size of a batch request
+     * 
+     * @param items The batch items
+     * @param name Name of the items, for the error message
+     * @return The error message, or null if the size is valid
+     */
+    private static String checkBatchSize(List<?> items, String name) {
+        if (items == null || items.isEmpty()) {
+            return name + " cannot be empty";
+        }
+        if (items.size() > ProtocolConstants.MAX_BATCH_SIZE) {
+            return name + " cannot exceed " + ProtocolConstants.MAX_BATCH_SIZE + " items";
+        }
+        return null;
+    }
+
+    /**
+     * Handles prefix search (autocomplete) requests
+     * 
+     * @param request The prefix search request message
+     * @return The response message
+     */
+    private Message handlePrefixSearch(Message request) {
+        String prefix = request.getWord();
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return errorResponse("Prefix cannot be empty");
+        }
+        
+        Integer limit = request.getLimit();
+        if (limit == null || limit <= 0) {
+            limit = ProtocolConstants.DEFAULT_PREFIX_LIMIT;
+        }
+        limit = Math.min(limit, ProtocolConstants.MAX_PREFIX_LIMIT);
+        
+        Message response = new Message(ProtocolConstants.OPERATION_PREFIX_SEARCH);
+        response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+        response.setWord(prefix);
+        response.setWords(dictionary.prefixSearch(prefix, limit));
+        return response;
+    }
+
+    /**
+     * Handles requests for a page of entries in word order. The cursor of the
+     * response encodes the last word of the page, so the server keeps no state
+     * between pages and the next page starts right after that word, whatever
+     * changed in between.
+     * 
+     * @param request The scan request message, with an optional start word, end word and cursor
+     * @return The response message, with the entries in its batch and a cursor if more follow
+     */
+    private Message handleScan(Message request) {
+        Integer limit = request.getLimit();
+        if (limit == null || limit <= 0) {
+            limit = ProtocolConstants.DEFAULT_SCAN_LIMIT;
+        }
+        limit = Math.min(limit, ProtocolConstants.MAX_SCAN_LIMIT);
+        
+        String start = request.getWord();
+        if (request.getCursor() != null) {
+            try {
+                String last = new String(Base64.getUrlDecoder().decode(request.getCursor()), StandardCharsets.UTF_8);
+                // The smallest string after the last word returned
+                start = last + '\u0000';
+            } catch (IllegalArgumentException e) {
+                return errorResponse("Invalid cursor");
+            }
+        }
+        
+        // One entry more than the page tells whether another page follows
+        List<WordEntry> entries = dictionary.scan(start, request.getEndWord(), limit + 1);
+        List<Message> results = new ArrayList<>(Math.min(entries.size(), limit));
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            Message result = new Message();
+            result.setWord(entries.get(i).getWord());
+            result.setMeanings(entries.get(i).getMeanings());
+            results.add(result);
+        }
+        
+        Message response = new Message(ProtocolConstants.OPERATION_SCAN);
+        response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+        response.setBatch(results);
+        if (entries.size() > limit) {
+            String last = results.get(limit - 1).getWord();
+            response.setCursor(Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(last.getBytes(StandardCharsets.UTF_8)));
+        }
+        return response;
+    }
+
+    /**
+     * Handles fuzzy search ("did you mean") requests
+     * 
+     * @param request The fuzzy search request message
+     * @return The response message
+     */
+    private Message handleFuzzySearch(Message request) {
+        String word = request.getWord();
+        if (word == null || word.trim().isEmpty()) {
+            return errorResponse("Word cannot be empty");
+        }
+        
+        Integer maxDistance = request.getMaxDistance();
+        if (maxDistance == null || maxDistance < 0) {
+            maxDistance = ProtocolConstants.DEFAULT_FUZZY_DISTANCE;
+        }
+        maxDistance = Math.min(maxDistance, ProtocolConstants.MAX_FUZZY_DISTANCE);
+        
+        Integer limit = request.getLimit();
+        if (limit == null || limit <= 0) {
+            limit = ProtocolConstants.DEFAULT_FUZZY_LIMIT;
+        }
+        limit = Math.min(limit, ProtocolConstants.MAX_FUZZY_LIMIT);
+        
+        Message response = new Message(ProtocolConstants.OPERATION_FUZZY_SEARCH);
+        response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+        response.setWord(word);
+        response.setWords(dictionary.fuzzySearch(word, maxDistance, limit));
+        return response;
+    }
+
+    /**
+     * Handles reverse search requests, finding words by their meanings
+     * 
+     * @param request The reverse search request message
+     * @return The response message
+     */
+    private Message handleReverseSearch(Message request) {
+        String query = request.getQuery();
+        if (query == null || query.trim().isEmpty()) {
+            return errorResponse("Query cannot be empty");
+        }
+        
+        Integer limit = request.getLimit();
+        if (limit == null || limit <= 0) {
+            limit = ProtocolConstants.DEFAULT_REVERSE_LIMIT;
+        }
+        limit = Math.min(limit, ProtocolConstants.MAX_REVERSE_LIMIT);
+        
+        Message response = new Message(ProtocolConstants.OPERATION_REVERSE_SEARCH);
+        response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+        response.setQuery(query);
+        response.setWords(dictionary.reverseSearch(query, limit));
+        return response;
+    }
+
+    /**
+     * Handles requests to add a new word
+     * 
+     * @param request The add word request message
+     * @return The response message
+     */
+    private Message handleAdd(Message request) {
+        String word = request.getWord();
+        List<String> meanings = request.getMeanings();
+        
+        if (word == null || word.trim().isEmpty()) {
+            return errorResponse("Word cannot be empty");
+        }
+        
+        if (meanings == null || meanings.isEmpty()) {
+            return errorResponse("Meanings cannot be empty");
+        }
+        
+        boolean success = dictionary.add(word, meanings);
+        
+        Message response = new Message(ProtocolConstants.OPERATION_ADD);
+        response.setWord(word);
+        
+        if (success) {
+            response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+            // Save dictionary to file after successful add
+            if (!saveDictionaryToFile()) {
+                reportSaveFailure(response);
+            }
+        } else {
+            response.setStatus(ProtocolConstants.STATUS_DUPLICATE);
+        }
+        
+        return response;
+    }
+
+    /**
+     * Handles requests to add several words at once. The words are added under one
+     * lock acquisition and saved with one persistence cycle.
+     * 
+     * @param request The bulk add request message, with a word and its meanings per batch item
+     * @return The response message, with one result per item
+     */
+    private Message handleBulkAdd(Message request) {
+        List<Message> items = request.getBatch();
+        String error = checkBatchSize(items, "Batch");
+        if (error != null) {
+            return errorResponse(error);
+        }
+        
+        List<WordEntry> entries = new ArrayList<>(items.size());
+        List<Message> results = new ArrayList<>(items.size());
+        for (Message item : items) {
+            Message result = new Message();
+            if (item == null || item.getWord() == null || item.getWord().trim().isEmpty()) {
+                result.setErrorMessage("Word cannot be empty");
+            } else if (item.getMeanings() == null || item.getMeanings().isEmpty()) {
+                result.setErrorMessage("Meanings cannot be empty");
+            }
+            if (result.getErrorMessage() != null) {
+                result.setStatus(ProtocolConstants.STATUS_ERROR);
+                entries.add(null);
+            } else {
+                result.setWord(item.getWord());
+                entries.add(new WordEntry(item.getWord(), item.getMeanings()));
+            }
+            results.add(result);
+        }
+        
+        boolean[] added = dictionary.addAll(entries);
+        boolean changed = false;
+        for (int i = 0; i < added.length; i++) {
+            if (entries.get(i) != null) {
+                results.get(i).setStatus(added[i] ? ProtocolConstants.STATUS_SUCCESS
+                        : ProtocolConstants.STATUS_DUPLICATE);
+            }
+            changed |= added[i];
+        }
+        boolean saved = !changed || saveDictionaryToFile();
+        
+        Message response = new Message(ProtocolConstants.OPERATION_BULK_ADD);
+        response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+        response.setBatch(results);
+        if (!saved) {
+            reportSaveFailure(response);
+        }
+        return response;
+    }
+
+    /**
+     * Handles requests to update meanings of several words at once. The updates are
+     * applied under one lock acquisition and saved with one persistence cycle.
+     * 
+     * @param request The bulk update request message, with a word and both meanings per batch item
+     * @return The response message, with one result per item
+     */
+    private Message handleBulkUpdate(Message request) {
+        List<Message> items = request.getBatch();
+        String error = checkBatchSize(items, "Batch");
+        if (error != null) {
+            return errorResponse(error);
+        }
+        
+        List<Dictionary.MeaningUpdate> updates = new ArrayList<>(items.size());
+        List<Message> results = new ArrayList<>(items.size());
+        for (Message item : items) {
+            Message result = new Message();
+            if (item == null || item.getWord() == null || item.getWord().trim().isEmpty()) {
+                result.setErrorMessage("Word cannot be empty");
+            } else if (item.getOldMeaning() == null || item.getOldMeaning().trim().isEmpty()) {
+                result.setErrorMessage("Existing meaning cannot be empty");
+            } else if (item.getNewMeaning() == null || item.getNewMeaning().trim().isEmpty()) {
+                result.setErrorMessage("New meaning cannot be empty");
+            }
+            if (result.getErrorMessage() != null) {
+                result.setStatus(ProtocolConstants.STATUS_ERROR);
+                updates.add(null);
+            } else {
+                result.setWord(item.getWord());
+                updates.add(new Dictionary.MeaningUpdate(item.getWord(), item.getOldMeaning(),
+                        item.getNewMeaning()));
+            }
+            results.add(result);
+        }
+        
+        boolean[] updated = dictionary.updateMeanings(updates);
+        boolean changed = false;
+        for (int i = 0; i < updated.length; i++) {
+            Message result = results.get(i);
+            if (updates.get(i) == null) {
+                continue;
+            }
+            if (updated[i]) {
+                result.setStatus(ProtocolConstants.STATUS_SUCCESS);
+                changed = true;
+            } else if (dictionary.search(result.getWord()) == null) {
+                result.setStatus(ProtocolConstants.STATUS_NOT_FOUND);
+            } else {
+                result.setStatus(ProtocolConstants.STATUS_MEANING_NOT_FOUND);
+            }
+        }
+        boolean saved = !changed || saveDictionaryToFile();
+        
+        Message response = new Message(ProtocolConstants.OPERATION_BULK_UPDATE);
+        response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+        response.setBatch(results);
+        if (!saved) {
+            reportSaveFailure(response);
+        }
+        return response;
+    }
+
+    /**
+     * Handles requests to remove a word
+     * 
+     * @param request The remove word request message
+     * @return The response message
+     */
+    private Message handleRemove(Message request) {
+        String word = request.getWord();
+        
+        if (word == null || word.trim().isEmpty()) {
+            return errorResponse("Word cannot be empty");
+        }
+        
+        boolean success = dictionary.remove(word);
+        
+        Message response = new Message(ProtocolConstants.OPERATION_REMOVE);
+        response.setWord(word);
+        
+        if (success) {
+            response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+            // Save dictionary to file after successful remove
+            if (!saveDictionaryToFile()) {
+                reportSaveFailure(response);
+            }
+        } else {
+            response.setStatus(ProtocolConstants.STATUS_NOT_FOUND);
+        }
+        
+        return response;
+    }
+
+    /**
+     * Handles requests to add a new meaning to an existing word
+     * 
+     * @param request The add meaning request message
+     * @return The response message
+     */
+    private Message handleAddMeaning(Message request) {
+        String word = request.getWord();
+        List<String> meanings = request.getMeanings();
+        
+        if (word == null || word.trim().isEmpty()) {
+            return errorResponse("Word cannot be empty");
+        }
+        
+        if (meanings == null || meanings.isEmpty()) {
+            return errorResponse("New meaning cannot be empty");
+        }
+        
+        String newMeaning = meanings.get(0);
+        boolean success = dictionary.addMeaning(word, newMeaning);
+        
+        Message response = new Message(ProtocolConstants.OPERATION_ADD_MEANING);
+        response.setWord(word);
+        
+        if (success) {
+            response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+            // Save dictionary to file after successful add meaning
+            if (!saveDictionaryToFile()) {
+                reportSaveFailure(response);
+            }
+        } else {
+            // Could be not found or duplicate, check if word exists
+            if (dictionary.search(word) == null) {
+                response.setStatus(ProtocolConstants.STATUS_NOT_FOUND);
+            } else {
+                response.setStatus(ProtocolConstants.STATUS_DUPLICATE);
+            }
+        }
+        
+        return response;
+    }
+
+    /**
+     * Handles requests to update an existing meaning of a word
+     * 
+     * @param request The update meaning request message
+     * @return The response message
+     */
+    private Message handleUpdateMeaning(Message request) {
+        String word = request.getWord();
+        String oldMeaning = request.getOldMeaning();
+        String newMeaning = request.getNewMeaning();
+        
+        if (word == null || word.trim().isEmpty()) {
+            return errorResponse("Word cannot be empty");
+        }
+        
+        if (oldMeaning == null || oldMeaning.trim().isEmpty()) {
+            return errorResponse("Existing meaning cannot be empty");
+        }
+        
+        if (newMeaning == null || newMeaning.trim().isEmpty()) {
+            return errorResponse("New meaning cannot be empty");
+        }
+        
+        boolean success = dictionary.updateMeaning(word, oldMeaning, newMeaning);
+        
+        Message response = new Message(ProtocolConstants.OPERATION_UPDATE_MEANING);
+        response.setWord(word);
+        
+        if (success) {
+            response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+            // Save dictionary to file after successful update meaning
+            if (!saveDictionaryToFile()) {
+                reportSaveFailure(response);
+            }
+        } else {
+            // Could be word not found or meaning not found
+            if (dictionary.search(word) == null) {
+                response.setStatus(ProtocolConstants.STATUS_NOT_FOUND);
+            } else {
+                response.setStatus(ProtocolConstants.STATUS_MEANING_NOT_FOUND);
+            }
+        }
+        
+        return response;
+    }
+}
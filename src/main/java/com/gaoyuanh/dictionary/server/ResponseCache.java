@@ -0,0 +1,336 @@
+package com.gaoyuanh.dictionary.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.gaoyuanh.dictionary.dictionary.DictionaryChangeListener;
+import com.gaoyuanh.dictionary.dictionary.LookupKey;
+
+/**
+ * Bounded cache of encoded SEARCH responses for words that are found, so a hot
+ * word is answered without building and serializing a new response each time.
+ * Each word keeps its JSON and binary encodings, both without a request ID.
+ * Eviction is a segmented LRU weighted by bytes: new words enter a probationary
+ * segment and move to a protected segment when hit again, so a burst of one-off
+ * lookups cannot push out the words that are searched over and over.
+ * The cache listens to the dictionary and drops a word as soon as it changes; a
+ * response computed while the word was changing is never stored.
+ */
+public class ResponseCache implements DictionaryChangeListener {
+    // Default memory budget in bytes
+    public static final long DEFAULT_CAPACITY_BYTES = 16L << 20;
+
+    // Share of the budget for words that have been hit at least twice
+    private static final double PROTECTED_SHARE = 0.8;
+
+    // Estimated memory of an entry besides its encodings: key, node and arrays
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final long capacityBytes;
+    private final long protectedCapacityBytes;
+    // Both in access order, least recently used first
+    private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(64, 0.75f, true);
+    private long probationBytes;
+    private long protectedBytes;
+    // Guards the segments; not a monitor, so virtual threads do not pin their carriers
+    private final Lock lock = new ReentrantLock();
+
+    // Incremented by every invalidation, so a fill that raced with one can be detected
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Encoded responses for one word
+     */
+    private static final class Entry {
+        final String word;
+        byte[] json;
+        byte[] binary;
+        
+        Entry(String word) {
+            this.word = word;
+        }
+        
+        long weight() {
+            return weight(word, json, binary);
+        }
+        
+        static long weight(String word, byte[] json, byte[] binary) {
+            return ENTRY_OVERHEAD_BYTES + 2L * word.length() + (json == null ? 0 : json.length)
+                    + (binary == null ? 0 : binary.length);
+        }
+    }
+
+    /**
+     * Constructor for ResponseCache
+     * 
+     * @param capacityBytes Memory budget for the cached responses
+     */
+    public ResponseCache(long capacityBytes) {
+        this.capacityBytes = Math.max(0, capacityBytes);
+        this.protectedCapacityBytes = (long) (this.capacityBytes * PROTECTED_SHARE);
+    }
+
+    /**
+     * Gets the encoded response for a word
+     * 
+     * @param word The normalized word, a String or a {@link LookupKey}
+     * @param binary true for the binary encoding, false for a JSON line
+     * @return The encoded response without a request ID, or null if it is not cached
+     */
+    byte[] get(CharSequence word, boolean binary) {
+        byte[] encoded = null;
+        lock.lock();
+        try {
+            Entry entry = protectedSegment.get(word);
+            if (entry == null) {
+                entry = probation.get(word);
+                if (entry != null && encodingOf(entry, binary) != null) {
+                    promote(entry);
+                }
+            }
+            if (entry != null) {
+                encoded = encodingOf(entry, binary);
+            }
+        } finally {
+            lock.unlock();
+        }
+        
+        (encoded != null ? hits : misses).incrementAndGet();
+        return encoded;
+    }
+
+    /**
+     * Starts computing a response to store with {@link #put(String, boolean, byte[], long)}
+     * 
+     * @return A stamp to pass to put
+     */
+    long startFill() {
+        return invalidations.get();
+    }
+
+    /**
+     * Stores an encoded response, unless a word changed since the fill started,
+     * in which case the response may be stale
+     * 
+     * @param word The normalized word
+     * @param binary true for the binary encoding, false for a JSON line
+     * @param encoded The encoded response without a request ID
+     * @param stamp The value returned by {@link #startFill()} before the dictionary lookup
+     */
+    void put(String word, boolean binary, byte[] encoded, long stamp) {
+        lock.lock();
+        try {
+            if (invalidations.get() != stamp) {
+                return;
+            }
+            
+            Entry entry = protectedSegment.get(word);
+            boolean isProtected = entry != null;
+            if (entry == null) {
+                entry = probation.get(word);
+            }
+            if (entry == null) {
+                entry = new Entry(word);
+            }
+            
+            long newWeight = binary ? Entry.weight(word, entry.json, encoded)
+                    : Entry.weight(word, encoded, entry.binary);
+            if (newWeight > capacityBytes - protectedCapacityBytes) {
+                // Too big to be worth the space it would take from other words
+                removeEntry(word);
+                return;
+            }
+            
+            long oldWeight = entry.json == null && entry.binary == null ? 0 : entry.weight();
+            if (binary) {
+                entry.binary = encoded;
+            } else {
+                entry.json = encoded;
+            }
+            
+            if (isProtected) {
+                protectedBytes += newWeight - oldWeight;
+            } else {
+                probation.put(word, entry);
+                probationBytes += newWeight - oldWeight;
+            }
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void wordChanged(String word) {
+        invalidations.incrementAndGet();
+        lock.lock();
+        try {
+            removeEntry(word);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void dictionaryCleared() {
+        invalidations.incrementAndGet();
+        lock.lock();
+        try {
+            probation.clear();
+            protectedSegment.clear();
+            probationBytes = 0;
+            protectedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache
+     * 
+     * @return The hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups that were not cached
+     * 
+     * @return The miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the share of lookups answered from the cache
+     * 
+     * @return The hit ratio between 0 and 1, or 0 before the first lookup
+     */
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Gets the number of words evicted to stay within the memory budget
+     * 
+     * @return The eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Gets the number of cached words
+     * 
+     * @return The entry count
+     */
+    public int getEntryCount() {
+        lock.lock();
+        try {
+            return probation.size() + protectedSegment.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the estimated memory used by the cached responses
+     * 
+     * @return The memory use in bytes
+     */
+    public long getMemoryBytes() {
+        lock.lock();
+        try {
+            return probationBytes + protectedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the memory budget
+     * 
+     * @return The capacity in bytes
+     */
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1f%% hit ratio, %d hits, %d misses, %d evictions, %d words, %d of %d KB",
+                getHitRatio() * 100, getHitCount(), getMissCount(), getEvictionCount(), getEntryCount(),
+                getMemoryBytes() / 1024, capacityBytes / 1024);
+    }
+
+    private static byte[] encodingOf(Entry entry, boolean binary) {
+        return binary ? entry.binary : entry.json;
+    }
+
+    /**
+     * Moves a word that was hit again from probation to the protected segment,
+     * demoting the least recently used protected words if it is full
+     */
+    private void promote(Entry entry) {
+        long weight = entry.weight();
+        probation.remove(entry.word);
+        probationBytes -= weight;
+        protectedSegment.put(entry.word, entry);
+        protectedBytes += weight;
+        
+        Iterator<Map.Entry<String, Entry>> eldest = protectedSegment.entrySet().iterator();
+        while (protectedBytes > protectedCapacityBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> demoted = eldest.next();
+            long demotedWeight = demoted.getValue().weight();
+            eldest.remove();
+            protectedBytes -= demotedWeight;
+            probation.put(demoted.getKey(), demoted.getValue());
+            probationBytes += demotedWeight;
+        }
+    }
+
+    /**
+     * Evicts least recently used probationary words, then protected ones, until
+     * the cache is within its budget
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> eldest = probation.entrySet().iterator();
+        while (probationBytes + protectedBytes > capacityBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> victim = eldest.next();
+            probationBytes -= victim.getValue().weight();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+        eldest = protectedSegment.entrySet().iterator();
+        while (probationBytes + protectedBytes > capacityBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> victim = eldest.next();
+            protectedBytes -= victim.getValue().weight();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void removeEntry(String word) {
+        Entry entry = probation.remove(word);
+        if (entry != null) {
+            probationBytes -= entry.weight();
+        }
+        entry = protectedSegment.remove(word);
+        if (entry != null) {
+            protectedBytes -= entry.weight();
+        }
+    }
+}
@@ -13,6 +13,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
@@ -21,6 +22,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.MatteBorder;
@@ -33,6 +35,7 @@ public class ServerGUI extends JFrame {
     private final JLabel statusLabel;
     private final JLabel portLabel;
     private final JLabel clientCountLabel;
+    private final JLabel cacheLabel;
     private final JTextArea logArea;
     private final JButton startStopButton;
     private final AtomicInteger connectedClients = new AtomicInteger(0);
@@ -41,6 +44,7 @@ public class ServerGUI extends JFrame {
     private int port;
     private String dictionaryFilePath;
     private int threadPoolSize = 10; // Default thread pool size
+    private DictionaryServer.Engine engine = DictionaryServer.Engine.BLOCKING;
     private boolean isRunning = false;
 
     /**
@@ -97,6 +101,10 @@ public class ServerGUI extends JFrame {
         
         clientCountLabel = new JLabel("Connected Clients: 0");
         
+        cacheLabel = new JLabel("Cache: -");
+        cacheLabel.setToolTipText("Response cache hit ratio and memory use");
+        new Timer(1000, e -> updateCacheLabel()).start();
+        
         startStopButton = new JButton("Start Server");
         startStopButton.addActionListener(e -> toggleServer());
         
@@ -106,6 +114,8 @@ public class ServerGUI extends JFrame {
         headerPanel.add(portLabel);
         headerPanel.add(Box.createHorizontalStrut(20));
         headerPanel.add(clientCountLabel);
+        headerPanel.add(Box.createHorizontalStrut(20));
+        headerPanel.add(cacheLabel);
         headerPanel.add(Box.createHorizontalGlue());
         headerPanel.add(startStopButton);
         
@@ -182,6 +192,19 @@ public class ServerGUI extends JFrame {
         threadPoolPanel.add(threadPoolField);
         threadPoolPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
         
+        // Add server engine selection
+        JPanel enginePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        enginePanel.setBackground(Color.WHITE);
+        JLabel engineLabel = new JLabel("Server Engine:");
+        // Entries are in DictionaryServer.Engine order
+        JComboBox<String> engineCombo = new JComboBox<>(new String[] {
+            "Thread per connection", "NIO selector", "Virtual thread per connection (Java 21+)"
+        });
+        engineCombo.setSelectedIndex(engine.ordinal());
+        enginePanel.add(engineLabel);
+        enginePanel.add(engineCombo);
+        enginePanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        
         JButton applyButton = new JButton("Apply Settings");
         applyButton.setAlignmentX(Component.LEFT_ALIGNMENT);
         applyButton.addActionListener(e -> {
@@ -199,8 +222,9 @@ public class ServerGUI extends JFrame {
                         // Validate and set thread pool size
                         if (newThreadPoolSize >= 1) {
                             threadPoolSize = newThreadPoolSize;
+                            engine = DictionaryServer.Engine.values()[engineCombo.getSelectedIndex()];
                             logMessage("Settings updated: Port=" + port + ", File=" + dictionaryFilePath + 
-                                       ", Thread Pool Size=" + threadPoolSize);
+                                       ", Thread Pool Size=" + threadPoolSize + ", Engine=" + engine);
                         } else {
                             JOptionPane.showMessageDialog(this,
                                 "Thread pool size must be at least 1",
@@ -234,6 +258,8 @@ public class ServerGUI extends JFrame {
         panel.add(filePanel);
         panel.add(Box.createRigidArea(new Dimension(0, 10)));
         panel.add(threadPoolPanel); // Add the thread pool configuration panel
+        panel.add(Box.createRigidArea(new Dimension(0, 10)));
+        panel.add(enginePanel);
         panel.add(Box.createRigidArea(new Dimension(0, 20)));
         panel.add(applyButton);
         panel.add(Box.createVerticalGlue());
@@ -285,6 +311,7 @@ public class ServerGUI extends JFrame {
                 try {
                     server = new DictionaryServer(port, dictionaryFilePath, threadPoolSize);
                     server.setClientConnectionListener(this::updateClientCount);
+                    server.setEngine(engine);
                     boolean started = server.startServer();
                     
                     if (!started) {
@@ -309,7 +336,8 @@ public class ServerGUI extends JFrame {
             }).start();
             
             updateServerStatus(true);
-            logMessage("Server starting on port " + port + " with thread pool size " + threadPoolSize + "...");
+            logMessage("Server starting on port " + port + " with thread pool size " + threadPoolSize
+                    + " (" + engine + " engine)...");
             
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this,
@@ -352,6 +380,19 @@ public class ServerGUI extends JFrame {
         clientCountLabel.setText("Connected Clients: " + connectedClients.get());
     }
     
+    /**
+     * Updates the response cache label from the running server's cache
+     */
+    private void updateCacheLabel() {
+        ResponseCache cache = server == null ? null : server.getResponseCache();
+        if (cache == null) {
+            cacheLabel.setText("Cache: -");
+        } else {
+            cacheLabel.setText(String.format("Cache: %.0f%% hits, %d KB", cache.getHitRatio() * 100,
+                    cache.getMemoryBytes() / 1024));
+        }
+    }
+
     /**
      * Updates the server status in the UI
      * 
@@ -0,0 +1,126 @@
+package com.gaoyuanh.dictionary.bench;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.gaoyuanh.dictionary.client.DictionaryClient;
+import com.gaoyuanh.dictionary.protocol.Message;
+import com.gaoyuanh.dictionary.server.DictionaryServer;
+import com.gaoyuanh.dictionary.server.PersistenceScheduler;
+
+/**
+ * Compares looking up and adding a set of words one request at a time with doing
+ * it in one MULTI_SEARCH or BULK_ADD request. Adds are acknowledged after the
+ * mutation log is flushed, so each round also pays for persistence.
+ *
+ * Usage: BatchBenchmark [words] [rounds]
+ */
+public final class BatchBenchmark {
+    private static final int PORT = 18099;
+
+    private BatchBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception If the server or client fails
+     */
+    public static void main(String[] args) throws Exception {
+        int words = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        PrintStream results = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        File file = File.createTempFile("batch-benchmark", ".json");
+        file.delete();
+        DictionaryServer server = new DictionaryServer(PORT, file.getPath(), 4);
+        server.setPersistenceOptions(PersistenceScheduler.DEFAULT_FLUSH_INTERVAL_MS,
+                PersistenceScheduler.DEFAULT_DIRTY_THRESHOLD, PersistenceScheduler.DurabilityMode.ACK_AFTER_FLUSH);
+        server.startServer();
+        DictionaryClient single = new DictionaryClient("localhost", PORT, System.err::println, 1);
+        DictionaryClient pipelined = new DictionaryClient("localhost", PORT, System.err::println, 32);
+        single.connect();
+        pipelined.connect();
+
+        results.println(String.format("%d words per round, %d rounds", words, rounds));
+        results.println("  operation                     ms/round");
+        int next = 0;
+        double[] totals = new double[5];
+        for (int round = 0; round < rounds; round++) {
+            List<Map<String, List<String>>> batches = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Map<String, List<String>> batch = new LinkedHashMap<>();
+                for (int j = 0; j < words; j++) {
+                    batch.put("word" + next++, Collections.singletonList("meaning"));
+                }
+                batches.add(batch);
+            }
+            List<String> lookups = new ArrayList<>(batches.get(0).keySet());
+
+            // The first round warms up
+            totals[0] += round == 0 ? 0 : time(() -> add(single, batches.get(0)));
+            totals[1] += round == 0 ? 0 : time(() -> add(pipelined, batches.get(1)));
+            totals[2] += round == 0 ? 0 : time(() -> check(pipelined.bulkAdd(batches.get(2)).join()));
+            totals[3] += round == 0 ? 0 : time(() -> search(pipelined, lookups));
+            totals[4] += round == 0 ? 0 : time(() -> check(pipelined.multiSearch(lookups).join()));
+        }
+        String[] names = { "ADD, one at a time", "ADD, pipelined (window 32)", "BULK_ADD",
+                "SEARCH, pipelined (window 32)", "MULTI_SEARCH" };
+        for (int i = 0; i < names.length; i++) {
+            results.println(String.format("  %-29s %8.1f", names[i], totals[i] / (rounds - 1)));
+        }
+
+        single.disconnect();
+        pipelined.disconnect();
+        server.stopServer();
+        file.delete();
+        new File(file.getPath() + ".log").delete();
+        System.exit(0);
+    }
+
+    private static double time(Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    private static void add(DictionaryClient client, Map<String, List<String>> batch) {
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : batch.entrySet()) {
+            futures.add(client.addWord(entry.getKey(), entry.getValue()));
+        }
+        for (CompletableFuture<Message> future : futures) {
+            check(future.join());
+        }
+    }
+
+    private static void search(DictionaryClient client, List<String> words) {
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (String word : words) {
+            futures.add(client.searchWord(word));
+        }
+        for (CompletableFuture<Message> future : futures) {
+            check(future.join());
+        }
+    }
+
+    private static void check(Message response) {
+        if (!"SUCCESS".equals(response.getStatus())) {
+            throw new IllegalStateException("Unexpected response " + response.getStatus());
+        }
+    }
+}
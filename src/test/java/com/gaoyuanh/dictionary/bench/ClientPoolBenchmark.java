@@ -0,0 +1,109 @@
+package com.gaoyuanh.dictionary.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.gaoyuanh.dictionary.client.DictionaryClient;
+import com.gaoyuanh.dictionary.protocol.ProtocolConstants;
+import com.gaoyuanh.dictionary.server.DictionaryServer;
+
+/**
+ * Measures SEARCH throughput of one client shared by many caller threads, each
+ * waiting for its response before sending the next request, for different
+ * connection pool sizes.
+ *
+ * Usage: ClientPoolBenchmark [callers] [secondsPerRun] [engine] [poolSizes...]
+ */
+public final class ClientPoolBenchmark {
+    private static final int PORT = 18110;
+
+    private ClientPoolBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception If the server or client fails
+     */
+    public static void main(String[] args) throws Exception {
+        int callers = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        DictionaryServer.Engine engine = args.length > 2 ? DictionaryServer.Engine.valueOf(args[2])
+                : DictionaryServer.Engine.BLOCKING;
+        int[] poolSizes = args.length > 3 ? Arrays.stream(args, 3, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 1, 2, 4, 8 };
+
+        PrintStream results = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        DictionaryServer server = new DictionaryServer(PORT, null, 16);
+        server.setEngine(engine);
+        server.startServer();
+
+        results.println(String.format("%d callers, %d s per run, %s engine", callers, seconds, engine));
+        results.println("  pool   requests/s   speedup");
+        double baseline = 0;
+        for (int poolSize : poolSizes) {
+            DictionaryClient client = new DictionaryClient("localhost", PORT, System.err::println,
+                    ProtocolConstants.DEFAULT_IN_FLIGHT_WINDOW, poolSize);
+            client.connect();
+            run(client, callers, 1);
+            double perSecond = run(client, callers, seconds);
+            client.disconnect();
+            if (baseline == 0) {
+                baseline = perSecond;
+            }
+            results.println(String.format("  %4d %12.0f %8.2fx", poolSize, perSecond, perSecond / baseline));
+        }
+
+        server.stopServer();
+        System.exit(0);
+    }
+
+    /**
+     * Runs the callers for a fixed time
+     *
+     * @return Requests per second across all callers
+     */
+    private static double run(DictionaryClient client, int callers, int seconds) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder requests = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(callers);
+        for (int c = 0; c < callers; c++) {
+            Thread caller = new Thread(() -> {
+                long count = 0;
+                try {
+                    start.await();
+                    while (running.get()) {
+                        client.searchWord(count % 2 == 0 ? "apple" : "absent").join();
+                        count++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    requests.add(count);
+                    done.countDown();
+                }
+            }, "bench-caller-" + c);
+            caller.setDaemon(true);
+            caller.start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        done.await();
+        return requests.sum() / ((System.nanoTime() - startTime) / 1e9);
+    }
+}
@@ -0,0 +1,153 @@
+package com.gaoyuanh.dictionary.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import com.gaoyuanh.dictionary.server.DictionaryServer;
+
+/**
+ * Opens many concurrent connections to a server, sends one SEARCH on each while
+ * all of them stay open, and measures how many are answered and how quickly.
+ * With the fixed pool only threadPoolSize connections are served until others
+ * close; the VIRTUAL and NIO engines serve all of them.
+ * Each connection uses two file descriptors in this process, so the open file
+ * limit must be a little over twice the connection count.
+ *
+ * Usage: ConnectionScalingBenchmark [connections] [threadPoolSize] [timeoutSeconds] [engines...]
+ */
+public final class ConnectionScalingBenchmark {
+    private static final int PORT = 18095;
+    private static final byte[] REQUEST = "{\"operation\":\"SEARCH\",\"word\":\"hello\"}\n"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private ConnectionScalingBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception If the server or a connection fails
+     */
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int threadPoolSize = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long timeoutMillis = (args.length > 2 ? Long.parseLong(args[2]) : 10) * 1000;
+        List<DictionaryServer.Engine> engines = new ArrayList<>();
+        for (int i = 3; i < args.length; i++) {
+            engines.add(DictionaryServer.Engine.valueOf(args[i]));
+        }
+        if (engines.isEmpty()) {
+            engines = Arrays.asList(DictionaryServer.Engine.values());
+        }
+
+        // The server logs every connection; keep only the results
+        PrintStream results = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        results.println(String.format("%d connections, thread pool size %d, java %s", connections,
+                threadPoolSize, System.getProperty("java.version")));
+        results.println("  engine     answered   connect ms   all answered ms   p99 ms   peak threads");
+        for (DictionaryServer.Engine engine : engines) {
+            DictionaryServer server = new DictionaryServer(PORT, null, threadPoolSize);
+            server.setEngine(engine);
+            if (!server.startServer()) {
+                results.println("  " + engine + ": server did not start");
+                continue;
+            }
+            ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+            try {
+                run(engine, connections, timeoutMillis, results);
+            } finally {
+                server.stopServer();
+                Thread.sleep(1000);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void run(DictionaryServer.Engine engine, int connections, long timeoutMillis,
+                            PrintStream results) throws IOException {
+        Selector selector = Selector.open();
+        SocketChannel[] channels = new SocketChannel[connections];
+        long[] sentAt = new long[connections];
+        long[] latency = new long[connections];
+        int answered = 0;
+        long start = System.nanoTime();
+        long connectNanos = 0;
+        long end;
+        try {
+            for (int i = 0; i < connections; i++) {
+                channels[i] = SocketChannel.open(new InetSocketAddress("localhost", PORT));
+                channels[i].configureBlocking(false);
+                channels[i].register(selector, SelectionKey.OP_READ, i);
+            }
+            connectNanos = System.nanoTime() - start;
+
+            // Every connection is open before the first request is sent
+            for (int i = 0; i < connections; i++) {
+                sentAt[i] = System.nanoTime();
+                channels[i].write(ByteBuffer.wrap(REQUEST));
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (answered < connections && System.currentTimeMillis() < deadline) {
+                selector.select(100);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    int index = (Integer) key.attachment();
+                    buffer.clear();
+                    int read = ((SocketChannel) key.channel()).read(buffer);
+                    if (read > 0 && buffer.get(read - 1) == '\n') {
+                        latency[index] = System.nanoTime() - sentAt[index];
+                        answered++;
+                        key.cancel();
+                    } else if (read < 0) {
+                        key.cancel();
+                    }
+                }
+            }
+            end = System.nanoTime();
+        } finally {
+            for (SocketChannel channel : channels) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+            selector.close();
+        }
+
+        long[] answeredLatency = new long[answered];
+        int n = 0;
+        for (long nanos : latency) {
+            if (nanos > 0) {
+                answeredLatency[n++] = nanos;
+            }
+        }
+        Arrays.sort(answeredLatency);
+        String allAnswered = answered == connections
+                ? String.format("%.0f", (end - start - connectNanos) / 1e6) : "timed out";
+        double p99 = answered == 0 ? 0 : answeredLatency[Math.min(answered - 1, (int) (answered * 0.99))] / 1e6;
+        results.println(String.format("  %-9s %9d %12.0f %17s %8.1f %14d", engine, answered, connectNanos / 1e6,
+                allAnswered, p99, ManagementFactory.getThreadMXBean().getPeakThreadCount()));
+    }
+}
@@ -0,0 +1,105 @@
+package com.gaoyuanh.dictionary.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.gaoyuanh.dictionary.dictionary.Dictionary;
+
+/**
+ * Measures dictionary throughput under a mixed search/update workload with an
+ * increasing number of threads, to show how well the dictionary scales with cores.
+ *
+ * Usage: DictionaryScalingBenchmark [maxThreads] [words] [updatePercent] [secondsPerRun]
+ */
+public final class DictionaryScalingBenchmark {
+    private DictionaryScalingBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args Command line arguments
+     * @throws InterruptedException If interrupted while waiting for workers
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int wordCount = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        int updatePercent = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        Dictionary dictionary = new Dictionary();
+        String[] words = new String[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = "word" + i;
+            dictionary.add(words[i], Arrays.asList("meaning of " + words[i]));
+        }
+
+        System.out.println("Words: " + wordCount + ", updates: " + updatePercent + "%, " + seconds + " s per run");
+        System.out.println("threads       ops/s   speedup");
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads, maxThreads)) {
+            // Short warm-up run so the first measurement is not dominated by JIT compilation
+            if (threads == 1) {
+                run(dictionary, words, 1, updatePercent, 1);
+            }
+            double opsPerSecond = run(dictionary, words, threads, updatePercent, seconds);
+            if (baseline == 0) {
+                baseline = opsPerSecond;
+            }
+            System.out.println(String.format("%7d %11.0f %8.2fx", threads, opsPerSecond, opsPerSecond / baseline));
+        }
+    }
+
+    private static int nextThreadCount(int threads, int maxThreads) {
+        return threads < maxThreads && threads * 2 > maxThreads ? maxThreads : threads * 2;
+    }
+
+    /**
+     * Runs the workload on a number of threads for a fixed time
+     *
+     * @return Operations per second across all threads
+     */
+    private static double run(Dictionary dictionary, String[] words, int threads, int updatePercent, int seconds)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                try {
+                    start.await();
+                    while (running.get()) {
+                        String word = words[random.nextInt(words.length)];
+                        if (random.nextInt(100) < updatePercent) {
+                            dictionary.addMeaning(word, "meaning " + random.nextInt(4));
+                        } else {
+                            dictionary.search(word);
+                        }
+                        count++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    operations.add(count);
+                    done.countDown();
+                }
+            }, "bench-worker-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        done.await();
+        return operations.sum() / ((System.nanoTime() - startTime) / 1e9);
+    }
+}
@@ -0,0 +1,126 @@
+package com.gaoyuanh.dictionary.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.gaoyuanh.dictionary.client.DictionaryClient;
+import com.gaoyuanh.dictionary.client.NearCache;
+import com.gaoyuanh.dictionary.server.DictionaryServer;
+
+/**
+ * Measures SEARCH throughput and latency of callers that keep looking up the same
+ * few thousand words, with and without the client near cache, while a second
+ * client updates some of those words so invalidations keep arriving.
+ *
+ * Usage: NearCacheBenchmark [callers] [hotWords] [updatesPerSecond] [secondsPerRun]
+ */
+public final class NearCacheBenchmark {
+    private static final int PORT = 18120;
+
+    private NearCacheBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception If the server or a client fails
+     */
+    public static void main(String[] args) throws Exception {
+        int callers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int hotWords = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int updatesPerSecond = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        PrintStream results = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        DictionaryServer server = new DictionaryServer(PORT, null, 16);
+        server.startServer();
+        String[] words = new String[hotWords];
+        DictionaryClient writer = new DictionaryClient("localhost", PORT, System.err::println);
+        writer.connect();
+        for (int i = 0; i < hotWords; i++) {
+            words[i] = "word" + i;
+            writer.addWord(words[i], Arrays.asList("meaning of " + words[i])).join();
+        }
+
+        results.println(String.format("%d callers, %d hot words, %d updates/s, %d s per run", callers, hotWords,
+                updatesPerSecond, seconds));
+        results.println("  near cache   requests/s   mean latency   hit ratio");
+        for (boolean nearCache : new boolean[] { false, true }) {
+            DictionaryClient client = new DictionaryClient("localhost", PORT, System.err::println);
+            if (nearCache) {
+                client.enableNearCache(NearCache.DEFAULT_MAX_ENTRIES, NearCache.DEFAULT_TTL_MS);
+            }
+            client.connect();
+            Thread.sleep(200);
+            run(client, writer, words, callers, updatesPerSecond, 1);
+            double perSecond = run(client, writer, words, callers, updatesPerSecond, seconds);
+            NearCache cache = client.getNearCache();
+            String hitRatio = cache == null ? "-" : String.format("%.1f%%", 100.0 * cache.getHitCount()
+                    / Math.max(1, cache.getHitCount() + cache.getMissCount()));
+            client.disconnect();
+            results.println(String.format("  %10s %12.0f %11.1f us %11s", nearCache ? "on" : "off", perSecond,
+                    callers * 1e6 / perSecond, hitRatio));
+        }
+
+        writer.disconnect();
+        server.stopServer();
+        System.exit(0);
+    }
+
+    /**
+     * Runs the callers for a fixed time while the writer updates random hot words
+     *
+     * @return Searches per second across all callers
+     */
+    private static double run(DictionaryClient client, DictionaryClient writer, String[] words, int callers,
+                              int updatesPerSecond, int seconds) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder requests = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(callers);
+        for (int c = 0; c < callers; c++) {
+            Thread caller = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                try {
+                    start.await();
+                    while (running.get()) {
+                        client.searchWord(words[random.nextInt(words.length)]).join();
+                        count++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    requests.add(count);
+                    done.countDown();
+                }
+            }, "bench-caller-" + c);
+            caller.setDaemon(true);
+            caller.start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        long end = startTime + seconds * 1_000_000_000L;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < end) {
+            writer.addMeaning(words[random.nextInt(words.length)], "meaning " + random.nextInt(4));
+            Thread.sleep(Math.max(1, 1000 / Math.max(1, updatesPerSecond)));
+        }
+        running.set(false);
+        done.await();
+        return requests.sum() / ((System.nanoTime() - startTime) / 1e9);
+    }
+}
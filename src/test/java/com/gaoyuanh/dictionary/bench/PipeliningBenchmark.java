@@ -0,0 +1,156 @@
+package com.gaoyuanh.dictionary.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import com.gaoyuanh.dictionary.client.DictionaryClient;
+import com.gaoyuanh.dictionary.protocol.Message;
+import com.gaoyuanh.dictionary.server.DictionaryServer;
+
+/**
+ * Measures SEARCH throughput over one connection for different in-flight windows.
+ * The client talks to the server through a proxy that delays every chunk of bytes
+ * by half the round-trip time in each direction, to simulate a network link.
+ *
+ * Usage: PipeliningBenchmark [rttMillis] [requests] [engine] [windows...]
+ */
+public final class PipeliningBenchmark {
+    private static final int SERVER_PORT = 18096;
+    private static final int PROXY_PORT = 18097;
+
+    private PipeliningBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception If the server, proxy or client fails
+     */
+    public static void main(String[] args) throws Exception {
+        double rttMillis = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        DictionaryServer.Engine engine = args.length > 2 ? DictionaryServer.Engine.valueOf(args[2])
+                : DictionaryServer.Engine.BLOCKING;
+        int[] windows = args.length > 3 ? Arrays.stream(args, 3, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 1, 4, 16, 32, 128 };
+
+        PrintStream results = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        DictionaryServer server = new DictionaryServer(SERVER_PORT, null, 4);
+        server.setEngine(engine);
+        server.startServer();
+        ServerSocket proxy = startProxy((long) (rttMillis * 1e6 / 2));
+
+        results.println(String.format("%d SEARCH requests, %.1f ms RTT, %s engine", requests, rttMillis, engine));
+        results.println("  window   requests/s   speedup");
+        double baseline = 0;
+        for (int window : windows) {
+            DictionaryClient client = new DictionaryClient("localhost", PROXY_PORT, System.err::println, window);
+            client.connect();
+            // Warm up, then measure
+            run(client, Math.min(requests, 500));
+            long start = System.nanoTime();
+            run(client, requests);
+            double perSecond = requests / ((System.nanoTime() - start) / 1e9);
+            client.disconnect();
+            if (baseline == 0) {
+                baseline = perSecond;
+            }
+            results.println(String.format("  %6d %12.0f %8.1fx", window, perSecond, perSecond / baseline));
+        }
+
+        proxy.close();
+        server.stopServer();
+        System.exit(0);
+    }
+
+    private static void run(DictionaryClient client, int requests) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[requests];
+        for (int i = 0; i < requests; i++) {
+            futures[i] = client.searchWord(i % 2 == 0 ? "hello" : "world");
+        }
+        for (CompletableFuture<?> future : futures) {
+            Message response = (Message) future.join();
+            if (response.getWord() == null) {
+                throw new IllegalStateException("Unexpected response " + response.getStatus());
+            }
+        }
+    }
+
+    /**
+     * Starts a proxy to the server that delays each chunk of bytes in both directions
+     */
+    private static ServerSocket startProxy(long delayNanos) throws IOException {
+        ServerSocket proxy = new ServerSocket(PROXY_PORT);
+        Thread acceptor = new Thread(() -> {
+            while (!proxy.isClosed()) {
+                try {
+                    Socket client = proxy.accept();
+                    Socket server = new Socket("localhost", SERVER_PORT);
+                    client.setTcpNoDelay(true);
+                    server.setTcpNoDelay(true);
+                    relay(client.getInputStream(), server.getOutputStream(), delayNanos);
+                    relay(server.getInputStream(), client.getOutputStream(), delayNanos);
+                } catch (IOException e) {
+                    // Proxy closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return proxy;
+    }
+
+    private static void relay(InputStream from, OutputStream to, long delayNanos) {
+        LinkedBlockingQueue<Object[]> chunks = new LinkedBlockingQueue<>();
+        Thread reader = new Thread(() -> {
+            byte[] buffer = new byte[64 * 1024];
+            try {
+                int read;
+                while ((read = from.read(buffer)) > 0) {
+                    chunks.add(new Object[] { System.nanoTime() + delayNanos, Arrays.copyOf(buffer, read) });
+                }
+            } catch (IOException e) {
+                // Connection closed
+            }
+            chunks.add(new Object[0]);
+        });
+        Thread writer = new Thread(() -> {
+            try {
+                while (true) {
+                    Object[] chunk = chunks.take();
+                    if (chunk.length == 0) {
+                        to.close();
+                        return;
+                    }
+                    long wait;
+                    while ((wait = (Long) chunk[0] - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    to.write((byte[]) chunk[1]);
+                    to.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                // Connection closed
+            }
+        });
+        reader.setDaemon(true);
+        writer.setDaemon(true);
+        reader.start();
+        writer.start();
+    }
+}
@@ -0,0 +1,69 @@
+package com.gaoyuanh.dictionary.bench;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import com.gaoyuanh.dictionary.dictionary.Dictionary;
+
+/**
+ * Measures prefix search latency percentiles as the dictionary grows, to check
+ * that type-ahead latency does not depend on the number of words.
+ *
+ * Usage: PrefixSearchLatencyBenchmark [maxWords] [queries] [limit]
+ */
+public final class PrefixSearchLatencyBenchmark {
+    private static final char[] LETTERS = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private PrefixSearchLatencyBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int maxWords = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        int limit = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        Random random = new Random(1);
+        Dictionary dictionary = new Dictionary();
+        System.out.println("     words    p50 us    p99 us  p99.9 us");
+        int added = 0;
+        for (int size = 10000; size <= maxWords; size *= 10) {
+            while (added < size) {
+                if (dictionary.add(randomWord(random, 4 + random.nextInt(8)),
+                        Collections.singletonList("meaning"))) {
+                    added++;
+                }
+            }
+
+            // Prefixes of one to three letters, as typed in a search box
+            long[] nanos = new long[queries];
+            long sink = 0;
+            for (int i = 0; i < queries; i++) {
+                String prefix = randomWord(random, 1 + random.nextInt(3));
+                long start = System.nanoTime();
+                sink += dictionary.prefixSearch(prefix, limit).size();
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            System.out.println(String.format("%10d %9.1f %9.1f %9.1f   (%d results)", size,
+                    percentile(nanos, 0.5), percentile(nanos, 0.99), percentile(nanos, 0.999), sink));
+        }
+    }
+
+    private static String randomWord(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = LETTERS[random.nextInt(LETTERS.length)];
+        }
+        return new String(chars);
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1000.0;
+    }
+}
@@ -0,0 +1,150 @@
+package com.gaoyuanh.dictionary.bench;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.gaoyuanh.dictionary.dictionary.Dictionary;
+
+/**
+ * Compares the dictionary storages under a read-mostly workload from 1 to 64
+ * threads, then measures how long writers stall while the dictionary is saved:
+ * the hash map is copied entry by entry while every writer waits, the hash trie
+ * is captured by taking its root.
+ *
+ * Usage: ReadScalingBenchmark [maxThreads] [words] [updatePermille] [secondsPerRun]
+ */
+public final class ReadScalingBenchmark {
+    private ReadScalingBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception If interrupted or a save fails
+     */
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int wordCount = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        int updatePermille = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        PrintStream results = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        String[] words = new String[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = "word" + i;
+        }
+        results.println("Words: " + wordCount + ", updates: " + updatePermille / 10.0 + "%, " + seconds
+                + " s per run, " + Runtime.getRuntime().availableProcessors() + " CPUs");
+        for (Dictionary.Storage storage : Dictionary.Storage.values()) {
+            Dictionary dictionary = new Dictionary(Dictionary.DEFAULT_LOCK_STRIPES, storage);
+            for (String word : words) {
+                dictionary.add(word, Arrays.asList("meaning of " + word));
+            }
+
+            results.println(storage);
+            results.println("  threads       ops/s   speedup");
+            run(dictionary, words, 1, updatePermille, 1);
+            double baseline = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                double opsPerSecond = run(dictionary, words, threads, updatePermille, seconds);
+                if (baseline == 0) {
+                    baseline = opsPerSecond;
+                }
+                results.println(String.format("  %7d %11.0f %8.2fx", threads, opsPerSecond, opsPerSecond / baseline));
+            }
+            results.println(String.format("  longest write during saves: %.2f ms", longestWriteDuringSaves(dictionary,
+                    words) / 1e6));
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Runs the workload on a number of threads for a fixed time
+     *
+     * @return Operations per second across all threads
+     */
+    private static double run(Dictionary dictionary, String[] words, int threads, int updatePermille, int seconds)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                try {
+                    start.await();
+                    while (running.get()) {
+                        String word = words[random.nextInt(words.length)];
+                        if (random.nextInt(1000) < updatePermille) {
+                            dictionary.addMeaning(word, "meaning " + random.nextInt(4));
+                        } else {
+                            dictionary.search(word);
+                        }
+                        count++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    operations.add(count);
+                    done.countDown();
+                }
+            }, "bench-worker-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        done.await();
+        return operations.sum() / ((System.nanoTime() - startTime) / 1e9);
+    }
+
+    /**
+     * Saves the dictionary a few times while a writer keeps updating it
+     *
+     * @return The longest single update in nanoseconds
+     */
+    private static long longestWriteDuringSaves(Dictionary dictionary, String[] words) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[] longest = new long[1];
+        Thread writer = new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (running.get()) {
+                long start = System.nanoTime();
+                dictionary.addMeaning(words[random.nextInt(words.length)], "meaning " + random.nextInt(4));
+                longest[0] = Math.max(longest[0], System.nanoTime() - start);
+            }
+        }, "bench-writer");
+        writer.start();
+
+        File file = File.createTempFile("read-scaling", ".json");
+        try {
+            for (int i = 0; i < 5; i++) {
+                dictionary.saveToFile(file.getPath());
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+            file.delete();
+        }
+        return longest[0];
+    }
+}
@@ -0,0 +1,125 @@
+package com.gaoyuanh.dictionary.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import com.gaoyuanh.dictionary.client.DictionaryClient;
+import com.gaoyuanh.dictionary.protocol.Message;
+import com.gaoyuanh.dictionary.server.DictionaryServer;
+import com.gaoyuanh.dictionary.server.ResponseCache;
+
+/**
+ * Measures SEARCH throughput with different response cache budgets. Words are
+ * drawn from a Zipf distribution, so a few words take most of the lookups, like
+ * the popular words of a real dictionary.
+ *
+ * Usage: ResponseCacheBenchmark [words] [requests] [engine] [cacheKilobytes...]
+ */
+public final class ResponseCacheBenchmark {
+    private static final int PORT = 18100;
+    private static final double ZIPF_EXPONENT = 1.0;
+
+    private ResponseCacheBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception If the server or client fails
+     */
+    public static void main(String[] args) throws Exception {
+        int words = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        DictionaryServer.Engine engine = args.length > 2 ? DictionaryServer.Engine.valueOf(args[2])
+                : DictionaryServer.Engine.NIO;
+        long[] budgets = args.length > 3 ? Arrays.stream(args, 3, args.length).mapToLong(Long::parseLong).toArray()
+                : new long[] { 0, 256, ResponseCache.DEFAULT_CAPACITY_BYTES / 1024 };
+
+        PrintStream results = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        String[] lookups = zipfLookups(words, requests, new Random(42));
+        results.println(String.format("%d words, %d Zipf SEARCH requests, %s engine", words, requests, engine));
+        results.println("  cache KB   requests/s   hit ratio   used KB");
+        for (long budget : budgets) {
+            DictionaryServer server = new DictionaryServer(PORT, null, 4);
+            server.setEngine(engine);
+            server.setResponseCacheCapacity(budget * 1024);
+            server.startServer();
+            DictionaryClient client = new DictionaryClient("localhost", PORT, System.err::println, 32);
+            client.connect();
+            load(client, words);
+
+            // Warm up, then measure
+            run(client, Arrays.copyOf(lookups, requests / 10));
+            ResponseCache cache = server.getResponseCache();
+            long hitsBefore = cache == null ? 0 : cache.getHitCount();
+            long missesBefore = cache == null ? 0 : cache.getMissCount();
+            long start = System.nanoTime();
+            run(client, lookups);
+            double perSecond = requests / ((System.nanoTime() - start) / 1e9);
+            if (cache == null) {
+                results.println(String.format("  %8d %12.0f %11s %9s", budget, perSecond, "-", "-"));
+            } else {
+                long hits = cache.getHitCount() - hitsBefore;
+                long misses = cache.getMissCount() - missesBefore;
+                results.println(String.format("  %8d %12.0f %10.1f%% %9d", budget, perSecond,
+                        100.0 * hits / (hits + misses), cache.getMemoryBytes() / 1024));
+            }
+            client.disconnect();
+            server.stopServer();
+            Thread.sleep(500);
+        }
+        System.exit(0);
+    }
+
+    private static void load(DictionaryClient client, int words) {
+        Map<String, List<String>> batch = new LinkedHashMap<>();
+        for (int i = 0; i < words; i++) {
+            batch.put("word" + i, Arrays.asList("first meaning of word " + i, "second meaning of word " + i));
+            if (batch.size() == 1000 || i == words - 1) {
+                client.bulkAdd(batch).join();
+                batch.clear();
+            }
+        }
+    }
+
+    private static String[] zipfLookups(int words, int requests, Random random) {
+        double[] cumulative = new double[words];
+        double sum = 0;
+        for (int i = 0; i < words; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = sum;
+        }
+        String[] lookups = new String[requests];
+        for (int i = 0; i < requests; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            lookups[i] = "word" + (index < 0 ? -index - 1 : index);
+        }
+        return lookups;
+    }
+
+    private static void run(DictionaryClient client, String[] lookups) {
+        List<CompletableFuture<Message>> futures = new ArrayList<>(lookups.length);
+        for (String word : lookups) {
+            futures.add(client.searchWord(word));
+        }
+        for (CompletableFuture<Message> future : futures) {
+            if (future.join().getWord() == null) {
+                throw new IllegalStateException("Unexpected response");
+            }
+        }
+    }
+}
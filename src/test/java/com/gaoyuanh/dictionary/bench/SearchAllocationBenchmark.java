@@ -0,0 +1,85 @@
+package com.gaoyuanh.dictionary.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import com.gaoyuanh.dictionary.dictionary.Dictionary;
+import com.gaoyuanh.dictionary.dictionary.WordEntry;
+import com.gaoyuanh.dictionary.protocol.Message;
+import com.gaoyuanh.dictionary.protocol.ProtocolConstants;
+import com.google.gson.Gson;
+
+/**
+ * Measures bytes allocated per SEARCH, both for the dictionary lookup alone and
+ * for the full server path (lookup, response message and JSON serialization).
+ * Uses the per-thread allocation counter of the HotSpot ThreadMXBean.
+ *
+ * Usage: SearchAllocationBenchmark [words] [iterations]
+ */
+public final class SearchAllocationBenchmark {
+    private SearchAllocationBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        int wordCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+
+        Dictionary dictionary = new Dictionary();
+        String[] words = new String[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = "word" + i;
+            dictionary.add(words[i], Arrays.asList("first meaning of " + words[i], "second meaning", "third meaning"));
+        }
+        Gson gson = new Gson();
+
+        // Warm up both paths so the JIT has settled before measuring
+        lookupOnly(dictionary, words, iterations);
+        fullSearch(dictionary, words, gson, iterations);
+
+        long before = allocatedBytes();
+        long sink = lookupOnly(dictionary, words, iterations);
+        System.out.println(String.format("Dictionary.search:     %6.1f bytes/op",
+                (allocatedBytes() - before) / (double) iterations));
+
+        before = allocatedBytes();
+        sink += fullSearch(dictionary, words, gson, iterations);
+        System.out.println(String.format("SEARCH response (JSON): %6.1f bytes/op",
+                (allocatedBytes() - before) / (double) iterations));
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private static long lookupOnly(Dictionary dictionary, String[] words, int iterations) {
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            WordEntry entry = dictionary.search(words[i % words.length]);
+            sink += entry.getMeanings().size();
+        }
+        return sink;
+    }
+
+    /**
+     * Mirrors RequestProcessor.handleSearch for a word that is found
+     */
+    private static long fullSearch(Dictionary dictionary, String[] words, Gson gson, int iterations) {
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            WordEntry entry = dictionary.search(words[i % words.length]);
+            Message response = new Message(ProtocolConstants.OPERATION_SEARCH);
+            response.setStatus(ProtocolConstants.STATUS_SUCCESS);
+            response.setWord(entry.getWord());
+            response.setMeanings(entry.getMeanings());
+            sink += gson.toJson(response).length();
+        }
+        return sink;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
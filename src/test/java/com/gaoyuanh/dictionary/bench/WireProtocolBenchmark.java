@@ -0,0 +1,151 @@
+package com.gaoyuanh.dictionary.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import com.gaoyuanh.dictionary.client.DictionaryClient;
+import com.gaoyuanh.dictionary.protocol.BinaryProtocol;
+import com.gaoyuanh.dictionary.protocol.Message;
+import com.gaoyuanh.dictionary.server.DictionaryServer;
+import com.google.gson.Gson;
+
+/**
+ * Compares JSON lines with the binary protocol: bytes on the wire and codec time
+ * for one SEARCH request and response, then SEARCH throughput over loopback for
+ * each server engine.
+ *
+ * Usage: WireProtocolBenchmark [requests] [window]
+ */
+public final class WireProtocolBenchmark {
+    private static final int PORT = 18098;
+
+    private WireProtocolBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception If the server or client fails
+     */
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int window = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+
+        PrintStream results = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        Message request = new Message("SEARCH");
+        request.setWord("hello");
+        request.setRequestId(12345L);
+        Message response = new Message("SEARCH");
+        response.setStatus("SUCCESS");
+        response.setWord("hello");
+        response.setMeanings(Arrays.asList("A greeting", "An expression of surprise", "Used to answer the telephone"));
+        response.setRequestId(12345L);
+
+        results.println("SEARCH request + response");
+        results.println("  protocol   bytes/op   codec ns/op");
+        Gson gson = new Gson();
+        int jsonBytes = (gson.toJson(request) + "\n").getBytes(StandardCharsets.UTF_8).length
+                + (gson.toJson(response) + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int binaryBytes = BinaryProtocol.encode(request).length + BinaryProtocol.encode(response).length;
+        results.println(String.format("  %-9s %9d %13.0f", "json", jsonBytes, jsonCodecNanos(gson, request, response)));
+        results.println(String.format("  %-9s %9d %13.0f", "binary", binaryBytes, binaryCodecNanos(request, response)));
+
+        results.println(String.format("%d SEARCH requests over loopback, window %d", requests, window));
+        results.println("  engine     protocol   requests/s");
+        for (DictionaryServer.Engine engine : new DictionaryServer.Engine[] { DictionaryServer.Engine.BLOCKING,
+                DictionaryServer.Engine.NIO }) {
+            DictionaryServer server = new DictionaryServer(PORT, null, 4);
+            server.setEngine(engine);
+            server.startServer();
+            for (boolean binary : new boolean[] { false, true }) {
+                DictionaryClient client = new DictionaryClient("localhost", PORT, System.err::println, window);
+                client.setBinaryProtocol(binary);
+                client.connect();
+                // Warm up, then measure
+                run(client, Math.min(requests, 5000));
+                long start = System.nanoTime();
+                run(client, requests);
+                double perSecond = requests / ((System.nanoTime() - start) / 1e9);
+                client.disconnect();
+                results.println(String.format("  %-9s  %-9s %11.0f", engine, binary ? "binary" : "json", perSecond));
+            }
+            server.stopServer();
+            Thread.sleep(500);
+        }
+        System.exit(0);
+    }
+
+    private static double jsonCodecNanos(Gson gson, Message request, Message response) {
+        int iterations = 200000;
+        int sink = 0;
+        long start = 0;
+        for (int round = 0; round < 2; round++) {
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                byte[] requestBytes = gson.toJson(request).getBytes(StandardCharsets.UTF_8);
+                sink += gson.fromJson(new String(requestBytes, StandardCharsets.UTF_8), Message.class).getWord().length();
+                byte[] responseBytes = gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+                sink += gson.fromJson(new String(responseBytes, StandardCharsets.UTF_8), Message.class)
+                        .getMeanings().size();
+            }
+        }
+        if (sink == 0) {
+            throw new IllegalStateException();
+        }
+        return (System.nanoTime() - start) / (double) iterations;
+    }
+
+    private static double binaryCodecNanos(Message request, Message response) throws Exception {
+        int iterations = 200000;
+        int sink = 0;
+        long start = 0;
+        for (int round = 0; round < 2; round++) {
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                byte[] requestBytes = BinaryProtocol.encode(request);
+                sink += decodeFrame(requestBytes).getWord().length();
+                byte[] responseBytes = BinaryProtocol.encode(response);
+                sink += decodeFrame(responseBytes).getMeanings().size();
+            }
+        }
+        if (sink == 0) {
+            throw new IllegalStateException();
+        }
+        return (System.nanoTime() - start) / (double) iterations;
+    }
+
+    /**
+     * Decodes a frame produced by {@link BinaryProtocol#encode(Message)}, skipping its length prefix
+     */
+    private static Message decodeFrame(byte[] frame) throws Exception {
+        int offset = 0;
+        while ((frame[offset] & 0x80) != 0) {
+            offset++;
+        }
+        offset++;
+        return BinaryProtocol.decode(frame, offset, frame.length - offset);
+    }
+
+    private static void run(DictionaryClient client, int requests) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[requests];
+        for (int i = 0; i < requests; i++) {
+            futures[i] = client.searchWord(i % 2 == 0 ? "hello" : "world");
+        }
+        for (CompletableFuture<?> future : futures) {
+            Message response = (Message) future.join();
+            if (response.getWord() == null) {
+                throw new IllegalStateException("Unexpected response " + response.getStatus());
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gaoyuanh.dictionary.server.DictionaryServer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that starting a server never replaces a dictionary file it could not load.
+ */
+class DictionaryStartupTest {
+    private static final int PORT = 18300;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void unreadableFileAndLogAreLeftUntouched() throws IOException {
+        Path filePath = directory.resolve("dictionary.json");
+        Dictionary dictionary = new Dictionary();
+        for (int i = 0; i < 100; i++) {
+            dictionary.add("word" + i, Arrays.asList("meaning of word" + i));
+        }
+        dictionary.saveToFile(filePath.toString());
+        // Cut the last entry off, as a crash or a full disk would
+        byte[] saved = Files.readAllBytes(filePath);
+        byte[] truncated = Arrays.copyOf(saved, saved.length - 20);
+        Files.write(filePath, truncated);
+        Path logPath = directory.resolve(Dictionary.mutationLogPath(filePath.toString()));
+        byte[] log = "{\"op\":\"ADD\",\"word\":\"logged\",\"meanings\":[\"kept\"]}\n".getBytes(StandardCharsets.UTF_8);
+        Files.write(logPath, log);
+        
+        DictionaryServer server = new DictionaryServer(PORT, filePath.toString());
+        boolean started = server.startServer();
+        if (started) {
+            server.stopServer();
+        }
+        
+        assertFalse(started);
+        assertArrayEquals(truncated, Files.readAllBytes(filePath));
+        assertArrayEquals(log, Files.readAllBytes(logPath));
+    }
+
+    @Test
+    void missingFileStartsWithDefaultWords() throws IOException {
+        Path filePath = directory.resolve("dictionary.json");
+        
+        DictionaryServer server = new DictionaryServer(PORT, filePath.toString());
+        assertTrue(server.startServer());
+        server.stopServer();
+        
+        Dictionary reloaded = new Dictionary();
+        reloaded.loadFromFile(filePath.toString());
+        assertTrue(reloaded.size() > 0);
+    }
+}
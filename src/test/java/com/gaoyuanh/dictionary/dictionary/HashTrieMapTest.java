@@ -0,0 +1,124 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the persistent hash trie against a HashMap, with keys whose hash codes
+ * collide in some or all of their bits.
+ */
+class HashTrieMapTest {
+    /**
+     * Key with a chosen hash code, so collisions can be forced
+     */
+    private static final class Key {
+        final int id;
+        final int hash;
+        
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).id == id;
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+        
+        @Override
+        public String toString() {
+            return id + "#" + hash;
+        }
+    }
+
+    @Test
+    void matchesHashMapWithCollisions() {
+        // Few distinct hashes, some equal in every bit and some in the low bits only
+        int[] hashes = { 0, 1, 1 << 5, 1 << 30, 0x80000000, 0x7FFFFFFF, 12345 };
+        Random random = new Random(3);
+        HashTrieMap<Key, Integer> map = new HashTrieMap<>();
+        Map<Key, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            int id = random.nextInt(300);
+            Key key = new Key(id, hashes[id % hashes.length]);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        
+        for (int id = 0; id < 300; id++) {
+            Key key = new Key(id, hashes[id % hashes.length]);
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        assertEquals(expected.entrySet(), new HashSet<>(map.entrySet()));
+        assertEquals(expected, map);
+    }
+
+    @Test
+    void removingCollidingKeysCollapsesTheTrie() {
+        HashTrieMap<Key, String> map = new HashTrieMap<>();
+        Key first = new Key(1, 42);
+        Key second = new Key(2, 42);
+        Key third = new Key(3, 42);
+        Key neighbour = new Key(4, 42 | 1 << 20);
+        map.put(first, "first");
+        map.put(second, "second");
+        map.put(third, "third");
+        map.put(neighbour, "neighbour");
+        
+        assertEquals("second", map.remove(second));
+        assertEquals("third", map.remove(third));
+        assertNull(map.remove(second));
+        assertEquals("first", map.get(first));
+        assertEquals("neighbour", map.get(neighbour));
+        assertEquals(2, map.size());
+        
+        map.remove(first);
+        map.remove(neighbour);
+        assertTrue(map.isEmpty());
+        assertFalse(map.entrySet().iterator().hasNext());
+        
+        // The emptied trie still takes new keys along the same paths
+        map.put(third, "again");
+        assertEquals("again", map.get(third));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void snapshotIsAPointInTimeCopy() {
+        HashTrieMap<String, Integer> map = new HashTrieMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.put("word" + i, i);
+        }
+        Map<String, Integer> snapshot = map.snapshot();
+        map.remove("word1");
+        map.put("word2", -2);
+        map.put("extra", 0);
+        
+        assertEquals(1000, snapshot.size());
+        assertEquals(Integer.valueOf(1), snapshot.get("word1"));
+        assertEquals(Integer.valueOf(2), snapshot.get("word2"));
+        assertNull(snapshot.get("extra"));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.put("other", 1));
+        assertEquals(1000, map.size());
+    }
+}
@@ -0,0 +1,139 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests reverse search results and the delta-encoded posting lists behind them
+ * against plain sorted sets.
+ */
+class MeaningIndexTest {
+    @Test
+    void limitKeepsFirstWordsInWordOrder() {
+        MeaningIndex index = new MeaningIndex();
+        // Inserted in reverse, so word IDs run against word order
+        for (String word : new String[] { "zebra", "yak", "walrus", "apple", "Zoo" }) {
+            index.add(word, Collections.singletonList("an animal or " + word));
+        }
+        index.add("table", Collections.singletonList("furniture"));
+        
+        assertEquals(Arrays.asList("Zoo", "apple"), index.search("animal", 2));
+        assertEquals(Arrays.asList("Zoo", "apple", "walrus", "yak", "zebra"), index.search("animal", 10));
+        assertEquals(Collections.emptyList(), index.search("animal", 0));
+    }
+
+    @Test
+    void searchMatchesEveryToken() {
+        Random random = new Random(7);
+        MeaningIndex index = new MeaningIndex();
+        List<String> words = new ArrayList<>();
+        List<List<String>> meanings = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String word = "w" + random.nextInt(1000000);
+            List<String> wordMeanings = Collections.singletonList(
+                    "t" + random.nextInt(5) + " u" + random.nextInt(7) + " v" + random.nextInt(3));
+            words.add(word);
+            meanings.add(wordMeanings);
+            index.add(word, wordMeanings);
+        }
+        // Change some words so their IDs move between the buffers and the encoded bytes
+        for (int i = 0; i < words.size(); i += 3) {
+            List<String> changed = Collections.singletonList("t" + random.nextInt(5) + " u" + random.nextInt(7));
+            index.update(words.get(i), meanings.get(i), changed);
+            meanings.set(i, changed);
+        }
+        
+        TreeSet<String> expected = new TreeSet<>(BinarySnapshot.WORD_ORDER);
+        for (int i = 0; i < words.size(); i++) {
+            List<String> tokens = Arrays.asList(meanings.get(i).get(0).split(" "));
+            if (tokens.contains("t1") && tokens.contains("u2")) {
+                expected.add(words.get(i));
+            }
+        }
+        assertEquals(new ArrayList<>(expected), index.search("u2 T1", Integer.MAX_VALUE));
+        assertEquals(new ArrayList<>(expected).subList(0, 5), index.search("t1 u2", 5));
+    }
+
+    @Test
+    void postingListMatchesSortedSet() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            MeaningIndex.PostingList list = new MeaningIndex.PostingList();
+            TreeSet<Integer> expected = new TreeSet<>();
+            int next = 0;
+            for (int i = 0; i < 3000; i++) {
+                int choice = random.nextInt(10);
+                if (choice < 5) {
+                    // Mostly increasing IDs, as new words get them
+                    next += 1 + random.nextInt(3);
+                    list.add(next);
+                    expected.add(next);
+                } else if (choice < 8) {
+                    // The index only removes IDs that are in the list, and only adds absent ones
+                    int id = random.nextInt(next + 1);
+                    if (expected.remove(id)) {
+                        list.remove(id);
+                    }
+                } else {
+                    int id = random.nextInt(next + 1);
+                    if (expected.add(id)) {
+                        list.add(id);
+                    }
+                }
+            }
+            
+            assertEquals(expected.size(), list.size());
+            assertEquals(new ArrayList<>(expected), drain(list));
+            for (int i = 0; i < 200; i++) {
+                int target = random.nextInt(next + 10);
+                MeaningIndex.PostingList.Cursor cursor = list.cursor();
+                cursor.next();
+                cursor.advanceTo(target);
+                Integer ceiling = expected.ceiling(target);
+                assertEquals(ceiling == null ? MeaningIndex.PostingList.END : ceiling.intValue(), cursor.current());
+            }
+        }
+    }
+
+    @Test
+    void skipEntriesAfterRemovals() {
+        MeaningIndex.PostingList list = new MeaningIndex.PostingList();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int id = 0; id < 1000; id++) {
+            list.add(id * 2);
+            expected.add(id * 2);
+        }
+        for (int id = 0; id < 2000; id += 6) {
+            list.remove(id);
+            expected.remove(id);
+        }
+        
+        for (int target = 0; target < 2010; target += 13) {
+            MeaningIndex.PostingList.Cursor cursor = list.cursor();
+            cursor.next();
+            // Advance in two steps, so the second jump starts mid-block
+            cursor.advanceTo(target / 2);
+            cursor.advanceTo(target);
+            Integer ceiling = expected.ceiling(target);
+            assertEquals(ceiling == null ? MeaningIndex.PostingList.END : ceiling.intValue(), cursor.current());
+        }
+        assertEquals(new ArrayList<>(expected), drain(list));
+    }
+
+    private static List<Integer> drain(MeaningIndex.PostingList list) {
+        List<Integer> ids = new ArrayList<>();
+        MeaningIndex.PostingList.Cursor cursor = list.cursor();
+        for (int id = cursor.next(); id != MeaningIndex.PostingList.END; id = cursor.next()) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,61 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that records appended after a crash survive the next replay.
+ */
+class MutationLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornRecordIsCutOffBeforeAppending() throws IOException {
+        Path logPath = directory.resolve("dictionary.log");
+        try (MutationLog log = new MutationLog(logPath.toString(), true)) {
+            log.append(new MutationLog.Record(MutationLog.OP_ADD, "first"));
+        }
+        // A crash in the middle of the next append
+        Files.write(logPath, "{\"op\":\"ADD\",\"word\":\"tor".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        
+        try (MutationLog log = new MutationLog(logPath.toString(), true)) {
+            assertEquals(1, log.getRecordCount());
+            log.append(new MutationLog.Record(MutationLog.OP_ADD, "second"));
+            log.append(new MutationLog.Record(MutationLog.OP_ADD, "third"));
+        }
+        
+        assertEquals(Arrays.asList("first", "second", "third"), replayedWords(logPath));
+    }
+
+    @Test
+    void unterminatedLastRecordIsKept() throws IOException {
+        Path logPath = directory.resolve("dictionary.log");
+        Files.write(logPath, "{\"op\":\"ADD\",\"word\":\"first\"}".getBytes(StandardCharsets.UTF_8));
+        
+        try (MutationLog log = new MutationLog(logPath.toString(), true)) {
+            assertEquals(1, log.getRecordCount());
+            log.append(new MutationLog.Record(MutationLog.OP_ADD, "second"));
+        }
+        
+        assertEquals(Arrays.asList("first", "second"), replayedWords(logPath));
+    }
+
+    private static List<String> replayedWords(Path logPath) throws IOException {
+        List<String> words = new ArrayList<>();
+        MutationLog.replay(logPath.toString(), record -> words.add(record.word));
+        return words;
+    }
+}
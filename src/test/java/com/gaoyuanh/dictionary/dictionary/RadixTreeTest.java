@@ -0,0 +1,107 @@
+package com.gaoyuanh.dictionary.dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests prefix search and ordered reads of the radix tree against a sorted set.
+ */
+class RadixTreeTest {
+    // Short alphabet so words share prefixes and split labels; includes a character
+    // after the surrogates and a surrogate pair, which code point order swaps
+    private static final String[] PIECES = { "a", "b", "ab", "é", "Ａ", "😀" };
+
+    @Test
+    void matchesSortedSet() {
+        Random random = new Random(11);
+        RadixTree tree = new RadixTree();
+        TreeSet<String> expected = new TreeSet<>(BinarySnapshot.WORD_ORDER);
+        for (int i = 0; i < 5000; i++) {
+            String word = randomWord(random);
+            if (random.nextInt(3) == 0) {
+                tree.remove(word);
+                expected.remove(word);
+            } else {
+                tree.add(word);
+                expected.add(word);
+            }
+        }
+        
+        assertEquals(new ArrayList<>(expected), tree.wordsFrom("", Integer.MAX_VALUE));
+        for (int i = 0; i < 300; i++) {
+            String prefix = random.nextInt(5) == 0 ? "" : randomWord(random);
+            int limit = 1 + random.nextInt(20);
+            assertEquals(firstWithPrefix(expected, prefix, limit), tree.wordsWithPrefix(prefix, limit), prefix);
+            assertEquals(firstFrom(expected, prefix, limit), tree.wordsFrom(prefix, limit), prefix);
+        }
+    }
+
+    @Test
+    void scanCursorSkipsOnlyTheLastWord() {
+        RadixTree tree = new RadixTree();
+        for (String word : new String[] { "a", "ab", "abc", "abd", "b" }) {
+            tree.add(word);
+        }
+        
+        // SCAN continues from the smallest string after the last word it returned
+        assertEquals(Arrays.asList("ab", "abc"), tree.wordsFrom("a" + '\u0000', 2));
+        assertEquals(Arrays.asList("abc", "abd"), tree.wordsFrom("ab" + '\u0000', 2));
+        assertEquals(Arrays.asList("b"), tree.wordsFrom("abd" + '\u0000', 2));
+        assertEquals(Arrays.asList(), tree.wordsFrom("b" + '\u0000', 2));
+    }
+
+    @Test
+    void removeMergesLabelsBack() {
+        RadixTree tree = new RadixTree();
+        tree.add("test");
+        tree.add("team");
+        tree.add("tea");
+        tree.remove("team");
+        tree.remove("test");
+        tree.remove("absent");
+        
+        assertEquals(Arrays.asList("tea"), tree.wordsWithPrefix("te", 10));
+        tree.remove("tea");
+        assertEquals(Arrays.asList(), tree.wordsFrom("", 10));
+        tree.add("team");
+        assertEquals(Arrays.asList("team"), tree.wordsWithPrefix("tea", 10));
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int pieces = 1 + random.nextInt(4);
+        for (int i = 0; i < pieces; i++) {
+            word.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return word.toString();
+    }
+
+    private static List<String> firstWithPrefix(TreeSet<String> words, String prefix, int limit) {
+        List<String> first = new ArrayList<>();
+        for (String word : words.tailSet(prefix, true)) {
+            if (!word.startsWith(prefix) || first.size() == limit) {
+                break;
+            }
+            first.add(word);
+        }
+        return first;
+    }
+
+    private static List<String> firstFrom(TreeSet<String> words, String start, int limit) {
+        List<String> first = new ArrayList<>();
+        for (String word : words.tailSet(start, true)) {
+            if (first.size() == limit) {
+                break;
+            }
+            first.add(word);
+        }
+        return first;
+    }
+}
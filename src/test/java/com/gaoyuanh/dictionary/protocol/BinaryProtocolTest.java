@@ -0,0 +1,82 @@
+package com.gaoyuanh.dictionary.protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that malformed binary frames are rejected with an IOException, which
+ * closes only the connection that sent them.
+ */
+class BinaryProtocolTest {
+    // SEARCH, no status, then the field bits
+    private static final int SEARCH = 1;
+    private static final int WORD = 1;
+    private static final int MEANINGS = 1 << 1;
+
+    // A ten-byte varint that decodes to a negative long
+    private static final int[] NEGATIVE_VARINT = {
+        0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01
+    };
+
+    @Test
+    void roundTrip() throws IOException {
+        Message message = new Message(ProtocolConstants.OPERATION_ADD);
+        message.setWord("apple");
+        message.setMeanings(Arrays.asList("a fruit", "a company"));
+        message.setRequestId(42L);
+        message.setTimeoutMillis(1500L);
+        
+        Message decoded = BinaryProtocol.readFrame(new ByteArrayInputStream(BinaryProtocol.encode(message)));
+        
+        assertEquals(ProtocolConstants.OPERATION_ADD, decoded.getOperation());
+        assertEquals("apple", decoded.getWord());
+        assertEquals(message.getMeanings(), decoded.getMeanings());
+        assertEquals(Long.valueOf(42), decoded.getRequestId());
+        assertEquals(Long.valueOf(1500), decoded.getTimeoutMillis());
+    }
+
+    @Test
+    void negativeStringLength() {
+        byte[] frame = frame(new int[] { SEARCH, 0, WORD }, NEGATIVE_VARINT);
+        assertThrows(IOException.class, () -> BinaryProtocol.decode(frame, 0, frame.length));
+    }
+
+    @Test
+    void oversizedStringLength() {
+        byte[] frame = frame(new int[] { SEARCH, 0, WORD, 100, 'a' });
+        assertThrows(IOException.class, () -> BinaryProtocol.decode(frame, 0, frame.length));
+    }
+
+    @Test
+    void negativeCount() {
+        byte[] frame = frame(new int[] { SEARCH, 0, MEANINGS }, NEGATIVE_VARINT);
+        assertThrows(IOException.class, () -> BinaryProtocol.decode(frame, 0, frame.length));
+    }
+
+    @Test
+    void oversizedCount() {
+        byte[] frame = frame(new int[] { SEARCH, 0, MEANINGS, 100, 1, 'a' });
+        assertThrows(IOException.class, () -> BinaryProtocol.decode(frame, 0, frame.length));
+    }
+
+    private static byte[] frame(int[]... parts) {
+        int length = 0;
+        for (int[] part : parts) {
+            length += part.length;
+        }
+        byte[] frame = new byte[length];
+        int position = 0;
+        for (int[] part : parts) {
+            for (int b : part) {
+                frame[position++] = (byte) b;
+            }
+        }
+        return frame;
+    }
+}